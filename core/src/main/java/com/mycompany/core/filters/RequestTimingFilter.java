@@ -0,0 +1,140 @@
+package com.mycompany.core.filters;
+
+import com.mycompany.core.services.RequestTimingService;
+import com.mycompany.core.utils.LatencyHistogram;
+import org.apache.sling.api.SlingHttpServletRequest;
+import org.apache.sling.api.request.RequestPathInfo;
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.engine.EngineConstants;
+import org.osgi.service.component.annotations.Activate;
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Modified;
+import org.osgi.service.component.propertytypes.ServiceDescription;
+import org.osgi.service.component.propertytypes.ServiceRanking;
+import org.osgi.service.metatype.annotations.AttributeDefinition;
+import org.osgi.service.metatype.annotations.Designate;
+import org.osgi.service.metatype.annotations.ObjectClassDefinition;
+
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import java.io.IOException;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Times a sample of requests and component includes and aggregates their latency per
+ * resource type, selectors and extension. Includes are timed with everything they include
+ * in turn. Ranked high so the time of the filters behind it is included.
+ */
+@Component(service = {Filter.class, RequestTimingService.class},
+           property = {
+                   EngineConstants.SLING_FILTER_SCOPE + "=" + EngineConstants.FILTER_SCOPE_REQUEST,
+                   EngineConstants.SLING_FILTER_SCOPE + "=" + EngineConstants.FILTER_SCOPE_COMPONENT,
+           })
+@Designate(ocd = RequestTimingFilter.Config.class)
+@ServiceDescription("Request and component latency per resource type")
+@ServiceRanking(10000)
+public class RequestTimingFilter implements Filter, RequestTimingService {
+
+    @ObjectClassDefinition(name = "Request Timing Filter Configuration")
+    public @interface Config {
+        @AttributeDefinition(name = "Enabled", description = "Whether requests are timed at all")
+        boolean enabled() default true;
+
+        @AttributeDefinition(name = "Sample Rate",
+                description = "Share of requests and includes that are timed, between 0 and 1")
+        double sample_rate() default 0.1;
+
+        @AttributeDefinition(name = "Max Keys",
+                description = "Number of resource type, selector and extension combinations tracked; "
+                        + "further ones are counted as " + OTHER_KEY)
+        int max_keys() default 500;
+    }
+
+    static final String OTHER_KEY = "other";
+    private static final String NONE = "-";
+
+    private final Map<String, LatencyHistogram> timings = new ConcurrentHashMap<>();
+
+    private volatile boolean enabled;
+    private volatile double sampleRate;
+    private volatile int maxKeys;
+
+    @Activate
+    @Modified
+    protected void activate(Config config) {
+        this.enabled = config.enabled();
+        this.sampleRate = Math.max(0, Math.min(1, config.sample_rate()));
+        this.maxKeys = Math.max(1, config.max_keys());
+    }
+
+    @Override
+    public void doFilter(final ServletRequest request, final ServletResponse response,
+                         final FilterChain filterChain) throws IOException, ServletException {
+        if (!enabled || !(request instanceof SlingHttpServletRequest)
+                || (sampleRate < 1 && ThreadLocalRandom.current().nextDouble() >= sampleRate)) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+
+        long start = System.nanoTime();
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            record(getKey((SlingHttpServletRequest) request), System.nanoTime() - start);
+        }
+    }
+
+    private void record(String key, long nanos) {
+        LatencyHistogram histogram = timings.get(key);
+        if (histogram == null) {
+            // Selectors come from the URL, so the number of keys is capped
+            histogram = timings.computeIfAbsent(timings.size() < maxKeys ? key : OTHER_KEY,
+                    newKey -> new LatencyHistogram());
+        }
+        histogram.record(nanos);
+    }
+
+    static String getKey(SlingHttpServletRequest request) {
+        Resource resource = request.getResource();
+        RequestPathInfo pathInfo = request.getRequestPathInfo();
+        return orNone(resource != null ? resource.getResourceType() : null)
+                + "|" + orNone(pathInfo.getSelectorString())
+                + "|" + orNone(pathInfo.getExtension());
+    }
+
+    private static String orNone(String value) {
+        return value != null && !value.isEmpty() ? value : NONE;
+    }
+
+    @Override
+    public Map<String, LatencyHistogram.Snapshot> getTimings() {
+        Map<String, LatencyHistogram.Snapshot> snapshots = new LinkedHashMap<>();
+        timings.entrySet().stream()
+                .map(entry -> Map.entry(entry.getKey(), entry.getValue().snapshot()))
+                .sorted(Comparator.comparingDouble(
+                        (Map.Entry<String, LatencyHistogram.Snapshot> entry) -> entry.getValue().getMean()).reversed())
+                .forEach(entry -> snapshots.put(entry.getKey(), entry.getValue()));
+        return snapshots;
+    }
+
+    @Override
+    public void reset() {
+        timings.clear();
+    }
+
+    @Override
+    public void init(FilterConfig filterConfig) {
+    }
+
+    @Override
+    public void destroy() {
+    }
+}
@@ -0,0 +1,275 @@
+package com.mycompany.core.jobs;
+
+import com.adobe.granite.workflow.WorkflowException;
+import com.adobe.granite.workflow.WorkflowSession;
+import com.adobe.granite.workflow.exec.Route;
+import com.adobe.granite.workflow.exec.WorkItem;
+import com.adobe.granite.workflow.exec.Workflow;
+import com.adobe.granite.workflow.exec.WorkflowData;
+import com.adobe.granite.workflow.metadata.MetaDataMap;
+import com.mycompany.core.services.TaggingLeaseService;
+import com.mycompany.core.services.TaggingPipelineService;
+import com.mycompany.core.services.TaggingScheduler;
+import com.mycompany.core.utils.StageTrace;
+import org.apache.sling.api.resource.LoginException;
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.api.resource.ResourceResolverFactory;
+import org.apache.sling.event.jobs.Job;
+import org.apache.sling.event.jobs.JobManager;
+import org.apache.sling.event.jobs.consumer.JobConsumer;
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Reference;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Runs AI tagging on the dedicated job queues instead of a workflow thread, and
+ * resumes the waiting workflow once the payload has been tagged. Bulk runs use
+ * their own topic and queue, so they cannot hold up editor and change jobs.
+ */
+@Component(
+        service = JobConsumer.class,
+        property = {
+                JobConsumer.PROPERTY_TOPICS + "=" + AITaggingJobConsumer.TOPIC,
+                JobConsumer.PROPERTY_TOPICS + "=" + AITaggingJobConsumer.TOPIC_BULK
+        }
+)
+public class AITaggingJobConsumer implements JobConsumer {
+
+    public static final String TOPIC = "com/mycompany/core/aitagging";
+    public static final String TOPIC_BULK = TOPIC + "/bulk";
+    public static final String PROPERTY_PAYLOAD = "payload";
+    public static final String PROPERTY_WORK_ITEM_ID = "workItemId";
+    public static final String PROPERTY_BULK = "bulk";
+    public static final String PROPERTY_LEASE_OWNER = "leaseOwner";
+    public static final String PROPERTY_DUPLICATE = "duplicate";
+    public static final String PROPERTY_PRIORITY = "priority";
+
+    // Runs of a leased payload after duplicates were merged into it
+    private static final int MAX_MERGED_RUNS = 3;
+
+    // Progress of bulk runs recorded on the workflow metadata
+    static final String METADATA_PROCESSED = "aiTaggingProcessed";
+    static final String METADATA_TOTAL = "aiTaggingTotal";
+    static final String METADATA_THROUGHPUT = "aiTaggingItemsPerMinute";
+
+    // Per stage timing, e.g. aiTaggingStage.ai.millis
+    static final String METADATA_STAGE_PREFIX = "aiTaggingStage.";
+
+    private static final Logger LOG = LoggerFactory.getLogger(AITaggingJobConsumer.class);
+
+    @Reference
+    private ResourceResolverFactory resolverFactory;
+
+    @Reference
+    private TaggingPipelineService taggingPipelineService;
+
+    @Reference
+    private TaggingLeaseService taggingLeaseService;
+
+    @Reference
+    private JobManager jobManager;
+
+    @Override
+    public JobResult process(Job job) {
+        String payloadPath = job.getProperty(PROPERTY_PAYLOAD, String.class);
+        String workItemId = job.getProperty(PROPERTY_WORK_ITEM_ID, String.class);
+        String leaseOwner = job.getProperty(PROPERTY_LEASE_OWNER, String.class);
+        String duplicate = job.getProperty(PROPERTY_DUPLICATE, String.class);
+        boolean bulk = job.getProperty(PROPERTY_BULK, false);
+        TaggingScheduler.Priority priority = getPriority(job, bulk);
+        boolean lastAttempt = job.getRetryCount() >= job.getNumberOfRetries();
+
+        if (payloadPath == null) {
+            LOG.error("AI tagging job {} has no payload", job.getId());
+            return JobResult.CANCEL;
+        }
+
+        StageTrace trace = new StageTrace();
+        try (ResourceResolver resolver = resolverFactory.getServiceResourceResolver(
+                Map.of(ResourceResolverFactory.SUBSERVICE, TaggingPipelineService.SUBSERVICE))) {
+
+            if (duplicate != null) {
+                // Another run covers the payload, the workflow only needs to move on
+                LOG.info("AI tagging payload={} mode={} attempt={} result=duplicate reason={}", payloadPath,
+                        bulk ? "bulk" : "single", job.getRetryCount() + 1, duplicate);
+                completeWorkItem(resolver, workItemId);
+                return JobResult.OK;
+            }
+
+            boolean succeeded = tag(resolver, payloadPath, workItemId, bulk, priority, trace);
+
+            LOG.info("AI tagging payload={} mode={} attempt={} result={} elapsedMs={} stages=[{}]", payloadPath,
+                    bulk ? "bulk" : "single", job.getRetryCount() + 1, succeeded ? "ok" : "failed",
+                    trace.getElapsedMillis(), trace);
+
+            if (!succeeded && !lastAttempt) {
+                LOG.info("AI tagging failed for {}, retry {} of {}", payloadPath,
+                        job.getRetryCount() + 1, job.getNumberOfRetries());
+                return JobResult.FAILED;
+            }
+
+            // Runs merged into this one while it was in flight may have seen newer content
+            int mergedRuns = 0;
+            while (leaseOwner != null && taggingLeaseService.release(payloadPath, leaseOwner)) {
+                if (++mergedRuns > MAX_MERGED_RUNS) {
+                    handOver(payloadPath, leaseOwner, bulk, priority);
+                    break;
+                }
+                resolver.refresh();
+                succeeded = tag(resolver, payloadPath, workItemId, bulk, priority, trace) && succeeded;
+                LOG.info("AI tagging payload={} mode={} result={} merged={} elapsedMs={}", payloadPath,
+                        bulk ? "bulk" : "single", succeeded ? "ok" : "failed", mergedRuns, trace.getElapsedMillis());
+            }
+
+            // Tagging is best effort, so the workflow moves on even when all retries failed
+            recordTrace(resolver, workItemId, trace);
+            completeWorkItem(resolver, workItemId);
+            return succeeded ? JobResult.OK : JobResult.CANCEL;
+
+        } catch (LoginException e) {
+            LOG.error("Could not open service resolver for subservice " + TaggingPipelineService.SUBSERVICE, e);
+            if (!lastAttempt) {
+                return JobResult.FAILED;
+            }
+            // Without a resolver the work item cannot be completed, but later runs must not
+            // be dropped as duplicates until the lease times out; runs merged into this one
+            // are given up with it
+            if (leaseOwner != null && taggingLeaseService.release(payloadPath, leaseOwner)) {
+                taggingLeaseService.release(payloadPath, leaseOwner);
+            }
+            LOG.error("AI tagging payload={} gave up, work item {} must be completed manually", payloadPath,
+                    workItemId);
+            return JobResult.CANCEL;
+        }
+    }
+
+    /**
+     * Pass the still held lease of a payload that keeps changing to a new job, so this job
+     * can finish and the latest content is tagged without waiting for the lease timeout
+     */
+    private void handOver(String payloadPath, String leaseOwner, boolean bulk, TaggingScheduler.Priority priority) {
+        Map<String, Object> properties = new HashMap<>();
+        properties.put(PROPERTY_PAYLOAD, payloadPath);
+        properties.put(PROPERTY_LEASE_OWNER, leaseOwner);
+        properties.put(PROPERTY_BULK, bulk);
+        properties.put(PROPERTY_PRIORITY, priority.name());
+
+        if (jobManager.addJob(getTopic(bulk), properties) != null) {
+            LOG.info("Payload {} keeps changing while being tagged, continuing in a new job", payloadPath);
+        } else if (taggingLeaseService.release(payloadPath, leaseOwner)) {
+            LOG.warn("Could not enqueue AI tagging job for {}, leaving it to the lease timeout", payloadPath);
+        } else {
+            LOG.warn("Could not enqueue AI tagging job for {}, released its lease", payloadPath);
+        }
+    }
+
+    /**
+     * @return the topic for bulk or single payload jobs, each has its own queue
+     */
+    public static String getTopic(boolean bulk) {
+        return bulk ? TOPIC_BULK : TOPIC;
+    }
+
+    private boolean tag(ResourceResolver resolver, String payloadPath, String workItemId, boolean bulk,
+                        TaggingScheduler.Priority priority, StageTrace trace) {
+        Resource payload = resolver.getResource(payloadPath);
+        if (payload == null) {
+            LOG.warn("AI tagging payload no longer exists: {}", payloadPath);
+            return true;
+        }
+
+        try {
+            if (bulk) {
+                return taggingPipelineService.processBulk(payload, resolver,
+                        (processed, total, elapsedMillis) ->
+                                recordProgress(resolver, workItemId, processed, total, elapsedMillis), priority,
+                        trace);
+            }
+            return taggingPipelineService.process(payload, resolver, priority, trace);
+        } catch (RuntimeException e) {
+            // Counts as a failed attempt, so the last attempt still completes the work item
+            LOG.error("AI tagging failed for " + payloadPath, e);
+            resolver.revert();
+            return false;
+        }
+    }
+
+    /**
+     * Priority set on the job, else editor priority for single payloads and backfill priority for bulk runs
+     */
+    private TaggingScheduler.Priority getPriority(Job job, boolean bulk) {
+        String priority = job.getProperty(PROPERTY_PRIORITY, String.class);
+        if (priority != null) {
+            try {
+                return TaggingScheduler.Priority.valueOf(priority);
+            } catch (IllegalArgumentException e) {
+                LOG.warn("Unknown priority {} on AI tagging job {}", priority, job.getId());
+            }
+        }
+        return bulk ? TaggingScheduler.Priority.BACKFILL : TaggingScheduler.Priority.EDITOR;
+    }
+
+    private void recordProgress(ResourceResolver resolver, String workItemId, int processed, int total,
+                                long elapsedMillis) {
+        updateMetaData(resolver, workItemId, metaData -> {
+            metaData.put(METADATA_PROCESSED, processed);
+            metaData.put(METADATA_TOTAL, total);
+            metaData.put(METADATA_THROUGHPUT, elapsedMillis > 0 ? processed * 60000L / elapsedMillis : processed);
+        });
+    }
+
+    private void recordTrace(ResourceResolver resolver, String workItemId, StageTrace trace) {
+        Map<String, Long> allocatedBytes = trace.getAllocatedBytes();
+        updateMetaData(resolver, workItemId, metaData -> trace.getMillis().forEach((stage, millis) -> {
+            metaData.put(METADATA_STAGE_PREFIX + stage + ".millis", millis);
+            metaData.put(METADATA_STAGE_PREFIX + stage + ".allocatedBytes", allocatedBytes.get(stage));
+        }));
+    }
+
+    private void updateMetaData(ResourceResolver resolver, String workItemId, Consumer<MetaDataMap> update) {
+        WorkflowSession workflowSession = workItemId != null ? resolver.adaptTo(WorkflowSession.class) : null;
+        if (workflowSession == null) {
+            return;
+        }
+
+        try {
+            Workflow workflow = workflowSession.getWorkItem(workItemId).getWorkflow();
+            WorkflowData workflowData = workflow.getWorkflowData();
+            update.accept(workflowData.getMetaDataMap());
+            workflowSession.updateWorkflowData(workflow, workflowData);
+        } catch (WorkflowException e) {
+            LOG.warn("Could not update metadata of work item {}: {}", workItemId, e.getMessage());
+        }
+    }
+
+    private void completeWorkItem(ResourceResolver resolver, String workItemId) {
+        if (workItemId == null) {
+            return;
+        }
+
+        WorkflowSession workflowSession = resolver.adaptTo(WorkflowSession.class);
+        if (workflowSession == null) {
+            LOG.error("Could not get WorkflowSession to complete work item {}", workItemId);
+            return;
+        }
+
+        try {
+            WorkItem workItem = workflowSession.getWorkItem(workItemId);
+            List<Route> routes = workflowSession.getRoutes(workItem, false);
+            if (routes.isEmpty()) {
+                LOG.error("No route to advance work item {}", workItemId);
+                return;
+            }
+            workflowSession.complete(workItem, routes.get(0));
+        } catch (WorkflowException e) {
+            LOG.error("Could not complete work item " + workItemId, e);
+        }
+    }
+}
@@ -0,0 +1,324 @@
+package com.mycompany.core.listeners;
+
+import com.day.cq.commons.jcr.JcrConstants;
+import com.mycompany.core.jobs.AITaggingJobConsumer;
+import com.mycompany.core.services.TaggingLeaseService;
+import com.mycompany.core.services.TaggingScheduler;
+import com.mycompany.core.services.TextExtractionService;
+import com.mycompany.core.utils.ChangeRingBuffer;
+import com.mycompany.core.utils.PathGlob;
+import com.mycompany.core.utils.TaggingState;
+import org.apache.sling.api.resource.observation.ResourceChange;
+import org.apache.sling.api.resource.observation.ResourceChangeListener;
+import org.apache.sling.commons.metrics.Histogram;
+import org.apache.sling.commons.metrics.Meter;
+import org.apache.sling.commons.metrics.MetricsService;
+import org.apache.sling.event.jobs.JobManager;
+import org.osgi.service.component.annotations.Activate;
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Deactivate;
+import org.osgi.service.component.annotations.Reference;
+import org.osgi.service.metatype.annotations.AttributeDefinition;
+import org.osgi.service.metatype.annotations.Designate;
+import org.osgi.service.metatype.annotations.ObjectClassDefinition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Tags pages after editors changed their text. Changes are collected per page; once a page
+ * saw no change for the quiet period, one tagging job is enqueued for it. Changes made by
+ * the ignored users, such as the tags and tagging state the pipeline writes as its service
+ * user, changes that only touch properties no extractor reads and changes to excluded paths
+ * are ignored. Property names are not reported for every change, so the user is what keeps
+ * the pipeline's own writes from triggering another run. Only changes made on this
+ * instance are received.
+ * <p>
+ * The observation thread only filters changes and adds them to a bounded ring buffer; the
+ * listener's own thread drains the buffer in batches. Changes dropped when the buffer
+ * overflows, e.g. during a bulk import, are metered; the backfill task tags those pages
+ * once it finds their tags stale.
+ */
+@Component(service = ResourceChangeListener.class)
+@Designate(ocd = AITaggingChangeListener.Config.class)
+public class AITaggingChangeListener implements ResourceChangeListener {
+
+    @ObjectClassDefinition(name = "AI Tagging Change Listener",
+                           description = "Tags pages once edits to their text have settled")
+    public @interface Config {
+
+        @AttributeDefinition(name = "Paths", description = "Paths below which page changes are tagged")
+        String[] resource_paths() default {"/content/myaemproject"};
+
+        @AttributeDefinition(name = "Change Types")
+        String[] resource_change_types() default {"ADDED", "CHANGED", "REMOVED"};
+
+        @AttributeDefinition(name = "Enabled")
+        boolean enabled() default false;
+
+        @AttributeDefinition(name = "Quiet Period Seconds",
+                             description = "Time without changes to a page before it is tagged")
+        int quiet_period_seconds() default 10;
+
+        @AttributeDefinition(name = "Excluded Paths",
+                             description = "Path patterns whose changes are ignored; * matches within a segment, "
+                                     + "** across segments")
+        String[] excluded_paths() default {};
+
+        @AttributeDefinition(name = "Ignored Users",
+                             description = "Users whose changes are ignored, e.g. the service user tags are "
+                                     + "written with")
+        String[] ignored_users() default {"myaemproject-ai-tagging-service"};
+
+        @AttributeDefinition(name = "Buffer Capacity",
+                             description = "Changes buffered between the observation thread and the listener")
+        int buffer_capacity() default 10000;
+
+        @AttributeDefinition(name = "Batch Size",
+                             description = "Changes taken from the buffer at once")
+        int batch_size() default 500;
+
+        @AttributeDefinition(name = "Overflow Policy",
+                             description = "Change dropped when the buffer is full: DROP_OLDEST or DROP_NEWEST")
+        String overflow_policy() default "DROP_OLDEST";
+    }
+
+    static final String METRIC_CHANGES_ENQUEUED = "myaemproject.aitagging.changes.enqueued";
+    static final String METRIC_CHANGES_IGNORED = "myaemproject.aitagging.changes.ignored";
+    static final String METRIC_CHANGES_DROPPED = "myaemproject.aitagging.changes.dropped";
+    static final String METRIC_CHANGES_LAG = "myaemproject.aitagging.changes.lag";
+
+    private static final String CONTENT_SEGMENT = "/" + JcrConstants.JCR_CONTENT;
+    private static final String STATE_SEGMENT = CONTENT_SEGMENT + "/" + TaggingState.NODE_NAME;
+
+    private static final Logger LOG = LoggerFactory.getLogger(AITaggingChangeListener.class);
+
+    @Reference
+    private JobManager jobManager;
+
+    @Reference
+    private TaggingLeaseService taggingLeaseService;
+
+    @Reference
+    private TextExtractionService textExtractionService;
+
+    @Reference
+    private MetricsService metricsService;
+
+    // Time of the last change per page path
+    private final Map<String, Long> pending = new ConcurrentHashMap<>();
+
+    private ChangeRingBuffer<PageChange> buffer;
+    private ScheduledExecutorService executor;
+    private Meter enqueued;
+    private Meter ignored;
+    private Meter dropped;
+    private Histogram lag;
+    private boolean enabled;
+    private long quietMillis;
+    private List<PathGlob> excludedPaths;
+    private Set<String> ignoredUsers;
+    private int batchSize;
+
+    @Activate
+    protected void activate(Config config) {
+        enabled = config.enabled();
+        quietMillis = TimeUnit.SECONDS.toMillis(Math.max(1, config.quiet_period_seconds()));
+        excludedPaths = Arrays.stream(config.excluded_paths()).map(PathGlob::compile).collect(Collectors.toList());
+        ignoredUsers = new HashSet<>(Arrays.asList(config.ignored_users()));
+        batchSize = Math.max(1, config.batch_size());
+        buffer = new ChangeRingBuffer<>(Math.max(1, config.buffer_capacity()), getOverflowPolicy(config));
+        enqueued = metricsService.meter(METRIC_CHANGES_ENQUEUED);
+        ignored = metricsService.meter(METRIC_CHANGES_IGNORED);
+        dropped = metricsService.meter(METRIC_CHANGES_DROPPED);
+        lag = metricsService.histogram(METRIC_CHANGES_LAG);
+
+        if (enabled) {
+            executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "ai-tagging-changes");
+                thread.setDaemon(true);
+                return thread;
+            });
+            long delay = Math.min(quietMillis, 1000L);
+            executor.scheduleWithFixedDelay(() -> flush(System.currentTimeMillis()),
+                    delay, delay, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @Deactivate
+    protected void deactivate() {
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+        pending.clear();
+    }
+
+    @Override
+    public void onChange(List<ResourceChange> changes) {
+        if (!enabled) {
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        for (ResourceChange change : changes) {
+            String pagePath = getPagePath(change.getPath());
+            if (pagePath == null || isTaggingState(change.getPath(), pagePath) || isIgnoredUser(change)) {
+                continue;
+            }
+            if (!touchesText(change) || isExcluded(change.getPath())) {
+                ignored.mark();
+            } else if (!buffer.offer(new PageChange(pagePath, now))) {
+                dropped.mark();
+            }
+        }
+    }
+
+    /**
+     * Take all buffered changes, then enqueue tagging for all pages that saw no change since
+     * the quiet period
+     */
+    void flush(long now) {
+        drain(now);
+
+        for (Map.Entry<String, Long> entry : pending.entrySet()) {
+            String pagePath = entry.getKey();
+            long lastChange = entry.getValue();
+            if (now - lastChange >= quietMillis && pending.remove(pagePath, lastChange)) {
+                try {
+                    enqueue(pagePath, now);
+                } catch (RuntimeException e) {
+                    LOG.error("Could not enqueue AI tagging for " + pagePath, e);
+                }
+            }
+        }
+    }
+
+    private void drain(long now) {
+        List<PageChange> batch = new ArrayList<>(Math.min(batchSize, buffer.capacity()));
+        // Bounded, so changes arriving meanwhile cannot hold up the flush
+        int taken = 0;
+        while (taken < buffer.capacity()) {
+            int count = buffer.drainTo(batch, batchSize);
+            if (count == 0) {
+                break;
+            }
+            taken += count;
+            lag.update(Math.max(0, now - batch.get(0).time));
+            for (PageChange change : batch) {
+                pending.merge(change.pagePath, change.time, Math::max);
+            }
+            batch.clear();
+        }
+    }
+
+    private void enqueue(String pagePath, long now) {
+        String owner = "change-" + UUID.randomUUID();
+        TaggingLeaseService.Outcome lease = taggingLeaseService.acquire(pagePath, owner);
+        if (lease == TaggingLeaseService.Outcome.IN_FLIGHT) {
+            // The running tagging picks up the change once it is done
+            return;
+        }
+        if (lease == TaggingLeaseService.Outcome.QUIET) {
+            // Tagged just before the change; try again after another quiet period
+            pending.putIfAbsent(pagePath, now);
+            return;
+        }
+
+        Map<String, Object> properties = new HashMap<>();
+        properties.put(AITaggingJobConsumer.PROPERTY_PAYLOAD, pagePath);
+        properties.put(AITaggingJobConsumer.PROPERTY_LEASE_OWNER, owner);
+        properties.put(AITaggingJobConsumer.PROPERTY_PRIORITY, TaggingScheduler.Priority.RECENTLY_MODIFIED.name());
+        if (jobManager.addJob(AITaggingJobConsumer.TOPIC, properties) == null) {
+            taggingLeaseService.release(pagePath, owner);
+            LOG.error("Could not enqueue AI tagging job for {}", pagePath);
+            return;
+        }
+        enqueued.mark();
+        LOG.debug("Enqueued AI tagging job for changed page: {}", pagePath);
+    }
+
+    /**
+     * @return true if the change may alter the extracted text; changes without property names
+     *         (added or removed components) always may
+     */
+    private boolean touchesText(ResourceChange change) {
+        Set<String> added = change.getAddedPropertyNames();
+        Set<String> changed = change.getChangedPropertyNames();
+        Set<String> removed = change.getRemovedPropertyNames();
+        if (added == null && changed == null && removed == null) {
+            return true;
+        }
+
+        Set<String> textProperties = textExtractionService.getTextPropertyNames();
+        return containsAny(textProperties, added) || containsAny(textProperties, changed)
+                || containsAny(textProperties, removed);
+    }
+
+    private boolean isIgnoredUser(ResourceChange change) {
+        String userId = change.getUserId();
+        return userId != null && ignoredUsers.contains(userId);
+    }
+
+    private boolean isExcluded(String path) {
+        for (PathGlob excluded : excludedPaths) {
+            if (excluded.matches(path)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static ChangeRingBuffer.OverflowPolicy getOverflowPolicy(Config config) {
+        try {
+            return ChangeRingBuffer.OverflowPolicy.valueOf(config.overflow_policy());
+        } catch (IllegalArgumentException e) {
+            LOG.warn("Unknown overflow policy {}, dropping the oldest changes", config.overflow_policy());
+            return ChangeRingBuffer.OverflowPolicy.DROP_OLDEST;
+        }
+    }
+
+    private static boolean isTaggingState(String path, String pagePath) {
+        String statePath = pagePath + STATE_SEGMENT;
+        return path.equals(statePath) || path.startsWith(statePath + "/");
+    }
+
+    private static boolean containsAny(Set<String> textProperties, Set<String> names) {
+        return names != null && names.stream().anyMatch(textProperties::contains);
+    }
+
+    /**
+     * @return Path of the page whose content the path lies in, or null outside page content
+     */
+    static String getPagePath(String path) {
+        int index = path.indexOf(CONTENT_SEGMENT);
+        if (index <= 0) {
+            return null;
+        }
+        int end = index + CONTENT_SEGMENT.length();
+        return end == path.length() || path.charAt(end) == '/' ? path.substring(0, index) : null;
+    }
+
+    private static final class PageChange {
+        private final String pagePath;
+        private final long time;
+
+        private PageChange(String pagePath, long time) {
+            this.pagePath = pagePath;
+            this.time = time;
+        }
+    }
+}
@@ -30,6 +30,7 @@ import org.apache.sling.models.annotations.injectorspecific.ValueMapValue;
 
 import com.day.cq.wcm.api.Page;
 import com.day.cq.wcm.api.PageManager;
+import com.mycompany.core.services.ModelStateCache;
 
 import java.util.Optional;
 
@@ -44,17 +45,26 @@ public class HelloWorldModel {
     private Resource currentResource;
     @SlingObject
     private ResourceResolver resourceResolver;
+    @OSGiService(injectionStrategy=InjectionStrategy.OPTIONAL)
+    private ModelStateCache modelStateCache;
 
     private String message;
 
     @PostConstruct
     protected void init() {
+        // The message only depends on the resource and its location, so it is computed once per edit
+        message = modelStateCache != null
+                ? modelStateCache.get(currentResource, HelloWorldModel.class, this::buildMessage)
+                : buildMessage(currentResource);
+    }
+
+    private String buildMessage(Resource resource) {
         PageManager pageManager = resourceResolver.adaptTo(PageManager.class);
         String currentPagePath = Optional.ofNullable(pageManager)
-                .map(pm -> pm.getContainingPage(currentResource))
+                .map(pm -> pm.getContainingPage(resource))
                 .map(Page::getPath).orElse("");
 
-        message = "Hello World!\n"
+        return "Hello World!\n"
             + "Resource type is: " + resourceType + "\n"
             + "Current page is:  " + currentPagePath + "\n";
     }
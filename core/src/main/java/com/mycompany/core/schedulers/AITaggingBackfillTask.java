@@ -0,0 +1,442 @@
+package com.mycompany.core.schedulers;
+
+import com.day.cq.commons.jcr.JcrConstants;
+import com.day.cq.wcm.api.Page;
+import com.day.cq.wcm.api.PageManager;
+import com.mycompany.core.jobs.AITaggingJobConsumer;
+import com.mycompany.core.services.OpenAIService;
+import com.mycompany.core.services.TagProviderService;
+import com.mycompany.core.services.TaggingLeaseService;
+import com.mycompany.core.services.TaggingPipelineService;
+import com.mycompany.core.services.TaggingScheduler;
+import com.mycompany.core.utils.ContentFingerprint;
+import com.mycompany.core.utils.StageTrace;
+import com.mycompany.core.utils.TaggingState;
+import org.apache.sling.api.resource.LoginException;
+import org.apache.sling.api.resource.ModifiableValueMap;
+import org.apache.sling.api.resource.PersistenceException;
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.api.resource.ResourceResolverFactory;
+import org.apache.sling.api.resource.ResourceUtil;
+import org.apache.sling.api.resource.ValueMap;
+import org.apache.sling.commons.metrics.Meter;
+import org.apache.sling.commons.metrics.MetricsService;
+import org.apache.sling.event.jobs.JobManager;
+import org.osgi.service.component.annotations.Activate;
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Deactivate;
+import org.osgi.service.component.annotations.Modified;
+import org.osgi.service.component.annotations.Reference;
+import org.osgi.service.metatype.annotations.AttributeDefinition;
+import org.osgi.service.metatype.annotations.Designate;
+import org.osgi.service.metatype.annotations.ObjectClassDefinition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.util.ArrayDeque;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Tags pages that were never tagged, or whose tags are stale, below the configured roots.
+ * Every run handles at most one batch of pages and stores a cursor, so the next run (also
+ * after a restart) continues after the last page handled. Runs on the cluster leader only,
+ * and on its own thread, so throttled AI calls do not hold a thread of the scheduler pool.
+ */
+@Designate(ocd = AITaggingBackfillTask.Config.class)
+@Component(service = Runnable.class)
+public class AITaggingBackfillTask implements Runnable {
+
+    @ObjectClassDefinition(name = "AI Tagging Backfill",
+                           description = "Tags untagged and stale pages in throttled batches")
+    public static @interface Config {
+
+        @AttributeDefinition(name = "Cron-job expression")
+        String scheduler_expression() default "0 */15 * * * ?";
+
+        @AttributeDefinition(name = "Concurrent task",
+                             description = "Whether or not to schedule this task concurrently")
+        boolean scheduler_concurrent() default false;
+
+        @AttributeDefinition(name = "Run on",
+                             description = "Instances of the cluster the task runs on")
+        String scheduler_runOn() default "LEADER";
+
+        @AttributeDefinition(name = "Enabled")
+        boolean enabled() default false;
+
+        @AttributeDefinition(name = "Roots",
+                             description = "Pages below which untagged and stale pages are tagged")
+        String[] roots() default {"/content/myaemproject"};
+
+        @AttributeDefinition(name = "Batch Size",
+                             description = "Maximum number of pages tagged per run")
+        int batch_size() default 50;
+
+        @AttributeDefinition(name = "Requests per Minute",
+                             description = "Target rate of AI requests")
+        int requests_per_minute() default 30;
+
+        @AttributeDefinition(name = "Max Load per CPU",
+                             description = "The run stops early once the system load average per CPU exceeds this")
+        double max_load_per_cpu() default 0.75;
+    }
+
+    static final String CHECKPOINT_PATH = "/var/myaemproject/aitagging/backfill";
+    static final String PN_ROOT = "root";
+    static final String PN_CURSOR = "cursor";
+    static final String PN_LAST_RUN = "lastRun";
+    static final String PN_LAST_COMPLETED = "lastCompleted";
+
+    static final String METRIC_BACKFILL_TAGGED = "myaemproject.aitagging.backfill.tagged";
+
+    // Runs of a leased page after edits were merged into it
+    private static final int MAX_MERGED_RUNS = 3;
+
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+
+    @Reference
+    private ResourceResolverFactory resolverFactory;
+
+    @Reference
+    private TaggingPipelineService taggingPipelineService;
+
+    @Reference
+    private TaggingLeaseService taggingLeaseService;
+
+    @Reference
+    private TagProviderService tagProviderService;
+
+    @Reference
+    private OpenAIService openAIService;
+
+    @Reference
+    private MetricsService metricsService;
+
+    @Reference
+    private JobManager jobManager;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+    private ExecutorService executor;
+    private Meter taggedMeter;
+    private boolean enabled;
+    private String[] roots;
+    private int batchSize;
+    private long requestIntervalMillis;
+    private double maxLoadPerCpu;
+
+    @Activate
+    protected void activate(final Config config) {
+        executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "ai-tagging-backfill");
+            thread.setDaemon(true);
+            return thread;
+        });
+        modified(config);
+    }
+
+    @Modified
+    protected void modified(final Config config) {
+        enabled = config.enabled();
+        roots = config.roots();
+        batchSize = Math.max(1, config.batch_size());
+        requestIntervalMillis = 60000L / Math.max(1, config.requests_per_minute());
+        maxLoadPerCpu = config.max_load_per_cpu();
+        taggedMeter = metricsService.meter(METRIC_BACKFILL_TAGGED);
+    }
+
+    @Deactivate
+    protected void deactivate() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Start a batch on the backfill thread, unless the previous one is still running
+     */
+    @Override
+    public void run() {
+        if (!enabled || roots.length == 0) {
+            return;
+        }
+        if (!running.compareAndSet(false, true)) {
+            logger.debug("AI tagging backfill batch still running, skipping this run");
+            return;
+        }
+
+        executor.execute(() -> {
+            try {
+                runBatch();
+            } finally {
+                running.set(false);
+            }
+        });
+    }
+
+    void runBatch() {
+        try (ResourceResolver resolver = resolverFactory.getServiceResourceResolver(
+                Map.of(ResourceResolverFactory.SUBSERVICE, TaggingPipelineService.SUBSERVICE))) {
+            backfill(resolver);
+        } catch (LoginException e) {
+            logger.error("Could not open service resolver for subservice " + TaggingPipelineService.SUBSERVICE, e);
+        } catch (PersistenceException e) {
+            logger.error("Could not store backfill checkpoint", e);
+        }
+    }
+
+    private void backfill(ResourceResolver resolver) throws PersistenceException {
+        Resource checkpoint = ResourceUtil.getOrCreateResource(resolver, CHECKPOINT_PATH,
+                Map.of(JcrConstants.JCR_PRIMARYTYPE, JcrConstants.NT_UNSTRUCTURED), "sling:Folder", true);
+        ValueMap state = checkpoint.getValueMap();
+        int rootIndex = Math.min(state.get(PN_ROOT, 0), roots.length - 1);
+
+        String vocabularyVersion = tagProviderService.getVocabulary().getVersion();
+        Backfill backfill = new Backfill(vocabularyVersion, openAIService.getModel(),
+                state.get(PN_CURSOR, String.class));
+        PageManager pageManager = resolver.adaptTo(PageManager.class);
+
+        while (pageManager != null && backfill.canContinue()) {
+            Page root = pageManager.getPage(roots[rootIndex]);
+            if (root != null && !backfill.walk(root, resolver, checkpoint, rootIndex)) {
+                break;
+            }
+
+            // Root done, move on to the next one
+            rootIndex = (rootIndex + 1) % roots.length;
+            backfill.cursor = null;
+            saveCheckpoint(checkpoint, rootIndex, null, rootIndex == 0);
+            if (rootIndex == 0) {
+                break;
+            }
+        }
+
+        saveCheckpoint(checkpoint, rootIndex, backfill.cursor, false);
+        logger.info("AI tagging backfill root={} cursor={} visited={} tagged={} unchanged={} failed={} "
+                        + "stoppedEarly={}", roots[rootIndex], backfill.cursor, backfill.visited, backfill.tagged,
+                backfill.unchanged, backfill.failed, backfill.overloaded);
+    }
+
+    private void saveCheckpoint(Resource checkpoint, int rootIndex, String cursor, boolean completed)
+            throws PersistenceException {
+        ModifiableValueMap properties = checkpoint.adaptTo(ModifiableValueMap.class);
+        if (properties == null) {
+            throw new PersistenceException("Backfill checkpoint is not modifiable: " + checkpoint.getPath());
+        }
+
+        properties.put(PN_ROOT, rootIndex);
+        if (cursor != null) {
+            properties.put(PN_CURSOR, cursor);
+        } else {
+            properties.remove(PN_CURSOR);
+        }
+        properties.put(PN_LAST_RUN, Calendar.getInstance());
+        if (completed) {
+            properties.put(PN_LAST_COMPLETED, Calendar.getInstance());
+        }
+        checkpoint.getResourceResolver().commit();
+    }
+
+    /**
+     * @return true if the system load per CPU is above the ceiling; not measurable load never is
+     */
+    private boolean isOverloaded() {
+        OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+        double load = os.getSystemLoadAverage();
+        return load >= 0 && load / os.getAvailableProcessors() > maxLoadPerCpu;
+    }
+
+    /**
+     * State of a single backfill run
+     */
+    private final class Backfill {
+        private final String vocabularyVersion;
+        private final String model;
+        private final String owner = "backfill-" + UUID.randomUUID();
+        // Last page handled; null before the first page of a root
+        private String cursor;
+        private long lastRequest;
+        private int visited;
+        private int tagged;
+        // Selected pages the pipeline found unchanged or without text; they do not use up the batch
+        private int unchanged;
+        private int failed;
+        private boolean overloaded;
+
+        private Backfill(String vocabularyVersion, String model, String cursor) {
+            this.vocabularyVersion = vocabularyVersion;
+            this.model = model;
+            this.cursor = cursor;
+        }
+
+        private boolean canContinue() {
+            return tagged + failed < batchSize && !overloaded && !Thread.currentThread().isInterrupted();
+        }
+
+        /**
+         * Walk the pages of a root in pre-order, resuming after the cursor
+         * @return true once the whole root was walked
+         */
+        private boolean walk(Page root, ResourceResolver resolver, Resource checkpoint, int rootIndex)
+                throws PersistenceException {
+            // A cursor that was deleted or lies outside the root restarts the root
+            String resumeAfter = cursor != null && cursor.startsWith(root.getPath() + "/")
+                    && resolver.getResource(cursor) != null ? cursor : null;
+            Deque<Iterator<Page>> levels = new ArrayDeque<>();
+            levels.push(Collections.singletonList(root).iterator());
+
+            while (!levels.isEmpty()) {
+                Iterator<Page> pages = levels.peek();
+                if (!pages.hasNext()) {
+                    levels.pop();
+                    continue;
+                }
+
+                Page page = pages.next();
+                if (resumeAfter != null) {
+                    // Earlier runs handled everything up to the cursor; only its ancestors lead there
+                    if (page.getPath().equals(resumeAfter)) {
+                        resumeAfter = null;
+                        levels.push(page.listChildren());
+                    } else if (resumeAfter.startsWith(page.getPath() + "/")) {
+                        levels.push(page.listChildren());
+                    }
+                    continue;
+                }
+
+                if (!canContinue()) {
+                    return false;
+                }
+
+                visited++;
+                if (needsTagging(page)) {
+                    if (isOverloaded()) {
+                        overloaded = true;
+                        return false;
+                    }
+                    tag(page, resolver);
+                    saveCheckpoint(checkpoint, rootIndex, page.getPath(), false);
+                }
+                cursor = page.getPath();
+                levels.push(page.listChildren());
+            }
+
+            return true;
+        }
+
+        private boolean needsTagging(Page page) {
+            TaggingState state = TaggingState.read(page.getContentResource());
+            if (state == null) {
+                return true;
+            }
+
+            Calendar lastModified = page.getLastModified();
+            return !vocabularyVersion.equals(state.getVocabularyVersion())
+                    || !model.equals(state.getModel())
+                    || state.getLastTagged() == null
+                    || (lastModified != null && lastModified.after(state.getLastTagged()));
+        }
+
+        private void tag(Page page, ResourceResolver resolver) throws PersistenceException {
+            if (taggingLeaseService.acquire(page.getPath(), owner) != TaggingLeaseService.Outcome.ACQUIRED) {
+                return;
+            }
+
+            String contentPath = page.getPath() + "/" + JcrConstants.JCR_CONTENT;
+            long lastTagged = getLastTaggedMillis(resolver.getResource(contentPath));
+            boolean succeeded = true;
+            boolean handedOver = false;
+            int runs = 0;
+            do {
+                if (runs++ > MAX_MERGED_RUNS) {
+                    handOver(page.getPath());
+                    handedOver = true;
+                    break;
+                }
+                throttle();
+                StageTrace trace = new StageTrace();
+                Resource pageResource = resolver.getResource(page.getPath());
+                succeeded = pageResource != null && taggingPipelineService.process(pageResource, resolver,
+                        TaggingScheduler.Priority.BACKFILL, trace)
+                        && succeeded;
+                if (trace.getMillis().containsKey(StageTrace.AI)) {
+                    lastRequest = System.currentTimeMillis();
+                }
+            } while (taggingLeaseService.release(page.getPath(), owner));
+
+            if (!succeeded) {
+                // The pipeline only commits complete writes; discard anything a failed run staged
+                resolver.revert();
+                failed++;
+                return;
+            }
+
+            Resource contentResource = resolver.getResource(contentPath);
+            if (getLastTaggedMillis(contentResource) != lastTagged) {
+                tagged++;
+                taggedMeter.mark();
+            } else if (handedOver || contentResource == null) {
+                // The job taking over the lease tags the latest edits
+                unchanged++;
+            } else {
+                // A fingerprint skip writes nothing; without this the page would be selected
+                // again by every run for as long as it is modified after its last tagging.
+                // Pages without text never get a state from the pipeline, so record one for them
+                if (!TaggingState.touch(contentResource)) {
+                    TaggingState.write(contentResource, ContentFingerprint.of("", vocabularyVersion),
+                            vocabularyVersion, model, List.of(), null);
+                }
+                unchanged++;
+            }
+        }
+
+        /**
+         * Pass the still held lease of a page that keeps changing to a tagging job, so the
+         * batch can move on and the latest content is tagged without waiting for the lease timeout
+         */
+        private void handOver(String pagePath) {
+            Map<String, Object> properties = new HashMap<>();
+            properties.put(AITaggingJobConsumer.PROPERTY_PAYLOAD, pagePath);
+            properties.put(AITaggingJobConsumer.PROPERTY_LEASE_OWNER, owner);
+            properties.put(AITaggingJobConsumer.PROPERTY_PRIORITY, TaggingScheduler.Priority.RECENTLY_MODIFIED.name());
+
+            if (jobManager.addJob(AITaggingJobConsumer.TOPIC, properties) != null) {
+                logger.info("Page {} keeps changing while being backfilled, continuing in a new job", pagePath);
+            } else if (taggingLeaseService.release(pagePath, owner)) {
+                logger.warn("Could not enqueue AI tagging job for {}, leaving it to the lease timeout", pagePath);
+            } else {
+                logger.warn("Could not enqueue AI tagging job for {}, released its lease", pagePath);
+            }
+        }
+
+        private long getLastTaggedMillis(Resource contentResource) {
+            TaggingState state = TaggingState.read(contentResource);
+            return state != null && state.getLastTagged() != null ? state.getLastTagged().getTimeInMillis() : -1;
+        }
+
+        /**
+         * Wait until the next AI request keeps the run at the target rate
+         */
+        private void throttle() {
+            long wait = lastRequest + requestIntervalMillis - System.currentTimeMillis();
+            if (wait <= 0) {
+                return;
+            }
+            try {
+                Thread.sleep(wait);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
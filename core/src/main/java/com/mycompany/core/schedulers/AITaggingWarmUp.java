@@ -0,0 +1,236 @@
+package com.mycompany.core.schedulers;
+
+import com.day.cq.commons.jcr.JcrConstants;
+import com.mycompany.core.services.OpenAIService;
+import com.mycompany.core.services.TagProviderService;
+import com.mycompany.core.services.TaggingPipelineService;
+import com.mycompany.core.services.TextExtractionService;
+import com.mycompany.core.utils.StageTrace;
+import org.apache.sling.api.resource.LoginException;
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.api.resource.ResourceResolverFactory;
+import org.apache.sling.api.resource.SyntheticResource;
+import org.apache.sling.api.resource.ValueMap;
+import org.apache.sling.api.wrappers.ValueMapDecorator;
+import org.apache.sling.commons.metrics.MetricsService;
+import org.osgi.service.component.annotations.Activate;
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Deactivate;
+import org.osgi.service.component.annotations.Reference;
+import org.osgi.service.metatype.annotations.AttributeDefinition;
+import org.osgi.service.metatype.annotations.Designate;
+import org.osgi.service.metatype.annotations.ObjectClassDefinition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Warms up AI tagging once after activation, e.g. after a deployment or restart, so the
+ * first editors do not pay for it: reads the tag vocabulary into the cache of the
+ * {@link TagProviderService} and builds its prompt block, opens pooled connections to the
+ * AI endpoint and runs text extraction on a synthetic page until its classes are loaded and
+ * compiled. Runs on a thread of its own, so it does not delay
+ * the bundle start; its duration per stage is logged and recorded as metrics.
+ */
+@Designate(ocd = AITaggingWarmUp.Config.class)
+@Component(immediate = true)
+public class AITaggingWarmUp {
+
+    @ObjectClassDefinition(name = "AI Tagging Warm-Up",
+                           description = "Prepares AI tagging for its first requests after activation")
+    public static @interface Config {
+
+        @AttributeDefinition(name = "Enabled")
+        boolean enabled() default false;
+
+        @AttributeDefinition(name = "Connections",
+                             description = "Connections to the AI endpoint opened ahead of the first requests")
+        int connections() default 4;
+
+        @AttributeDefinition(name = "Extraction Runs",
+                             description = "Number of times text is extracted from the synthetic page")
+        int extraction_runs() default 200;
+    }
+
+    static final String METRIC_WARMUP_PREFIX = "myaemproject.aitagging.warmup.";
+    static final String METRIC_WARMUP_TOTAL = METRIC_WARMUP_PREFIX + "total";
+
+    // Not stored anywhere; only used as the path of the synthetic page
+    static final String SYNTHETIC_PAGE_PATH = "/var/myaemproject/aitagging/warmup";
+
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+
+    @Reference
+    private ResourceResolverFactory resolverFactory;
+
+    @Reference
+    private TagProviderService tagProviderService;
+
+    @Reference
+    private OpenAIService openAIService;
+
+    @Reference
+    private TextExtractionService textExtractionService;
+
+    @Reference
+    private MetricsService metricsService;
+
+    private ExecutorService executor;
+    private int connections;
+    private int extractionRuns;
+
+    @Activate
+    protected void activate(final Config config) {
+        connections = Math.max(0, config.connections());
+        extractionRuns = Math.max(1, config.extraction_runs());
+        if (!config.enabled()) {
+            return;
+        }
+
+        executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "ai-tagging-warmup");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.execute(this::warmUp);
+    }
+
+    @Deactivate
+    protected void deactivate() {
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+    }
+
+    void warmUp() {
+        StageTrace trace = new StageTrace();
+        try (ResourceResolver resolver = resolverFactory.getServiceResourceResolver(
+                Map.of(ResourceResolverFactory.SUBSERVICE, TaggingPipelineService.SUBSERVICE))) {
+            Map<String, String> availableTags;
+            try (StageTrace.Span span = trace.start(StageTrace.VOCABULARY)) {
+                availableTags = tagProviderService.getVocabulary().getTags();
+            }
+
+            int opened;
+            try (StageTrace.Span span = trace.start(StageTrace.AI)) {
+                opened = openAIService.warmUp(availableTags, connections);
+            }
+
+            int characters = 0;
+            try (StageTrace.Span span = trace.start(StageTrace.EXTRACTION)) {
+                Resource page = createSyntheticPage(resolver);
+                for (int run = 0; run < extractionRuns && !Thread.currentThread().isInterrupted(); run++) {
+                    characters = textExtractionService.extractText(page).length();
+                }
+            }
+
+            trace.getMillis().forEach((stage, millis) ->
+                    metricsService.timer(METRIC_WARMUP_PREFIX + stage).update(millis, TimeUnit.MILLISECONDS));
+            metricsService.timer(METRIC_WARMUP_TOTAL).update(trace.getElapsedMillis(), TimeUnit.MILLISECONDS);
+            logger.info("AI tagging warmed up in {} ms with {} tags, {} of {} connections and {} extracted "
+                    + "characters: {}", trace.getElapsedMillis(), availableTags.size(), opened, connections,
+                    characters, trace);
+        } catch (LoginException e) {
+            logger.error("Could not open service resolver for subservice " + TaggingPipelineService.SUBSERVICE, e);
+        } catch (RuntimeException e) {
+            logger.warn("AI tagging warm-up failed after {} ms", trace.getElapsedMillis(), e);
+        }
+    }
+
+    /**
+     * @return Content resource of a page holding the components text is usually extracted
+     *         from, including rich text, without touching the repository
+     */
+    static Resource createSyntheticPage(ResourceResolver resolver) {
+        String contentPath = SYNTHETIC_PAGE_PATH + "/" + JcrConstants.JCR_CONTENT;
+        SyntheticContent content = new SyntheticContent(resolver, contentPath, "myaemproject/components/page",
+                Map.of(JcrConstants.JCR_TITLE, "Electric SUVs",
+                        JcrConstants.JCR_DESCRIPTION, "Range, charging and prices of our electric SUVs"));
+        SyntheticContent root = content.addChild("root", "myaemproject/components/container", Map.of());
+        root.addChild("title", "myaemproject/components/title",
+                Map.of(JcrConstants.JCR_TITLE, "Our new electric SUV"));
+        root.addChild("text", "myaemproject/components/text",
+                Map.of("text", "<h2>Range &amp; charging</h2><p>The <b>new</b> model seats seven&nbsp;people and "
+                        + "charges from 10&ndash;80&#37; in <a href=\"/charging\">under 30 minutes</a>.</p>"
+                        + "<ul><li>Range &gt; 500 km</li><li>Heat pump</li></ul>", "textIsRich", true));
+        root.addChild("teaser", "myaemproject/components/teaser",
+                Map.of("pretitle", "Test drive", JcrConstants.JCR_TITLE, "Book a test drive",
+                        JcrConstants.JCR_DESCRIPTION, "At your nearest dealer"));
+        root.addChild("image", "myaemproject/components/image", Map.of("alt", "Electric SUV at a charger"));
+        return content;
+    }
+
+    /**
+     * In-memory resource with properties and children
+     */
+    private static final class SyntheticContent extends SyntheticResource {
+
+        private final ValueMap properties;
+        private final List<Resource> children = new ArrayList<>();
+
+        private SyntheticContent(ResourceResolver resolver, String path, String resourceType,
+                                 Map<String, Object> properties) {
+            super(resolver, path, resourceType);
+            Map<String, Object> values = new HashMap<>(properties);
+            values.put(JcrConstants.JCR_PRIMARYTYPE, JcrConstants.NT_UNSTRUCTURED);
+            values.put("sling:resourceType", resourceType);
+            this.properties = new ValueMapDecorator(values);
+        }
+
+        private SyntheticContent addChild(String name, String resourceType, Map<String, Object> properties) {
+            SyntheticContent child = new SyntheticContent(getResourceResolver(), getPath() + "/" + name,
+                    resourceType, properties);
+            children.add(child);
+            return child;
+        }
+
+        @Override
+        public ValueMap getValueMap() {
+            return properties;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T> T adaptTo(Class<T> type) {
+            if (type == ValueMap.class || type == Map.class) {
+                return (T) properties;
+            }
+            return super.adaptTo(type);
+        }
+
+        @Override
+        public Iterator<Resource> listChildren() {
+            return children.iterator();
+        }
+
+        @Override
+        public Iterable<Resource> getChildren() {
+            return children;
+        }
+
+        @Override
+        public boolean hasChildren() {
+            return !children.isEmpty();
+        }
+
+        @Override
+        public Resource getChild(String relPath) {
+            for (Resource child : children) {
+                if (child.getName().equals(relPath)) {
+                    return child;
+                }
+            }
+            return null;
+        }
+    }
+}
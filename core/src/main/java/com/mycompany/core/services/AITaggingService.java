@@ -22,6 +22,15 @@ public interface AITaggingService {
      */
     void applyTagsToPage(Page page, List<String> tagIds);
 
+    /**
+     * Apply tags to a page, optionally leaving the save to the caller so writes can be batched
+     * @param page The page to tag
+     * @param tagIds List of tag IDs
+     * @param autoSave Whether to save the changes immediately
+     * @return true if the tags of the page were changed
+     */
+    boolean applyTagsToPage(Page page, List<String> tagIds, boolean autoSave);
+
     /**
      * Apply tags to a resource (Content Fragment, Experience Fragment, or Asset)
      * @param resource The resource to tag
@@ -30,6 +39,16 @@ public interface AITaggingService {
      */
     void applyTagsToResource(Resource resource, List<String> tagIds, ResourceResolver resolver);
 
+    /**
+     * Apply tags to a resource, optionally leaving the save to the caller so writes can be batched
+     * @param resource The resource to tag
+     * @param tagIds List of tag IDs
+     * @param resolver Resource resolver holding the changes
+     * @param autoSave Whether to save the changes immediately
+     * @return true if the tags of the resource were changed
+     */
+    boolean applyTagsToResource(Resource resource, List<String> tagIds, ResourceResolver resolver, boolean autoSave);
+
     /**
      * Map AI concepts to AEM tag IDs (for backward compatibility)
      * @param concepts List of concept strings
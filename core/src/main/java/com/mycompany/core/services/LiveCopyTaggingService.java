@@ -0,0 +1,26 @@
+package com.mycompany.core.services;
+
+import com.day.cq.wcm.api.Page;
+import org.apache.sling.api.resource.PersistenceException;
+
+/**
+ * Shares the tags of MSM blueprints with their live copies, so content rolled out from a
+ * blueprint is analyzed only once. A live copy is analyzed on its own once it holds text
+ * of its own: components holding text with cancelled inheritance, or added locally.
+ */
+public interface LiveCopyTaggingService {
+
+    /**
+     * @param page Page that may be a live copy
+     * @return Path of the blueprint page whose text the page still inherits, or null
+     */
+    String getBlueprintPath(Page page);
+
+    /**
+     * Stage the tags and tagging state of a blueprint on all live copies that still inherit
+     * its text, and on their live copies in turn; the caller is responsible for committing
+     * @param blueprint Tagged page
+     * @return Number of live copies whose tags were written
+     */
+    int propagateTags(Page blueprint) throws PersistenceException;
+}
@@ -0,0 +1,32 @@
+package com.mycompany.core.services;
+
+import org.apache.sling.api.resource.Resource;
+
+import java.util.function.Function;
+
+/**
+ * Shared cache for state that Sling Models compute from their resource, so a component
+ * rendered many times does not repeat lookups such as finding its containing page.
+ * State is keyed by resource path, model class and the resource's last modification, and
+ * dropped when the resource or one of its ancestors changes. Resources without a last
+ * modification share one key, so their state is only dropped by the change event.
+ * <p>
+ * The key does not include the user. The loader runs with the resolver of whichever request
+ * misses first, and its result is served to every user. Loaders must therefore not depend on
+ * what that resolver may read: a lookup of an ancestor or a referenced resource that fails
+ * for one user would be cached for all of them, and a lookup that succeeds would expose it to
+ * users not allowed to read it. State that depends on access rights must not be cached here.
+ */
+public interface ModelStateCache {
+
+    /**
+     * Get the cached state of a model for a resource, computing it on a miss
+     * @param resource Resource the model is adapted from
+     * @param model Model class, separating the state of different models of one resource
+     * @param loader Computes the state from the resource, independent of the access rights of
+     *               its resolver; its result is cached unless null
+     * @param <T> Type of the state, which must be immutable
+     * @return Cached or newly computed state
+     */
+    <T> T get(Resource resource, Class<?> model, Function<Resource, T> loader);
+}
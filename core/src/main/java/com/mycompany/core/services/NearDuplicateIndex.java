@@ -0,0 +1,30 @@
+package com.mycompany.core.services;
+
+import com.mycompany.core.utils.MinHash;
+
+/**
+ * In-memory index of the {@link MinHash} signatures of tagged pages and assets, used to find
+ * already tagged content that is nearly the same as content about to be tagged.
+ */
+public interface NearDuplicateIndex {
+
+    /**
+     * Add or replace the signature of tagged content
+     * @param path Path of the page or asset
+     * @param signature Signature of its extracted content
+     */
+    void put(String path, int[] signature);
+
+    /**
+     * Remove the signature of a page or asset, e.g. once its stored tags cannot be reused
+     */
+    void remove(String path);
+
+    /**
+     * Find the indexed content most similar to a signature
+     * @param path Path of the page or asset being tagged; never returned
+     * @param signature Signature of its extracted content
+     * @return Path of the most similar content at or above the similarity threshold, or null
+     */
+    String findSimilar(String path, int[] signature);
+}
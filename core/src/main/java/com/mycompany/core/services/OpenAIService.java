@@ -9,4 +9,18 @@ public interface OpenAIService {
     List<String> generateTagSuggestions(String pageContent, Map<String, String> availableTags);
 
     String classifyContentType(String content);
+
+    /**
+     * @return The AI model suggestions are generated with
+     */
+    String getModel();
+
+    /**
+     * Prepare for the first suggestions after activation: build the prompt block of the
+     * vocabulary and open pooled connections to the AI endpoint, without generating anything
+     * @param availableTags Vocabulary the first suggestions are generated against
+     * @param connections Number of connections to open
+     * @return Number of connections that could be opened
+     */
+    int warmUp(Map<String, String> availableTags, int connections);
 }
@@ -0,0 +1,16 @@
+package com.mycompany.core.services;
+
+import com.adobe.granite.jmx.annotation.Description;
+
+import javax.management.openmbean.OpenDataException;
+import javax.management.openmbean.TabularData;
+
+@Description("Latency of sampled requests and component includes per resource type, selectors and extension")
+public interface RequestTimingMBean {
+
+    @Description("Count, mean and percentiles in milliseconds, slowest mean first")
+    TabularData getTimings() throws OpenDataException;
+
+    @Description("Drop all recorded latencies")
+    void reset();
+}
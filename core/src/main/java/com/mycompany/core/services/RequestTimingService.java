@@ -0,0 +1,22 @@
+package com.mycompany.core.services;
+
+import com.mycompany.core.utils.LatencyHistogram;
+
+import java.util.Map;
+
+/**
+ * Latency of sampled requests and component includes, aggregated per resource type,
+ * selectors and extension.
+ */
+public interface RequestTimingService {
+
+    /**
+     * @return Snapshots by key, e.g. {@code myaemproject/components/teaser|-|html}, slowest mean first
+     */
+    Map<String, LatencyHistogram.Snapshot> getTimings();
+
+    /**
+     * Drop all recorded latencies
+     */
+    void reset();
+}
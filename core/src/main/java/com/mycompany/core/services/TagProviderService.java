@@ -1,7 +1,10 @@
 package com.mycompany.core.services;
 
+import com.mycompany.core.utils.ContentFingerprint;
 import org.apache.sling.api.resource.ResourceResolver;
 
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 public interface TagProviderService {
@@ -12,9 +15,44 @@ public interface TagProviderService {
      */
     Map<String, String> getAllAvailableTags(ResourceResolver resolver);
 
+    /**
+     * Tag vocabulary AI tagging suggests from, read with the AI tagging service user and kept
+     * until a tag changes, so it is the same for every caller
+     * @return Cached vocabulary
+     */
+    Vocabulary getVocabulary();
+
 //    /**
 //     * Get formatted tags for AI prompt
 //     * @return Formatted string of tags for AI
 //     */
 //    String getFormattedTagsForAI();
+
+    /**
+     * Available tags together with their version
+     */
+    final class Vocabulary {
+
+        private final Map<String, String> tags;
+        private final String version;
+
+        public Vocabulary(Map<String, String> tags) {
+            this.tags = Collections.unmodifiableMap(new LinkedHashMap<>(tags));
+            this.version = ContentFingerprint.ofVocabulary(tags);
+        }
+
+        /**
+         * @return Map of tag ID to tag title
+         */
+        public Map<String, String> getTags() {
+            return tags;
+        }
+
+        /**
+         * @return Version of the tags, see {@link ContentFingerprint#ofVocabulary(Map)}
+         */
+        public String getVersion() {
+            return version;
+        }
+    }
 }
@@ -0,0 +1,31 @@
+package com.mycompany.core.services;
+
+public interface TaggingLeaseService {
+
+    /**
+     * Result of trying to lease a payload
+     */
+    enum Outcome {
+        /** The caller owns the payload until it releases it */
+        ACQUIRED,
+        /** Another run holds the payload; it will process the payload once more when done */
+        IN_FLIGHT,
+        /** Another run finished within the quiet window and the payload has not been modified since */
+        QUIET
+    }
+
+    /**
+     * Lease a payload for a tagging run; leases are stored in the repository and hold
+     * across cluster instances
+     * @param payloadPath Path of the page, asset or workflow package
+     * @param owner Identifies the run, e.g. the work item ID
+     */
+    Outcome acquire(String payloadPath, String owner);
+
+    /**
+     * Release a lease once the run is done
+     * @return true if duplicates arrived while the lease was held; the lease is then kept
+     *         and the owner should process the payload again before releasing once more
+     */
+    boolean release(String payloadPath, String owner);
+}
@@ -0,0 +1,98 @@
+package com.mycompany.core.services;
+
+import com.mycompany.core.utils.StageTrace;
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ResourceResolver;
+
+import java.util.List;
+
+public interface TaggingPipelineService {
+
+    /**
+     * Subservice name of the service user reading and tagging content
+     */
+    String SUBSERVICE = "ai-tagging";
+
+    /**
+     * Extract content, generate tag suggestions and apply them
+     * @param payload A page, a single asset, an asset folder or a workflow package
+     * @param resolver Resource resolver used for reading and writing
+     * @param priority Priority of the AI requests, see {@link TaggingScheduler}
+     * @param trace Collects the time and allocation spent per stage
+     * @return false if tagging failed and is worth retrying
+     */
+    boolean process(Resource payload, ResourceResolver resolver, TaggingScheduler.Priority priority,
+                    StageTrace trace);
+
+    /**
+     * Tag every page and asset of a subtree or workflow package
+     * @param payload Root page, asset folder or workflow package
+     * @param resolver Resource resolver used for writing
+     * @param listener Notified after every committed window, may be null
+     * @param priority Priority of the AI requests, see {@link TaggingScheduler}
+     * @param trace Collects the time and allocation spent per stage
+     * @return false if any page or asset failed and is worth retrying
+     */
+    boolean processBulk(Resource payload, ResourceResolver resolver, ProgressListener listener,
+                        TaggingScheduler.Priority priority, StageTrace trace);
+
+    /**
+     * Suggest tags for a page without writing them, e.g. for editors to review. Live copies
+     * inheriting their text are previewed through their blueprint.
+     * @param page Page resource
+     * @param resolver Resource resolver used for reading
+     * @param trace Collects the time and allocation spent per stage
+     * @return The preview, or null if the resource is not a page or has no text
+     */
+    Preview preview(Resource page, ResourceResolver resolver, StageTrace trace);
+
+    /**
+     * Version of the preview of a page, computed without extracting any text: it changes
+     * whenever the page is modified, the vocabulary changes or another model is configured
+     * @param page Page resource
+     * @return The version, or null if the resource is not a page or was never modified
+     */
+    String getPreviewVersion(Resource page);
+
+    /**
+     * Extracted and fingerprinted content of a page, whose tags are only suggested on request
+     */
+    interface Preview {
+
+        /**
+         * @return Fingerprint of the content and the vocabulary version it is tagged against
+         */
+        String getContentHash();
+
+        /**
+         * @return Version of the tag vocabulary
+         */
+        String getVocabularyVersion();
+
+        /**
+         * @return Model the tags are suggested by
+         */
+        String getModel();
+
+        /**
+         * Suggested tags, from the tagging state of unchanged content, from near-duplicate content,
+         * from recent suggestions for the same content or from the AI. Concurrent requests for the
+         * same content share a single AI request.
+         * @return Tag IDs, empty if the AI had no suggestions
+         */
+        List<String> getTagIds() throws InterruptedException;
+    }
+
+    /**
+     * Progress of a bulk run
+     */
+    interface ProgressListener {
+
+        /**
+         * @param processed Number of pages and assets processed so far
+         * @param total Number of pages and assets in the run
+         * @param elapsedMillis Time since the run started
+         */
+        void onProgress(int processed, int total, long elapsedMillis);
+    }
+}
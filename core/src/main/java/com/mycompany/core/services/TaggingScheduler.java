@@ -0,0 +1,45 @@
+package com.mycompany.core.services;
+
+import org.apache.sling.api.resource.Resource;
+
+/**
+ * Orders AI requests when they queue up: by priority class first, then by weighted fair
+ * share between sites, so a mass import on one site cannot starve editors on another.
+ */
+public interface TaggingScheduler {
+
+    /**
+     * Priority classes, most urgent first
+     */
+    enum Priority {
+        /** An editor started tagging and waits for the result */
+        EDITOR,
+        /** Content changed recently */
+        RECENTLY_MODIFIED,
+        /** Bulk runs and backfill */
+        BACKFILL
+    }
+
+    /**
+     * Site a page, asset or workflow package belongs to, derived from its cq:conf or content root
+     */
+    String getSite(Resource resource);
+
+    /**
+     * Wait until an AI request may run
+     * @param priority Priority class of the request
+     * @param site Site the request is for, see {@link #getSite(Resource)}
+     * @return Permit to close once the request is done
+     * @throws InterruptedException if interrupted while waiting
+     */
+    Permit acquire(Priority priority, String site) throws InterruptedException;
+
+    /**
+     * Permission to run one AI request
+     */
+    interface Permit extends AutoCloseable {
+
+        @Override
+        void close();
+    }
+}
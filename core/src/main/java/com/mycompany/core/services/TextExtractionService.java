@@ -0,0 +1,29 @@
+package com.mycompany.core.services;
+
+import org.apache.sling.api.resource.Resource;
+
+import java.util.Set;
+
+public interface TextExtractionService {
+
+    /**
+     * Extract the text content of a resource tree for AI processing
+     * @param resource Root of the tree, usually the jcr:content resource of a page
+     * @return Extracted text, at most the configured character budget long
+     */
+    String extractText(Resource resource);
+
+    /**
+     * Extract the text content of a resource tree with a budget of its own, e.g. for long
+     * content that is tagged in chunks
+     * @param resource Root of the tree, usually the jcr:content resource of a page
+     * @param maxCharacters Character budget
+     * @return Extracted text, at most maxCharacters long
+     */
+    String extractText(Resource resource, int maxCharacters);
+
+    /**
+     * @return Names of all properties text may be extracted from, by any extractor
+     */
+    Set<String> getTextPropertyNames();
+}
@@ -0,0 +1,40 @@
+package com.mycompany.core.services;
+
+import java.util.List;
+
+/**
+ * Knows where the text of a component lives. Extractors are registered as OSGi services
+ * with the {@link #RESOURCE_TYPES} property; proxy components are matched through their
+ * resource super types, and core component types may be given without their version
+ * (e.g. core/wcm/components/title).
+ */
+public interface TextExtractor {
+
+    /**
+     * Service property listing the sling:resourceTypes an extractor handles
+     */
+    String RESOURCE_TYPES = "extractor.resourceTypes";
+
+    /**
+     * @return Properties holding text on the component itself, in extraction order;
+     *         empty for components without content
+     */
+    List<String> getTextProperties();
+
+    /**
+     * @return Properties holding text on each direct child of the component,
+     *         e.g. cq:panelTitle on accordion and tabs items
+     */
+    List<String> getItemTextProperties();
+
+    /**
+     * @return Properties holding the path of referenced content whose text belongs to the
+     *         component, e.g. fragmentVariationPath of experience fragment components
+     */
+    List<String> getReferenceProperties();
+
+    /**
+     * @return false if nothing below the component is worth extracting
+     */
+    boolean includeChildren();
+}
@@ -1,12 +1,19 @@
 package com.mycompany.core.services.impl;
 
+import com.day.cq.commons.jcr.JcrConstants;
+import com.day.cq.dam.api.DamConstants;
+import com.day.cq.dam.commons.util.DamUtil;
 import com.day.cq.tagging.Tag;
 import com.day.cq.tagging.TagManager;
 import com.day.cq.wcm.api.Page;
 import com.mycompany.core.services.AITaggingService;
 import com.mycompany.core.services.OpenAIService;
+import com.mycompany.core.utils.TaggingEvents;
 import org.apache.sling.api.resource.Resource;
 import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.commons.metrics.Meter;
+import org.apache.sling.commons.metrics.MetricsService;
+import org.osgi.service.component.annotations.Activate;
 import org.osgi.service.component.annotations.Component;
 import org.osgi.service.component.annotations.Reference;
 import org.slf4j.Logger;
@@ -21,9 +28,25 @@ public class AITaggingServiceImpl implements AITaggingService {
 
     private static final Logger LOG = LoggerFactory.getLogger(AITaggingServiceImpl.class);
 
+    // Metric names; the ratio of skipped to performed writes is the no-op rate
+    static final String METRIC_TAG_WRITES = "myaemproject.aitagging.tagwrites";
+    static final String METRIC_TAG_WRITES_SKIPPED = "myaemproject.aitagging.tagwrites.skipped";
+
     @Reference
     private OpenAIService openAIService;
 
+    @Reference
+    private MetricsService metricsService;
+
+    private Meter tagWrites;
+    private Meter skippedWrites;
+
+    @Activate
+    protected void activate() {
+        tagWrites = metricsService.meter(METRIC_TAG_WRITES);
+        skippedWrites = metricsService.meter(METRIC_TAG_WRITES_SKIPPED);
+    }
+
     // Mapping of AI concepts to AEM tag IDs (for backward compatibility)
     private static final Map<String, String> CONCEPT_TAG_MAP = Map.ofEntries(
             Map.entry("article", "myaemproject:content-type/article"),
@@ -62,9 +85,21 @@ public class AITaggingServiceImpl implements AITaggingService {
 
     @Override
     public void applyTagsToPage(Page page, List<String> tagIds) {
+        applyTagsToPage(page, tagIds, true);
+    }
+
+    @Override
+    public boolean applyTagsToPage(Page page, List<String> tagIds, boolean autoSave) {
+        Object event = TaggingEvents.beginTagWrite();
+        boolean written = mergePageTags(page, tagIds, autoSave);
+        TaggingEvents.commitTagWrite(event, page.getPath(), tagIds != null ? tagIds.size() : 0, written);
+        return written;
+    }
+
+    private boolean mergePageTags(Page page, List<String> tagIds, boolean autoSave) {
         if (tagIds == null || tagIds.isEmpty()) {
             LOG.warn("No tags to apply to page: {}", page.getPath());
-            return;
+            return false;
         }
 
         ResourceResolver resolver = page.getContentResource().getResourceResolver();
@@ -72,13 +107,13 @@ public class AITaggingServiceImpl implements AITaggingService {
 
         if (tagManager == null) {
             LOG.error("Could not get TagManager");
-            return;
+            return false;
         }
 
         try {
             // Get existing tags from the page
             Tag[] existingTags = page.getTags();
-            LOG.info("Existing Tags: {}", Arrays.asList(existingTags));
+            LOG.debug("Existing Tags: {}", Arrays.asList(existingTags));
 
             // Convert tag IDs to Tag objects
             Tag[] newTags = tagIds.stream()
@@ -86,54 +121,73 @@ public class AITaggingServiceImpl implements AITaggingService {
                     .filter(Objects::nonNull)
                     .toArray(Tag[]::new);
 
-            LOG.info("New Tags: {}", Arrays.asList(newTags));
-
             if (newTags.length == 0) {
                 LOG.warn("No valid tags found to apply to page: {}", page.getPath());
-                return;
+                return false;
+            }
+
+            // Only the suggested tags the page does not carry yet need a write
+            Set<String> knownTagIds = toTagIds(existingTags);
+            Tag[] addedTags = Arrays.stream(newTags)
+                    .filter(tag -> knownTagIds.add(tag.getTagID()))
+                    .toArray(Tag[]::new);
+
+            if (addedTags.length == 0) {
+                skippedWrites.mark();
+                LOG.debug("Page {} already carries all suggested tags, skipping write", page.getPath());
+                return false;
             }
 
-            // Merge existing tags with new tags, removing duplicates
+            // Merge existing tags with the added ones
             Tag[] mergedTags = Stream.concat(
                             Arrays.stream(existingTags),
-                            Arrays.stream(newTags)
+                            Arrays.stream(addedTags)
                     )
-                    .distinct()
                     .toArray(Tag[]::new);
 
-            LOG.info("Merged Tags: {}", Arrays.asList(mergedTags));
             // Apply tags
-            tagManager.setTags(page.getContentResource(), mergedTags);
+            tagManager.setTags(page.getContentResource(), mergedTags, autoSave);
+            tagWrites.mark();
 
-            LOG.info("Applied tags to: {} {} {} {}", newTags, existingTags, mergedTags, page.getPath());
+            LOG.debug("Applied {} new tags to page {}: {}", addedTags.length, page.getPath(), toTagIds(addedTags));
+            return true;
 
         } catch (Exception e) {
             LOG.error("Error applying tags to page: " + page.getPath(), e);
+            return false;
         }
     }
 
     @Override
     public void applyTagsToResource(Resource resource, List<String> tagIds, ResourceResolver resolver) {
+        applyTagsToResource(resource, tagIds, resolver, true);
+    }
+
+    @Override
+    public boolean applyTagsToResource(Resource resource, List<String> tagIds, ResourceResolver resolver,
+                                       boolean autoSave) {
+        Object event = TaggingEvents.beginTagWrite();
+        boolean written = mergeResourceTags(resource, tagIds, resolver, autoSave);
+        TaggingEvents.commitTagWrite(event, resource.getPath(), tagIds != null ? tagIds.size() : 0, written);
+        return written;
+    }
+
+    private boolean mergeResourceTags(Resource resource, List<String> tagIds, ResourceResolver resolver,
+                                        boolean autoSave) {
         if (tagIds == null || tagIds.isEmpty()) {
             LOG.warn("No tags to apply to resource: {}", resource.getPath());
-            return;
+            return false;
         }
 
         TagManager tagManager = resolver.adaptTo(TagManager.class);
 
         if (tagManager == null) {
             LOG.error("Could not get TagManager");
-            return;
+            return false;
         }
 
         try {
-            // For Content Fragments and Experience Fragments, tags might be on jcr:content
-            Resource targetResource = resource;
-            Resource jcrContent = resource.getChild("jcr:content");
-
-            if (jcrContent != null) {
-                targetResource = jcrContent;
-            }
+            Resource targetResource = getTagTarget(resource);
 
             // Convert tag IDs to Tag objects
             Tag[] tags = tagIds.stream()
@@ -143,17 +197,52 @@ public class AITaggingServiceImpl implements AITaggingService {
 
             if (tags.length == 0) {
                 LOG.warn("No valid tags found to apply to resource: {}", resource.getPath());
-                return;
+                return false;
             }
 
-            // Apply tags
-            tagManager.setTags(targetResource, tags);
+            // Tags set by editors or DAM processing are kept, only the missing suggestions are added
+            Tag[] existingTags = tagManager.getTags(targetResource);
+            Set<String> knownTagIds = toTagIds(existingTags);
+            Tag[] addedTags = Arrays.stream(tags)
+                    .filter(tag -> knownTagIds.add(tag.getTagID()))
+                    .toArray(Tag[]::new);
 
-            LOG.info("Applied {} tags to resource: {}", tags.length, resource.getPath());
+            if (addedTags.length == 0) {
+                skippedWrites.mark();
+                LOG.debug("Resource {} already carries all suggested tags, skipping write", resource.getPath());
+                return false;
+            }
+
+            Tag[] mergedTags = Stream.concat(Arrays.stream(existingTags), Arrays.stream(addedTags))
+                    .toArray(Tag[]::new);
+            tagManager.setTags(targetResource, mergedTags, autoSave);
+            tagWrites.mark();
+
+            LOG.debug("Applied {} new tags to resource {}: {}", addedTags.length, resource.getPath(),
+                    toTagIds(addedTags));
+            return true;
 
         } catch (Exception e) {
             LOG.error("Error applying tags to resource: " + resource.getPath(), e);
+            return false;
+        }
+    }
+
+    /**
+     * Resolve the node holding cq:tags for a resource
+     */
+    private Resource getTagTarget(Resource resource) {
+        // Assets keep their tags with the rest of their metadata
+        if (DamUtil.isAsset(resource)) {
+            Resource metadata = resource.getChild(JcrConstants.JCR_CONTENT + "/" + DamConstants.METADATA_FOLDER);
+            if (metadata != null) {
+                return metadata;
+            }
         }
+
+        // For Content Fragments and Experience Fragments, tags might be on jcr:content
+        Resource jcrContent = resource.getChild(JcrConstants.JCR_CONTENT);
+        return jcrContent != null ? jcrContent : resource;
     }
 
     @Override
@@ -194,6 +283,15 @@ public class AITaggingServiceImpl implements AITaggingService {
                 .collect(Collectors.toList());
     }
 
+    /**
+     * Collect the IDs of the given tags
+     */
+    private static Set<String> toTagIds(Tag[] tags) {
+        return Arrays.stream(tags)
+                .map(Tag::getTagID)
+                .collect(Collectors.toCollection(LinkedHashSet::new));
+    }
+
     /**
      * Extract all text content from the page
      */
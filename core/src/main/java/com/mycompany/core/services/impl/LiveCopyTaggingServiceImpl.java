@@ -0,0 +1,272 @@
+package com.mycompany.core.services.impl;
+
+import com.day.cq.commons.jcr.JcrConstants;
+import com.day.cq.wcm.api.NameConstants;
+import com.day.cq.wcm.api.Page;
+import com.day.cq.wcm.api.PageManager;
+import com.day.cq.wcm.api.WCMException;
+import com.day.cq.wcm.msm.api.LiveRelationship;
+import com.day.cq.wcm.msm.api.LiveRelationshipManager;
+import com.day.cq.wcm.msm.api.MSMNameConstants;
+import com.mycompany.core.services.AITaggingService;
+import com.mycompany.core.services.LiveCopyTaggingService;
+import com.mycompany.core.services.TextExtractionService;
+import com.mycompany.core.utils.TaggingState;
+import org.apache.sling.api.resource.PersistenceException;
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ValueMap;
+import org.apache.sling.commons.metrics.Meter;
+import org.apache.sling.commons.metrics.MetricsService;
+import org.osgi.service.component.annotations.Activate;
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Reference;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.jcr.RangeIterator;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Reads MSM inheritance from the mixins MSM sets on live copy content: synced resources are
+ * cq:LiveRelationship, resources with cancelled inheritance are cq:LiveSyncCancelled, and
+ * cancelled properties are listed in cq:propertyInheritanceCancelled. Whether a live copy
+ * inherits its text is cached until the page is modified or rolled out again.
+ */
+@Component(service = LiveCopyTaggingService.class)
+public class LiveCopyTaggingServiceImpl implements LiveCopyTaggingService {
+
+    static final String MIX_LIVE_RELATIONSHIP = "cq:LiveRelationship";
+    static final String MIX_LIVE_SYNC_CANCELLED = "cq:LiveSyncCancelled";
+    static final String PN_CANCELLED_FOR_CHILDREN = "cq:isCancelledForChildren";
+    static final String PN_PROPERTY_INHERITANCE_CANCELLED = "cq:propertyInheritanceCancelled";
+
+    static final String METRIC_PROPAGATED = "myaemproject.aitagging.livecopy.propagated";
+
+    private static final String CONTENT_SUFFIX = "/" + JcrConstants.JCR_CONTENT;
+
+    // Live copy pages whose inheritance is cached
+    private static final int INHERITANCE_CACHE_SIZE = 1000;
+
+    private static final Logger LOG = LoggerFactory.getLogger(LiveCopyTaggingServiceImpl.class);
+
+    @Reference
+    private LiveRelationshipManager liveRelationshipManager;
+
+    @Reference
+    private AITaggingService aiTaggingService;
+
+    @Reference
+    private TextExtractionService textExtractionService;
+
+    @Reference
+    private MetricsService metricsService;
+
+    private final Map<String, CachedInheritance> inheritanceCache = Collections.synchronizedMap(
+            new LinkedHashMap<String, CachedInheritance>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, CachedInheritance> eldest) {
+                    return size() > INHERITANCE_CACHE_SIZE;
+                }
+            });
+
+    private Meter propagated;
+
+    @Activate
+    protected void activate() {
+        this.propagated = metricsService.meter(METRIC_PROPAGATED);
+    }
+
+    @Override
+    public String getBlueprintPath(Page page) {
+        Resource content = page.getContentResource();
+        if (content == null || !liveRelationshipManager.hasLiveRelationship(content)) {
+            return null;
+        }
+
+        try {
+            LiveRelationship relationship = liveRelationshipManager.getLiveRelationship(content, false);
+            if (relationship == null || !inheritsText(content)) {
+                return null;
+            }
+            String blueprintPath = toPagePath(relationship.getSourcePath());
+            return content.getResourceResolver().getResource(blueprintPath) != null ? blueprintPath : null;
+        } catch (WCMException e) {
+            LOG.warn("Could not read live relationship of {}: {}", page.getPath(), e.getMessage());
+            return null;
+        }
+    }
+
+    @Override
+    public int propagateTags(Page blueprint) throws PersistenceException {
+        PageManager pageManager = blueprint.getPageManager();
+        Set<String> visited = new HashSet<>();
+        Deque<Page> sources = new ArrayDeque<>();
+        sources.push(blueprint);
+        int count = 0;
+
+        while (!sources.isEmpty()) {
+            Page source = sources.pop();
+            TaggingState state = TaggingState.read(source.getContentResource());
+            if (state == null || state.getTagIds().isEmpty() || !visited.add(source.getPath())) {
+                continue;
+            }
+
+            for (String copyPath : getLiveCopyPaths(source)) {
+                Page copy = pageManager.getPage(copyPath);
+                if (copy == null || copy.getContentResource() == null || !inheritsText(copy.getContentResource())) {
+                    continue;
+                }
+                if (!hasState(copy, state)) {
+                    aiTaggingService.applyTagsToPage(copy, state.getTagIds(), false);
+                    TaggingState.write(copy.getContentResource(), state.getContentHash(),
+                            state.getVocabularyVersion(), state.getModel(), state.getTagIds(), state.getMinHash());
+                    propagated.mark();
+                    count++;
+                }
+                sources.push(copy);
+            }
+        }
+
+        if (count > 0) {
+            LOG.debug("Propagated tags of blueprint {} to {} live copies", blueprint.getPath(), count);
+        }
+        return count;
+    }
+
+    private List<String> getLiveCopyPaths(Page source) {
+        List<String> paths = new ArrayList<>();
+        try {
+            RangeIterator relationships = liveRelationshipManager.getLiveRelationships(
+                    source.adaptTo(Resource.class), null, null);
+            while (relationships.hasNext()) {
+                LiveRelationship relationship = (LiveRelationship) relationships.next();
+                paths.add(toPagePath(relationship.getTargetPath()));
+            }
+        } catch (WCMException e) {
+            LOG.warn("Could not read live copies of {}: {}", source.getPath(), e.getMessage());
+        }
+        return paths;
+    }
+
+    /**
+     * @return true if the live copy already carries the state of its blueprint
+     */
+    private boolean hasState(Page copy, TaggingState blueprintState) {
+        TaggingState state = TaggingState.read(copy.getContentResource());
+        return state != null
+                && Objects.equals(blueprintState.getContentHash(), state.getContentHash())
+                && Objects.equals(blueprintState.getVocabularyVersion(), state.getVocabularyVersion())
+                && Objects.equals(blueprintState.getModel(), state.getModel())
+                && blueprintState.getTagIds().equals(state.getTagIds());
+    }
+
+    /**
+     * Check that all resources of live copy content holding text are synced with the blueprint
+     * @param content jcr:content resource of a live copy
+     */
+    boolean inheritsText(Resource content) {
+        Set<String> textProperties = textExtractionService.getTextPropertyNames();
+        // Editing, cancelling inheritance and rollouts update one of these on the page content
+        ValueMap properties = content.getValueMap();
+        Calendar lastModified = properties.get(NameConstants.PN_PAGE_LAST_MOD, Calendar.class);
+        Calendar lastRolledout = properties.get(MSMNameConstants.PN_LAST_ROLLEDOUT, Calendar.class);
+        if (lastModified == null && lastRolledout == null) {
+            return walkInheritsText(content, textProperties);
+        }
+
+        long modified = lastModified != null ? lastModified.getTimeInMillis() : -1;
+        long rolledout = lastRolledout != null ? lastRolledout.getTimeInMillis() : -1;
+        CachedInheritance cached = inheritanceCache.get(content.getPath());
+        if (cached != null && cached.lastModified == modified && cached.lastRolledout == rolledout
+                && cached.textProperties.equals(textProperties)) {
+            return cached.inheritsText;
+        }
+
+        boolean inheritsText = walkInheritsText(content, textProperties);
+        inheritanceCache.put(content.getPath(),
+                new CachedInheritance(modified, rolledout, textProperties, inheritsText));
+        return inheritsText;
+    }
+
+    private static boolean walkInheritsText(Resource content, Set<String> textProperties) {
+        Deque<Resource> resources = new ArrayDeque<>();
+        resources.push(content);
+
+        while (!resources.isEmpty()) {
+            Resource resource = resources.pop();
+            ValueMap properties = resource.getValueMap();
+            List<String> mixins = Arrays.asList(properties.get(JcrConstants.JCR_MIXINTYPES, new String[0]));
+            boolean cancelled = mixins.contains(MIX_LIVE_SYNC_CANCELLED);
+
+            if (cancelled && properties.get(PN_CANCELLED_FOR_CHILDREN, false)
+                    && hasText(resource, textProperties, true)) {
+                return false;
+            }
+            if (hasText(resource, textProperties, false)) {
+                if (cancelled || !mixins.contains(MIX_LIVE_RELATIONSHIP)) {
+                    // Cancelled or added locally
+                    return false;
+                }
+                for (String property : properties.get(PN_PROPERTY_INHERITANCE_CANCELLED, new String[0])) {
+                    if (textProperties.contains(property)) {
+                        return false;
+                    }
+                }
+            }
+
+            for (Resource child : resource.getChildren()) {
+                if (!TaggingState.NODE_NAME.equals(child.getName())) {
+                    resources.push(child);
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @param deep Whether to look into the whole subtree of the resource
+     */
+    private static boolean hasText(Resource resource, Set<String> textProperties, boolean deep) {
+        if (resource.getValueMap().keySet().stream().anyMatch(textProperties::contains)) {
+            return true;
+        }
+        if (deep) {
+            for (Resource child : resource.getChildren()) {
+                if (hasText(child, textProperties, true)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static String toPagePath(String path) {
+        return path.endsWith(CONTENT_SUFFIX) ? path.substring(0, path.length() - CONTENT_SUFFIX.length()) : path;
+    }
+
+    private static final class CachedInheritance {
+        private final long lastModified;
+        private final long lastRolledout;
+        private final Set<String> textProperties;
+        private final boolean inheritsText;
+
+        private CachedInheritance(long lastModified, long lastRolledout, Set<String> textProperties,
+                                  boolean inheritsText) {
+            this.lastModified = lastModified;
+            this.lastRolledout = lastRolledout;
+            this.textProperties = textProperties;
+            this.inheritsText = inheritsText;
+        }
+    }
+}
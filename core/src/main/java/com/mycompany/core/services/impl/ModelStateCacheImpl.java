@@ -0,0 +1,240 @@
+package com.mycompany.core.services.impl;
+
+import com.day.cq.commons.jcr.JcrConstants;
+import com.day.cq.wcm.api.NameConstants;
+import com.mycompany.core.services.ModelStateCache;
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ValueMap;
+import org.apache.sling.api.resource.observation.ExternalResourceChangeListener;
+import org.apache.sling.api.resource.observation.ResourceChange;
+import org.apache.sling.api.resource.observation.ResourceChangeListener;
+import org.apache.sling.commons.metrics.Meter;
+import org.apache.sling.commons.metrics.MetricsService;
+import org.osgi.service.component.annotations.Activate;
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Deactivate;
+import org.osgi.service.component.annotations.Reference;
+import org.osgi.service.metatype.annotations.AttributeDefinition;
+import org.osgi.service.metatype.annotations.Designate;
+import org.osgi.service.metatype.annotations.ObjectClassDefinition;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+/**
+ * Least recently used cache of model state per resource path, invalidated by resource
+ * changes below the configured paths, including changes made on other cluster instances.
+ * A change drops the state of the changed resource and everything below it, so a page
+ * property edit or a move of a page also drops the state of its components. The last
+ * modification of the resource is part of the key, so state stays correct while the
+ * change event is still on its way. Lookups never lock: paths are kept sorted, so a change
+ * drops a subtree without scanning the cache, and once the cache is full the least recently
+ * used paths are evicted in batches by whichever thread gets there first.
+ */
+@Component(service = {ModelStateCache.class, ResourceChangeListener.class})
+@Designate(ocd = ModelStateCacheImpl.Config.class)
+public class ModelStateCacheImpl implements ModelStateCache, ResourceChangeListener, ExternalResourceChangeListener {
+
+    @ObjectClassDefinition(name = "Model State Cache Configuration")
+    public @interface Config {
+        @AttributeDefinition(name = "Enabled",
+                description = "Whether model state is cached; if not, it is computed for every model")
+        boolean enabled() default true;
+
+        @AttributeDefinition(name = "Max Entries", description = "Number of resources whose model state is kept")
+        int max_entries() default 10000;
+
+        @AttributeDefinition(name = "Paths", description = "Paths below which model state is cached")
+        String[] resource_paths() default {"/content"};
+
+        @AttributeDefinition(name = "Change Types")
+        String[] resource_change_types() default {"ADDED", "CHANGED", "REMOVED"};
+    }
+
+    static final String METRIC_HITS = "myaemproject.models.cache.hits";
+    static final String METRIC_MISSES = "myaemproject.models.cache.misses";
+    static final String METRIC_INVALIDATIONS = "myaemproject.models.cache.invalidations";
+
+    // Last modification of resources that have none, e.g. components never edited
+    private static final long NOT_MODIFIED = -1;
+
+    // Share of the entries evicted at once, so eviction does not run for every new path
+    private static final int EVICTION_BATCH_DIVISOR = 10;
+
+    @Reference
+    private MetricsService metricsService;
+
+    // Model state per resource path, sorted so the paths below a changed resource are adjacent
+    private final ConcurrentSkipListMap<String, PathStates> states = new ConcurrentSkipListMap<>();
+    private final AtomicInteger size = new AtomicInteger();
+    // Orders accesses for eviction
+    private final AtomicLong clock = new AtomicLong();
+    private final ReentrantLock evictionLock = new ReentrantLock();
+
+    private Meter hits;
+    private Meter misses;
+    private Meter invalidations;
+    private boolean enabled;
+    private int maxEntries;
+    private String[] paths;
+
+    @Activate
+    protected void activate(Config config) {
+        this.enabled = config.enabled();
+        this.maxEntries = Math.max(1, config.max_entries());
+        this.paths = config.resource_paths();
+        this.hits = metricsService.meter(METRIC_HITS);
+        this.misses = metricsService.meter(METRIC_MISSES);
+        this.invalidations = metricsService.meter(METRIC_INVALIDATIONS);
+    }
+
+    @Deactivate
+    protected void deactivate() {
+        states.clear();
+        size.set(0);
+    }
+
+    @Override
+    public <T> T get(Resource resource, Class<?> model, Function<Resource, T> loader) {
+        String path = resource.getPath();
+        if (!enabled || !isCached(path)) {
+            return loader.apply(resource);
+        }
+
+        long lastModified = getLastModified(resource.getValueMap());
+        PathStates pathStates = states.get(path);
+        if (pathStates == null) {
+            PathStates created = new PathStates();
+            created.lastAccess = clock.incrementAndGet();
+            pathStates = states.putIfAbsent(path, created);
+            if (pathStates == null) {
+                pathStates = created;
+                if (size.incrementAndGet() > maxEntries) {
+                    evict();
+                }
+            }
+        }
+        pathStates.lastAccess = clock.incrementAndGet();
+
+        CachedState cached = pathStates.models.get(model);
+        if (cached != null && cached.lastModified == lastModified) {
+            hits.mark();
+            @SuppressWarnings("unchecked")
+            T state = (T) cached.state;
+            return state;
+        }
+
+        // A change of the path while loading drops these path states, and the result with them
+        misses.mark();
+        T state = loader.apply(resource);
+        if (state != null) {
+            pathStates.models.put(model, new CachedState(lastModified, state));
+        }
+        return state;
+    }
+
+    @Override
+    public void onChange(List<ResourceChange> changes) {
+        if (!enabled) {
+            return;
+        }
+
+        for (ResourceChange change : changes) {
+            String path = change.getPath();
+            remove(path, states.get(path));
+            // Descendants sort between "path/" and "path0", since '0' follows '/'
+            for (Map.Entry<String, PathStates> descendant : states.subMap(path + "/", path + "0").entrySet()) {
+                remove(descendant.getKey(), descendant.getValue());
+            }
+        }
+    }
+
+    private void remove(String path, PathStates pathStates) {
+        if (pathStates != null && states.remove(path, pathStates)) {
+            size.decrementAndGet();
+            invalidations.mark();
+        }
+    }
+
+    /**
+     * Evict the least recently used paths, down to a batch below the maximum
+     */
+    private void evict() {
+        if (!evictionLock.tryLock()) {
+            return;
+        }
+        try {
+            int excess = size.get() - maxEntries + maxEntries / EVICTION_BATCH_DIVISOR;
+            if (excess <= 0) {
+                return;
+            }
+            // Accesses continue while sorting, so sort a snapshot of them
+            List<Map.Entry<String, Long>> accesses = new ArrayList<>();
+            for (Map.Entry<String, PathStates> entry : states.entrySet()) {
+                accesses.add(new AbstractMap.SimpleImmutableEntry<>(entry.getKey(), entry.getValue().lastAccess));
+            }
+            accesses.sort(Map.Entry.comparingByValue());
+
+            for (int i = 0, evicted = 0; evicted < excess && i < accesses.size(); i++) {
+                // Paths used since the snapshot stay
+                PathStates pathStates = states.get(accesses.get(i).getKey());
+                if (pathStates != null && pathStates.lastAccess == accesses.get(i).getValue()
+                        && states.remove(accesses.get(i).getKey(), pathStates)) {
+                    size.decrementAndGet();
+                    evicted++;
+                }
+            }
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    int size() {
+        return size.get();
+    }
+
+    private boolean isCached(String path) {
+        for (String root : paths) {
+            if (path.equals(root) || path.startsWith(root + "/")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static long getLastModified(ValueMap properties) {
+        Calendar lastModified = properties.get(JcrConstants.JCR_LASTMODIFIED, Calendar.class);
+        if (lastModified == null) {
+            lastModified = properties.get(NameConstants.PN_PAGE_LAST_MOD, Calendar.class);
+        }
+        return lastModified != null ? lastModified.getTimeInMillis() : NOT_MODIFIED;
+    }
+
+    /**
+     * State of the models of one resource path
+     */
+    private static final class PathStates {
+        private final ConcurrentMap<Class<?>, CachedState> models = new ConcurrentHashMap<>();
+        private volatile long lastAccess;
+    }
+
+    private static final class CachedState {
+        private final long lastModified;
+        private final Object state;
+
+        private CachedState(long lastModified, Object state) {
+            this.lastModified = lastModified;
+            this.state = state;
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package com.mycompany.core.services.impl;
+
+import com.mycompany.core.services.NearDuplicateIndex;
+import com.mycompany.core.utils.MinHash;
+import org.apache.sling.commons.metrics.Counter;
+import org.apache.sling.commons.metrics.Meter;
+import org.apache.sling.commons.metrics.MetricsService;
+import org.osgi.service.component.annotations.Activate;
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Reference;
+import org.osgi.service.metatype.annotations.AttributeDefinition;
+import org.osgi.service.metatype.annotations.Designate;
+import org.osgi.service.metatype.annotations.ObjectClassDefinition;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Locality-sensitive hashing over signature bands: signatures are split into {@link #BANDS}
+ * bands of {@link #ROWS} positions, and only content sharing at least one whole band is
+ * compared. With 16 bands of 8 rows, content of similarity 0.9 shares a band with a
+ * probability of more than 99.9%, content of similarity 0.5 with about 6%.
+ * The least recently used entries are evicted beyond the configured size.
+ */
+@Component(service = NearDuplicateIndex.class)
+@Designate(ocd = NearDuplicateIndexImpl.Config.class)
+public class NearDuplicateIndexImpl implements NearDuplicateIndex {
+
+    @ObjectClassDefinition(name = "AI Tagging Near-Duplicate Index Configuration")
+    public @interface Config {
+        @AttributeDefinition(name = "Enabled",
+                description = "Whether near-duplicate content inherits tags instead of being sent to the AI")
+        boolean enabled() default true;
+
+        @AttributeDefinition(name = "Similarity Threshold",
+                description = "Minimum estimated Jaccard similarity of word shingles for content to inherit tags")
+        double similarity_threshold() default 0.9;
+
+        @AttributeDefinition(name = "Max Entries",
+                description = "Number of signatures kept in memory; each takes about 1 KB")
+        int max_entries() default 50000;
+    }
+
+    static final int BANDS = 16;
+    static final int ROWS = MinHash.NUM_HASHES / BANDS;
+
+    static final String METRIC_LOOKUPS = "myaemproject.aitagging.nearduplicate.lookups";
+    static final String METRIC_MATCHES = "myaemproject.aitagging.nearduplicate.matches";
+    static final String METRIC_ENTRIES = "myaemproject.aitagging.nearduplicate.entries";
+    static final String METRIC_BYTES = "myaemproject.aitagging.nearduplicate.bytes";
+
+    // Rough heap use of an entry: signature array, path, map entries in the index and the bands
+    private static final int ENTRY_OVERHEAD_BYTES = 16 + 48 + 40 + BANDS * 48;
+
+    @Reference
+    private MetricsService metricsService;
+
+    // Signatures in access order, for eviction
+    private final LinkedHashMap<String, int[]> signatures = new LinkedHashMap<>(16, 0.75f, true);
+    @SuppressWarnings("unchecked")
+    private final Map<Long, Set<String>>[] bands = new Map[BANDS];
+
+    private Meter lookups;
+    private Meter matches;
+    private Counter entries;
+    private Counter bytes;
+    private boolean enabled;
+    private double threshold;
+    private int maxEntries;
+
+    @Activate
+    protected void activate(Config config) {
+        this.enabled = config.enabled();
+        this.threshold = config.similarity_threshold();
+        this.maxEntries = Math.max(1, config.max_entries());
+        this.lookups = metricsService.meter(METRIC_LOOKUPS);
+        this.matches = metricsService.meter(METRIC_MATCHES);
+        this.entries = metricsService.counter(METRIC_ENTRIES);
+        this.bytes = metricsService.counter(METRIC_BYTES);
+        for (int band = 0; band < BANDS; band++) {
+            bands[band] = new HashMap<>();
+        }
+    }
+
+    @Override
+    public synchronized void put(String path, int[] signature) {
+        if (!enabled || signature == null) {
+            return;
+        }
+
+        remove(path);
+        signatures.put(path, signature);
+        for (int band = 0; band < BANDS; band++) {
+            bands[band].computeIfAbsent(bandKey(signature, band), key -> new HashSet<>()).add(path);
+        }
+        entries.increment();
+        bytes.increment(sizeOf(path));
+
+        Iterator<Map.Entry<String, int[]>> eldest = signatures.entrySet().iterator();
+        while (signatures.size() > maxEntries && eldest.hasNext()) {
+            Map.Entry<String, int[]> evicted = eldest.next();
+            eldest.remove();
+            removeFromBands(evicted.getKey(), evicted.getValue());
+        }
+    }
+
+    @Override
+    public synchronized void remove(String path) {
+        int[] signature = signatures.remove(path);
+        if (signature != null) {
+            removeFromBands(path, signature);
+        }
+    }
+
+    @Override
+    public synchronized String findSimilar(String path, int[] signature) {
+        if (!enabled || signature == null) {
+            return null;
+        }
+        lookups.mark();
+
+        Set<String> candidates = new HashSet<>();
+        for (int band = 0; band < BANDS; band++) {
+            Set<String> paths = bands[band].get(bandKey(signature, band));
+            if (paths != null) {
+                candidates.addAll(paths);
+            }
+        }
+        candidates.remove(path);
+
+        String mostSimilar = null;
+        double highest = threshold;
+        for (String candidate : candidates) {
+            double similarity = MinHash.similarity(signature, signatures.get(candidate));
+            if (similarity >= highest) {
+                highest = similarity;
+                mostSimilar = candidate;
+            }
+        }
+
+        if (mostSimilar != null) {
+            matches.mark();
+            // Keep content that is reused from in memory
+            signatures.get(mostSimilar);
+        }
+        return mostSimilar;
+    }
+
+    /**
+     * @return Number of indexed signatures
+     */
+    synchronized int size() {
+        return signatures.size();
+    }
+
+    private void removeFromBands(String path, int[] signature) {
+        for (int band = 0; band < BANDS; band++) {
+            long key = bandKey(signature, band);
+            Set<String> paths = bands[band].get(key);
+            if (paths != null && paths.remove(path) && paths.isEmpty()) {
+                bands[band].remove(key);
+            }
+        }
+        entries.decrement();
+        bytes.decrement(sizeOf(path));
+    }
+
+    private static long sizeOf(String path) {
+        return (long) MinHash.NUM_HASHES * Integer.BYTES + path.length() * 2L + ENTRY_OVERHEAD_BYTES;
+    }
+
+    private static long bandKey(int[] signature, int band) {
+        long key = band;
+        for (int row = band * ROWS; row < (band + 1) * ROWS; row++) {
+            key = key * 31 + signature[row];
+        }
+        return key;
+    }
+}
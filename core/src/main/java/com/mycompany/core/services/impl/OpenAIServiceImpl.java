@@ -4,14 +4,19 @@ import com.google.gson.Gson;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
 import com.mycompany.core.services.OpenAIService;
+import com.mycompany.core.utils.TaggingEvents;
+import org.apache.http.client.config.RequestConfig;
 import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpPost;
 import org.apache.http.entity.StringEntity;
 import org.apache.http.impl.client.CloseableHttpClient;
 import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
 import org.apache.http.util.EntityUtils;
 import org.osgi.service.component.annotations.Activate;
 import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Deactivate;
 import org.osgi.service.metatype.annotations.AttributeDefinition;
 import org.osgi.service.metatype.annotations.Designate;
 import org.osgi.service.metatype.annotations.ObjectClassDefinition;
@@ -19,11 +24,17 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 @Component(service = OpenAIService.class, immediate = true)
 @Designate(ocd = OpenAIServiceImpl.Config.class)
@@ -32,6 +43,9 @@ public class OpenAIServiceImpl implements OpenAIService {
     private static final Logger LOG = LoggerFactory.getLogger(OpenAIServiceImpl.class);
     private static final Gson GSON = new Gson();
 
+    // Warm-up requests only wait for the status line, however long completions may take
+    private static final int WARM_UP_SOCKET_TIMEOUT = 10000;
+
     @ObjectClassDefinition(name = "OpenAI Service Configuration")
     public @interface Config {
         @AttributeDefinition(name = "OpenAI API Key")
@@ -48,6 +62,22 @@ public class OpenAIServiceImpl implements OpenAIService {
 
         @AttributeDefinition(name = "Temperature")
         double openai_temperature() default 0.3;
+
+        @AttributeDefinition(name = "Max Connections",
+                description = "Connections to the API kept open for reuse between requests")
+        int openai_max_connections() default 10;
+
+        @AttributeDefinition(name = "Connect Timeout",
+                description = "Milliseconds to wait for a connection to the API to be established")
+        int openai_connect_timeout() default 10000;
+
+        @AttributeDefinition(name = "Socket Timeout",
+                description = "Milliseconds to wait for data of a response, which covers generating the completion")
+        int openai_socket_timeout() default 60000;
+
+        @AttributeDefinition(name = "Connection Request Timeout",
+                description = "Milliseconds to wait for a free connection when all pooled connections are in use")
+        int openai_connection_request_timeout() default 30000;
     }
 
     private String apiKey;
@@ -56,6 +86,14 @@ public class OpenAIServiceImpl implements OpenAIService {
     private int maxTokens;
     private double temperature;
 
+    // Shared by all requests, so TLS handshakes are paid once per pooled connection
+    private PoolingHttpClientConnectionManager connectionManager;
+    private CloseableHttpClient httpClient;
+    private RequestConfig warmUpRequest;
+
+    // Prompt block of the last vocabulary, rebuilt only when the vocabulary changes
+    private volatile TagBlock tagBlock;
+
     @Activate
     protected void activate(Config config) {
         this.apiKey = config.openai_api_key();
@@ -64,9 +102,36 @@ public class OpenAIServiceImpl implements OpenAIService {
         this.maxTokens = config.openai_max_tokens();
         this.temperature = config.openai_temperature();
 
+        int maxConnections = Math.max(1, config.openai_max_connections());
+        this.connectionManager = new PoolingHttpClientConnectionManager();
+        connectionManager.setMaxTotal(maxConnections);
+        connectionManager.setDefaultMaxPerRoute(maxConnections);
+        // Without timeouts a stalled endpoint would hold pooled connections and their callers forever
+        RequestConfig requestConfig = RequestConfig.custom()
+                .setConnectTimeout(config.openai_connect_timeout())
+                .setSocketTimeout(config.openai_socket_timeout())
+                .setConnectionRequestTimeout(config.openai_connection_request_timeout())
+                .build();
+        this.warmUpRequest = RequestConfig.copy(requestConfig)
+                .setSocketTimeout(Math.min(WARM_UP_SOCKET_TIMEOUT, config.openai_socket_timeout()))
+                .build();
+        this.httpClient = HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(requestConfig)
+                .build();
+
         LOG.info("OpenAI Service activated with model: {}", model);
     }
 
+    @Deactivate
+    protected void deactivate() {
+        try {
+            httpClient.close();
+        } catch (IOException e) {
+            LOG.warn("Could not close OpenAI connections", e);
+        }
+    }
+
     @Override
     public List<String> extractConcepts(String content) {
         String prompt = String.format(
@@ -86,24 +151,6 @@ public class OpenAIServiceImpl implements OpenAIService {
             return new ArrayList<>();
         }
 
-        // Build formatted tag list
-        StringBuilder tagList = new StringBuilder();
-        tagList.append("AVAILABLE TAGS (you MUST return tag IDs from this list ONLY):\n\n");
-
-        // Group by category for better readability
-        Map<String, List<Map.Entry<String, String>>> categorized = categorizeTags(availableTags);
-
-        for (Map.Entry<String, List<Map.Entry<String, String>>> categoryEntry : categorized.entrySet()) {
-            String category = categoryEntry.getKey();
-            tagList.append(category.toUpperCase().replace("-", " ")).append(":\n");
-
-            for (Map.Entry<String, String> tag : categoryEntry.getValue()) {
-                tagList.append("  - ").append(tag.getKey())
-                        .append(" (").append(tag.getValue()).append(")\n");
-            }
-            tagList.append("\n");
-        }
-
         String prompt = String.format(
                 "You are a content tagging expert for an AEM (Adobe Experience Manager) system.\n\n" +
                         "%s" +
@@ -117,7 +164,7 @@ public class OpenAIServiceImpl implements OpenAIService {
                         "CONTENT TO ANALYZE:\n" +
                         "---\n%s\n---\n\n" +
                         "Return format: tagid1,tagid2,tagid3",
-                tagList.toString(),
+                getTagBlock(availableTags),
                 pageContent
         );
 
@@ -143,6 +190,89 @@ public class OpenAIServiceImpl implements OpenAIService {
         return response.trim().toLowerCase();
     }
 
+    @Override
+    public String getModel() {
+        return model;
+    }
+
+    @Override
+    public int warmUp(Map<String, String> availableTags, int connections) {
+        if (availableTags != null && !availableTags.isEmpty()) {
+            getTagBlock(availableTags);
+        }
+
+        int count = Math.min(connections, connectionManager.getMaxTotal());
+        if (count <= 0) {
+            return 0;
+        }
+
+        // Concurrent requests each lease a connection of their own, which returns to the pool
+        // once the response is consumed; the status does not matter
+        ExecutorService executor = Executors.newFixedThreadPool(count, runnable -> {
+            Thread thread = new Thread(runnable, "openai-warmup");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            List<CompletableFuture<Boolean>> opened = IntStream.range(0, count)
+                    .mapToObj(i -> CompletableFuture.supplyAsync(this::openConnection, executor))
+                    .collect(Collectors.toList());
+            return (int) opened.stream().filter(CompletableFuture::join).count();
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Open a pooled connection with an unauthenticated GET to the completions URL. The endpoint
+     * only accepts authenticated POSTs, so the request is answered with 401 or 405 without
+     * generating anything or counting against the quota; only the connection and its TLS session
+     * are wanted, which stay pooled whatever the status.
+     * @return Whether a response arrived, i.e. the connection is open
+     */
+    private boolean openConnection() {
+        HttpGet request = new HttpGet(apiUrl);
+        request.setConfig(warmUpRequest);
+        try (CloseableHttpResponse response = httpClient.execute(request)) {
+            EntityUtils.consume(response.getEntity());
+            return true;
+        } catch (IOException | RuntimeException e) {
+            LOG.debug("Could not open connection to {}: {}", apiUrl, e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * @return Vocabulary formatted for the prompt, grouped by category
+     */
+    private String getTagBlock(Map<String, String> availableTags) {
+        TagBlock block = tagBlock;
+        if (block != null && block.tags.equals(availableTags)) {
+            return block.text;
+        }
+
+        StringBuilder tagList = new StringBuilder();
+        tagList.append("AVAILABLE TAGS (you MUST return tag IDs from this list ONLY):\n\n");
+
+        // Group by category for better readability
+        Map<String, List<Map.Entry<String, String>>> categorized = categorizeTags(availableTags);
+
+        for (Map.Entry<String, List<Map.Entry<String, String>>> categoryEntry : categorized.entrySet()) {
+            String category = categoryEntry.getKey();
+            tagList.append(category.toUpperCase().replace("-", " ")).append(":\n");
+
+            for (Map.Entry<String, String> tag : categoryEntry.getValue()) {
+                tagList.append("  - ").append(tag.getKey())
+                        .append(" (").append(tag.getValue()).append(")\n");
+            }
+            tagList.append("\n");
+        }
+
+        String text = tagList.toString();
+        tagBlock = new TagBlock(new LinkedHashMap<>(availableTags), text);
+        return text;
+    }
+
     /**
      * Categorize tags by their namespace category
      */
@@ -178,7 +308,12 @@ public class OpenAIServiceImpl implements OpenAIService {
      * Core method to call OpenAI API
      */
     private String callOpenAI(String prompt) {
-        try (CloseableHttpClient httpClient = HttpClients.createDefault()) {
+        Object event = TaggingEvents.beginAIRequest();
+        long requestBytes = 0;
+        long responseBytes = 0;
+        int status = -1;
+
+        try {
             HttpPost request = new HttpPost(apiUrl);
 
             // Set headers
@@ -199,13 +334,19 @@ public class OpenAIServiceImpl implements OpenAIService {
 
             requestBody.add("messages", messages);
 
-            request.setEntity(new StringEntity(requestBody.toString()));
+            StringEntity entity = new StringEntity(requestBody.toString());
+            request.setEntity(entity);
+            requestBytes = entity.getContentLength();
 
             // Execute request
             try (CloseableHttpResponse response = httpClient.execute(request)) {
                 String responseBody = EntityUtils.toString(response.getEntity());
+                status = response.getStatusLine().getStatusCode();
+                if (event != null) {
+                    responseBytes = responseBody.getBytes(StandardCharsets.UTF_8).length;
+                }
 
-                if (response.getStatusLine().getStatusCode() != 200) {
+                if (status != 200) {
                     LOG.error("OpenAI API error: {}", responseBody);
                     return "";
                 }
@@ -224,6 +365,8 @@ public class OpenAIServiceImpl implements OpenAIService {
         } catch (IOException e) {
             LOG.error("Error calling OpenAI API", e);
             return "";
+        } finally {
+            TaggingEvents.commitAIRequest(event, model, requestBytes, responseBytes, status);
         }
     }
 
@@ -276,9 +419,19 @@ public class OpenAIServiceImpl implements OpenAIService {
         if (validTags.isEmpty()) {
             LOG.warn("AI returned no valid tags. Response was: {}", response);
         } else {
-            LOG.info("AI suggested {} valid tags: {}", validTags.size(), validTags);
+            LOG.debug("AI suggested {} valid tags: {}", validTags.size(), validTags);
         }
 
         return validTags;
     }
+
+    private static final class TagBlock {
+        private final Map<String, String> tags;
+        private final String text;
+
+        private TagBlock(Map<String, String> tags, String text) {
+            this.tags = tags;
+            this.text = text;
+        }
+    }
 }
@@ -0,0 +1,78 @@
+package com.mycompany.core.services.impl;
+
+import com.mycompany.core.services.TextExtractor;
+import org.osgi.service.component.annotations.Activate;
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.ConfigurationPolicy;
+import org.osgi.service.component.annotations.Modified;
+import org.osgi.service.metatype.annotations.AttributeDefinition;
+import org.osgi.service.metatype.annotations.Designate;
+import org.osgi.service.metatype.annotations.ObjectClassDefinition;
+
+import java.util.List;
+
+/**
+ * Text extractor defined entirely by configuration, one factory configuration per
+ * group of components.
+ */
+@Component(service = TextExtractor.class, configurationPolicy = ConfigurationPolicy.REQUIRE)
+@Designate(ocd = PropertyTextExtractor.Config.class, factory = true)
+public class PropertyTextExtractor implements TextExtractor {
+
+    @ObjectClassDefinition(name = "AI Tagging Property Text Extractor")
+    public @interface Config {
+        @AttributeDefinition(name = "Resource Types",
+                description = "sling:resourceTypes handled by this extractor; versions of core components may be omitted")
+        String[] extractor_resourceTypes();
+
+        @AttributeDefinition(name = "Text Properties",
+                description = "Properties holding text on the component, in extraction order; leave empty for components without content")
+        String[] text_properties() default {};
+
+        @AttributeDefinition(name = "Item Text Properties",
+                description = "Properties holding text on each direct child, e.g. cq:panelTitle")
+        String[] item_text_properties() default {};
+
+        @AttributeDefinition(name = "Reference Properties",
+                description = "Properties holding the path of a referenced experience fragment or content fragment")
+        String[] reference_properties() default {};
+
+        @AttributeDefinition(name = "Include Children",
+                description = "Extract text from resources below the component")
+        boolean include_children() default true;
+    }
+
+    private List<String> textProperties;
+    private List<String> itemTextProperties;
+    private List<String> referenceProperties;
+    private boolean includeChildren;
+
+    @Activate
+    @Modified
+    protected void activate(Config config) {
+        this.textProperties = List.of(config.text_properties());
+        this.itemTextProperties = List.of(config.item_text_properties());
+        this.referenceProperties = List.of(config.reference_properties());
+        this.includeChildren = config.include_children();
+    }
+
+    @Override
+    public List<String> getTextProperties() {
+        return textProperties;
+    }
+
+    @Override
+    public List<String> getItemTextProperties() {
+        return itemTextProperties;
+    }
+
+    @Override
+    public List<String> getReferenceProperties() {
+        return referenceProperties;
+    }
+
+    @Override
+    public boolean includeChildren() {
+        return includeChildren;
+    }
+}
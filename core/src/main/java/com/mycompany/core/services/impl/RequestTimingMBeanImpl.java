@@ -0,0 +1,60 @@
+package com.mycompany.core.services.impl;
+
+import com.adobe.granite.jmx.annotation.AnnotatedStandardMBean;
+import com.mycompany.core.services.RequestTimingMBean;
+import com.mycompany.core.services.RequestTimingService;
+import com.mycompany.core.utils.LatencyHistogram;
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Reference;
+
+import javax.management.DynamicMBean;
+import javax.management.NotCompliantMBeanException;
+import javax.management.openmbean.CompositeDataSupport;
+import javax.management.openmbean.CompositeType;
+import javax.management.openmbean.OpenDataException;
+import javax.management.openmbean.OpenType;
+import javax.management.openmbean.SimpleType;
+import javax.management.openmbean.TabularData;
+import javax.management.openmbean.TabularDataSupport;
+import javax.management.openmbean.TabularType;
+import java.util.Map;
+
+/**
+ * Exposes the aggregates of {@link RequestTimingService} in JMX as a table with one row per key
+ */
+@Component(service = DynamicMBean.class,
+           property = "jmx.objectname=com.mycompany.core:type=RequestTimings")
+public class RequestTimingMBeanImpl extends AnnotatedStandardMBean implements RequestTimingMBean {
+
+    private static final String[] COLUMNS = {"key", "count", "mean", "p50", "p95", "p99", "max"};
+
+    @Reference
+    private RequestTimingService requestTimingService;
+
+    public RequestTimingMBeanImpl() throws NotCompliantMBeanException {
+        super(RequestTimingMBean.class);
+    }
+
+    @Override
+    public TabularData getTimings() throws OpenDataException {
+        CompositeType rowType = new CompositeType("RequestTiming", "Latency of one key in milliseconds",
+                COLUMNS, COLUMNS, new OpenType<?>[] {
+                        SimpleType.STRING, SimpleType.LONG, SimpleType.DOUBLE, SimpleType.DOUBLE,
+                        SimpleType.DOUBLE, SimpleType.DOUBLE, SimpleType.DOUBLE});
+        TabularDataSupport table = new TabularDataSupport(new TabularType("RequestTimings",
+                "Latency per resource type, selectors and extension", rowType, new String[] {"key"}));
+
+        for (Map.Entry<String, LatencyHistogram.Snapshot> entry : requestTimingService.getTimings().entrySet()) {
+            LatencyHistogram.Snapshot snapshot = entry.getValue();
+            table.put(new CompositeDataSupport(rowType, COLUMNS, new Object[] {
+                    entry.getKey(), snapshot.getCount(), snapshot.getMean(), snapshot.getPercentile(0.5),
+                    snapshot.getPercentile(0.95), snapshot.getPercentile(0.99), snapshot.getMax()}));
+        }
+        return table;
+    }
+
+    @Override
+    public void reset() {
+        requestTimingService.reset();
+    }
+}
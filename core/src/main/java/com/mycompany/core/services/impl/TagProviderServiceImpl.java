@@ -3,8 +3,14 @@ package com.mycompany.core.services.impl;
 import com.day.cq.tagging.Tag;
 import com.day.cq.tagging.TagManager;
 import com.mycompany.core.services.TagProviderService;
+import com.mycompany.core.services.TaggingPipelineService;
+import com.mycompany.core.utils.TaggingEvents;
+import org.apache.sling.api.resource.LoginException;
 import org.apache.sling.api.resource.ResourceResolver;
 import org.apache.sling.api.resource.ResourceResolverFactory;
+import org.apache.sling.api.resource.observation.ExternalResourceChangeListener;
+import org.apache.sling.api.resource.observation.ResourceChange;
+import org.apache.sling.api.resource.observation.ResourceChangeListener;
 import org.osgi.service.component.annotations.Component;
 import org.osgi.service.component.annotations.Reference;
 import org.slf4j.Logger;
@@ -12,8 +18,20 @@ import org.slf4j.LoggerFactory;
 
 import java.util.*;
 
-@Component(service = TagProviderService.class, immediate = true)
-public class TagProviderServiceImpl implements TagProviderService {
+/**
+ * Reads the tag vocabulary below {@link #TAGS_ROOT_PATH}. The vocabulary of the AI tagging
+ * service user is cached until a tag is added, changed or removed, also on other cluster
+ * instances.
+ */
+@Component(service = {TagProviderService.class, ResourceChangeListener.class}, immediate = true,
+        property = {
+                ResourceChangeListener.PATHS + "=" + TagProviderServiceImpl.TAGS_ROOT_PATH,
+                ResourceChangeListener.CHANGES + "=ADDED",
+                ResourceChangeListener.CHANGES + "=CHANGED",
+                ResourceChangeListener.CHANGES + "=REMOVED"
+        })
+public class TagProviderServiceImpl implements TagProviderService, ResourceChangeListener,
+        ExternalResourceChangeListener {
 
     private static final Logger LOG = LoggerFactory.getLogger(TagProviderServiceImpl.class);
 
@@ -21,10 +39,58 @@ public class TagProviderServiceImpl implements TagProviderService {
     private ResourceResolverFactory resolverFactory;
 
     // Root namespace for your tags
-    private static final String TAGS_ROOT_PATH = "/content/cq:tags";
+    static final String TAGS_ROOT_PATH = "/content/cq:tags";
+
+    // Vocabulary of the service user, null until read or after a tag changed
+    private volatile Vocabulary vocabulary;
+    // Counts tag changes, so a vocabulary read while a tag changed is not kept
+    private long generation;
 
     @Override
     public Map<String, String> getAllAvailableTags(ResourceResolver resolver) {
+        Object event = TaggingEvents.beginVocabulary();
+        Map<String, String> tagMap = collectAvailableTags(resolver);
+        TaggingEvents.commitVocabulary(event, tagMap.size());
+        return tagMap;
+    }
+
+    @Override
+    public Vocabulary getVocabulary() {
+        Vocabulary cached = vocabulary;
+        if (cached != null) {
+            return cached;
+        }
+
+        long readGeneration;
+        synchronized (this) {
+            readGeneration = generation;
+        }
+        try (ResourceResolver resolver = resolverFactory.getServiceResourceResolver(
+                Map.of(ResourceResolverFactory.SUBSERVICE, TaggingPipelineService.SUBSERVICE))) {
+            Vocabulary read = new Vocabulary(getAllAvailableTags(resolver));
+            synchronized (this) {
+                if (generation == readGeneration) {
+                    vocabulary = read;
+                }
+            }
+            return read;
+
+        } catch (LoginException e) {
+            LOG.error("Could not open service resolver to read the tag vocabulary", e);
+            return new Vocabulary(Map.of());
+        }
+    }
+
+    @Override
+    public void onChange(List<ResourceChange> changes) {
+        synchronized (this) {
+            generation++;
+            vocabulary = null;
+        }
+        LOG.debug("Tags changed, dropped cached vocabulary");
+    }
+
+    private Map<String, String> collectAvailableTags(ResourceResolver resolver) {
         Map<String, String> tagMap = new LinkedHashMap<>();
 
 
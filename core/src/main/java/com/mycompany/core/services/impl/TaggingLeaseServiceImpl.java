@@ -0,0 +1,340 @@
+package com.mycompany.core.services.impl;
+
+import com.day.cq.commons.jcr.JcrConstants;
+import com.day.cq.wcm.api.NameConstants;
+import com.mycompany.core.services.TaggingLeaseService;
+import com.mycompany.core.services.TaggingPipelineService;
+import com.mycompany.core.utils.ContentFingerprint;
+import org.apache.sling.api.resource.LoginException;
+import org.apache.sling.api.resource.ModifiableValueMap;
+import org.apache.sling.api.resource.PersistenceException;
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.api.resource.ResourceResolverFactory;
+import org.apache.sling.api.resource.ValueMap;
+import org.apache.sling.commons.metrics.Meter;
+import org.apache.sling.commons.metrics.MetricsService;
+import org.osgi.service.component.annotations.Activate;
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Modified;
+import org.osgi.service.component.annotations.Reference;
+import org.osgi.service.metatype.annotations.AttributeDefinition;
+import org.osgi.service.metatype.annotations.Designate;
+import org.osgi.service.metatype.annotations.ObjectClassDefinition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Leases are nodes below {@link #LEASES_PATH}, one per payload. Concurrent writes to the
+ * same lease fail on commit, also across cluster instances, so only one run wins; the loser
+ * re-reads the lease and merges into the winner. A lease records when the payload was last
+ * modified as its run started, so within the quiet window only runs for content that has not
+ * changed since are dropped. As a
+ * scheduled task the service deletes leases that were released before the quiet window or
+ * that timed out, so the lease folder only holds payloads tagged recently.
+ */
+@Component(service = {TaggingLeaseService.class, Runnable.class})
+@Designate(ocd = TaggingLeaseServiceImpl.Config.class)
+public class TaggingLeaseServiceImpl implements TaggingLeaseService, Runnable {
+
+    @ObjectClassDefinition(name = "AI Tagging Lease Configuration")
+    public @interface Config {
+        @AttributeDefinition(name = "Cron-job expression",
+                description = "When released and timed out leases are deleted")
+        String scheduler_expression() default "0 0 * * * ?";
+
+        @AttributeDefinition(name = "Concurrent task",
+                description = "Whether or not to schedule this task concurrently")
+        boolean scheduler_concurrent() default false;
+
+        @AttributeDefinition(name = "Run on",
+                description = "Instances of the cluster the task runs on")
+        String scheduler_runOn() default "LEADER";
+
+        @AttributeDefinition(name = "Lease Timeout",
+                description = "Minutes after which a lease that was never released can be taken over; "
+                        + "must cover all retries of a tagging job")
+        int lease_timeout_minutes() default 30;
+
+        @AttributeDefinition(name = "Quiet Window",
+                description = "Seconds after a finished run during which new runs for the same, unmodified "
+                        + "payload are dropped")
+        int quiet_window_seconds() default 60;
+    }
+
+    static final String LEASES_PATH = "/var/myaemproject/aitagging/leases";
+
+    static final String PN_PAYLOAD = "payload";
+    static final String PN_OWNER = "owner";
+    static final String PN_EXPIRES = "expires";
+    static final String PN_RELEASED = "released";
+    static final String PN_PENDING = "pending";
+    static final String PN_MODIFIED = "modified";
+
+    static final String METRIC_DUPLICATES_IN_FLIGHT = "myaemproject.aitagging.duplicates.inflight";
+    static final String METRIC_DUPLICATES_QUIET = "myaemproject.aitagging.duplicates.quiet";
+
+    // Commits that conflict with a concurrent change to the lease succeed once re-read
+    private static final int COMMIT_ATTEMPTS = 3;
+
+    // Leases deleted per commit when sweeping
+    private static final int SWEEP_BATCH_SIZE = 500;
+
+    private static final Logger LOG = LoggerFactory.getLogger(TaggingLeaseServiceImpl.class);
+
+    @Reference
+    private ResourceResolverFactory resolverFactory;
+
+    @Reference
+    private MetricsService metricsService;
+
+    private Meter inFlightDuplicates;
+    private Meter quietDuplicates;
+    private int leaseTimeoutMinutes;
+    private int quietWindowSeconds;
+
+    @Activate
+    @Modified
+    protected void activate(Config config) {
+        this.leaseTimeoutMinutes = Math.max(1, config.lease_timeout_minutes());
+        this.quietWindowSeconds = Math.max(0, config.quiet_window_seconds());
+        this.inFlightDuplicates = metricsService.meter(METRIC_DUPLICATES_IN_FLIGHT);
+        this.quietDuplicates = metricsService.meter(METRIC_DUPLICATES_QUIET);
+    }
+
+    @Override
+    public Outcome acquire(String payloadPath, String owner) {
+        try (ResourceResolver resolver = getServiceResolver()) {
+            Outcome outcome = acquire(resolver, payloadPath, owner);
+            if (outcome == Outcome.IN_FLIGHT) {
+                inFlightDuplicates.mark();
+            } else if (outcome == Outcome.QUIET) {
+                quietDuplicates.mark();
+            }
+            return outcome;
+
+        } catch (LoginException e) {
+            // Tagging twice is better than not tagging at all
+            LOG.error("Could not open service resolver to lease " + payloadPath, e);
+            return Outcome.ACQUIRED;
+        }
+    }
+
+    @Override
+    public boolean release(String payloadPath, String owner) {
+        for (int attempt = 1; ; attempt++) {
+            try (ResourceResolver resolver = getServiceResolver()) {
+                return tryRelease(resolver, payloadPath, owner);
+
+            } catch (PersistenceException e) {
+                if (attempt >= COMMIT_ATTEMPTS) {
+                    // An unreleased lease expires after the lease timeout
+                    LOG.warn("Could not release lease on {} after {} attempts: {}", payloadPath, attempt,
+                            e.getMessage());
+                    return false;
+                }
+                LOG.debug("Retrying release of lease on {}: {}", payloadPath, e.getMessage());
+            } catch (LoginException e) {
+                LOG.warn("Could not open service resolver to release lease on {}: {}", payloadPath, e.getMessage());
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Delete leases released before the quiet window and leases that timed out
+     */
+    @Override
+    public void run() {
+        try (ResourceResolver resolver = getServiceResolver()) {
+            Resource leases = resolver.getResource(LEASES_PATH);
+            if (leases == null) {
+                return;
+            }
+
+            long now = System.currentTimeMillis();
+            List<Resource> stale = new ArrayList<>();
+            for (Resource lease : leases.getChildren()) {
+                if (isStale(lease.getValueMap(), now)) {
+                    stale.add(lease);
+                }
+            }
+
+            for (int i = 0; i < stale.size(); i++) {
+                resolver.delete(stale.get(i));
+                if ((i + 1) % SWEEP_BATCH_SIZE == 0) {
+                    resolver.commit();
+                }
+            }
+            resolver.commit();
+            LOG.debug("Deleted {} released or timed out leases", stale.size());
+
+        } catch (LoginException | PersistenceException e) {
+            // Leases changed concurrently are deleted by the next run
+            LOG.warn("Could not delete released leases: {}", e.getMessage());
+        }
+    }
+
+    private boolean tryRelease(ResourceResolver resolver, String payloadPath, String owner)
+            throws PersistenceException {
+        Resource lease = resolver.getResource(getLeasePath(payloadPath));
+        if (lease == null || !owner.equals(lease.getValueMap().get(PN_OWNER, String.class))) {
+            return false;
+        }
+
+        ModifiableValueMap properties = lease.adaptTo(ModifiableValueMap.class);
+        if (properties == null) {
+            return false;
+        }
+
+        boolean pending = properties.get(PN_PENDING, false);
+        properties.put(PN_PENDING, false);
+        if (pending) {
+            // The owner reads the payload once more, so later edits are compared to this state
+            properties.put(PN_EXPIRES, expiresFromNow());
+            putModified(properties, getLastModified(resolver, payloadPath));
+        } else {
+            properties.put(PN_RELEASED, Calendar.getInstance());
+        }
+        resolver.commit();
+        return pending;
+    }
+
+    private boolean isStale(ValueMap lease, long now) {
+        Calendar released = lease.get(PN_RELEASED, Calendar.class);
+        if (released != null) {
+            return now - released.getTimeInMillis() >= quietWindowSeconds * 1000L;
+        }
+        Calendar expires = lease.get(PN_EXPIRES, Calendar.class);
+        return expires == null || expires.getTimeInMillis() <= now;
+    }
+
+    /**
+     * Acquire the lease, re-reading it after losing a race, so the loser merges into the
+     * winner instead of being dropped
+     */
+    private Outcome acquire(ResourceResolver resolver, String payloadPath, String owner) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return tryAcquire(resolver, payloadPath, owner);
+
+            } catch (PersistenceException e) {
+                resolver.revert();
+                resolver.refresh();
+                if (attempt >= COMMIT_ATTEMPTS) {
+                    // Tagging twice is better than not tagging at all
+                    LOG.warn("Could not lease {} after {} attempts, tagging without a lease: {}", payloadPath,
+                            attempt, e.getMessage());
+                    return Outcome.ACQUIRED;
+                }
+                LOG.debug("Lost lease race on {}, reading it again: {}", payloadPath, e.getMessage());
+            }
+        }
+    }
+
+    private Outcome tryAcquire(ResourceResolver resolver, String payloadPath, String owner)
+            throws PersistenceException {
+        Resource lease = resolver.getResource(getLeasePath(payloadPath));
+        Calendar now = Calendar.getInstance();
+        Calendar modified = getLastModified(resolver, payloadPath);
+
+        if (lease == null) {
+            Resource leases = resolver.getResource(LEASES_PATH);
+            if (leases == null) {
+                LOG.warn("Lease folder {} is missing, tagging {} without a lease", LEASES_PATH, payloadPath);
+                return Outcome.ACQUIRED;
+            }
+            Map<String, Object> properties = leaseProperties(payloadPath, owner);
+            if (modified != null) {
+                properties.put(PN_MODIFIED, modified);
+            }
+            resolver.create(leases, ContentFingerprint.ofPath(payloadPath), properties);
+            resolver.commit();
+            return Outcome.ACQUIRED;
+        }
+
+        ValueMap current = lease.getValueMap();
+        Calendar released = current.get(PN_RELEASED, Calendar.class);
+        Calendar expires = current.get(PN_EXPIRES, Calendar.class);
+        ModifiableValueMap properties = lease.adaptTo(ModifiableValueMap.class);
+        if (properties == null) {
+            return Outcome.ACQUIRED;
+        }
+
+        if (released == null && expires != null && expires.after(now)) {
+            // Merge into the run in flight, which processes the payload once more when done
+            properties.put(PN_PENDING, true);
+            resolver.commit();
+            return Outcome.IN_FLIGHT;
+        }
+
+        if (released != null && now.getTimeInMillis() - released.getTimeInMillis() < quietWindowSeconds * 1000L
+                && !isModifiedSince(modified, current.get(PN_MODIFIED, Calendar.class))) {
+            return Outcome.QUIET;
+        }
+
+        properties.remove(PN_RELEASED);
+        properties.putAll(leaseProperties(payloadPath, owner));
+        putModified(properties, modified);
+        resolver.commit();
+        return Outcome.ACQUIRED;
+    }
+
+    /**
+     * @return true if the payload was modified after the last run read it
+     */
+    private static boolean isModifiedSince(Calendar modified, Calendar recorded) {
+        return modified != null && (recorded == null || modified.after(recorded));
+    }
+
+    private static void putModified(ModifiableValueMap properties, Calendar modified) {
+        if (modified != null) {
+            properties.put(PN_MODIFIED, modified);
+        } else {
+            properties.remove(PN_MODIFIED);
+        }
+    }
+
+    /**
+     * @return When the page or asset was last modified, or null if unknown, e.g. for workflow packages
+     */
+    private static Calendar getLastModified(ResourceResolver resolver, String payloadPath) {
+        Resource contentResource = resolver.getResource(payloadPath + "/" + JcrConstants.JCR_CONTENT);
+        if (contentResource == null) {
+            return null;
+        }
+        ValueMap properties = contentResource.getValueMap();
+        Calendar lastModified = properties.get(NameConstants.PN_PAGE_LAST_MOD, Calendar.class);
+        return lastModified != null ? lastModified : properties.get(JcrConstants.JCR_LASTMODIFIED, Calendar.class);
+    }
+
+    private Map<String, Object> leaseProperties(String payloadPath, String owner) {
+        Map<String, Object> properties = new HashMap<>();
+        properties.put(PN_PAYLOAD, payloadPath);
+        properties.put(PN_OWNER, owner);
+        properties.put(PN_EXPIRES, expiresFromNow());
+        properties.put(PN_PENDING, false);
+        return properties;
+    }
+
+    private Calendar expiresFromNow() {
+        Calendar expires = Calendar.getInstance();
+        expires.add(Calendar.MINUTE, leaseTimeoutMinutes);
+        return expires;
+    }
+
+    private String getLeasePath(String payloadPath) {
+        return LEASES_PATH + "/" + ContentFingerprint.ofPath(payloadPath);
+    }
+
+    private ResourceResolver getServiceResolver() throws LoginException {
+        return resolverFactory.getServiceResourceResolver(
+                Map.of(ResourceResolverFactory.SUBSERVICE, TaggingPipelineService.SUBSERVICE));
+    }
+}
@@ -0,0 +1,1026 @@
+package com.mycompany.core.services.impl;
+
+import com.day.cq.commons.jcr.JcrConstants;
+import com.day.cq.dam.api.DamConstants;
+import com.day.cq.dam.commons.util.DamUtil;
+import com.day.cq.wcm.api.NameConstants;
+import com.day.cq.wcm.api.Page;
+import com.day.cq.workflow.collection.ResourceCollection;
+import com.day.cq.workflow.collection.ResourceCollectionManager;
+import com.mycompany.core.services.AITaggingService;
+import com.mycompany.core.services.LiveCopyTaggingService;
+import com.mycompany.core.services.NearDuplicateIndex;
+import com.mycompany.core.services.OpenAIService;
+import com.mycompany.core.services.TagProviderService;
+import com.mycompany.core.services.TaggingPipelineService;
+import com.mycompany.core.services.TaggingScheduler;
+import com.mycompany.core.services.TextExtractionService;
+import com.mycompany.core.utils.ContentFingerprint;
+import com.mycompany.core.utils.MinHash;
+import com.mycompany.core.utils.StageTrace;
+import com.mycompany.core.utils.TagVoting;
+import com.mycompany.core.utils.TaggingState;
+import com.mycompany.core.utils.TextChunker;
+import org.apache.sling.api.resource.LoginException;
+import org.apache.sling.api.resource.PersistenceException;
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.api.resource.ResourceResolverFactory;
+import org.apache.sling.api.resource.ValueMap;
+import org.apache.sling.commons.metrics.Meter;
+import org.apache.sling.commons.metrics.MetricsService;
+import org.osgi.service.component.annotations.Activate;
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Deactivate;
+import org.osgi.service.component.annotations.Reference;
+import org.osgi.service.metatype.annotations.AttributeDefinition;
+import org.osgi.service.metatype.annotations.Designate;
+import org.osgi.service.metatype.annotations.ObjectClassDefinition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.jcr.Node;
+import javax.jcr.RepositoryException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@Component(service = TaggingPipelineService.class)
+@Designate(ocd = TaggingPipelineServiceImpl.Config.class)
+public class TaggingPipelineServiceImpl implements TaggingPipelineService {
+
+    @ObjectClassDefinition(name = "AI Tagging Pipeline Configuration")
+    public @interface Config {
+        @AttributeDefinition(name = "AI Parallelism",
+                description = "Maximum number of concurrent AI requests when tagging asset folders and subtrees")
+        int ai_parallelism() default 4;
+
+        @AttributeDefinition(name = "Batch Size",
+                description = "Number of tagged pages or assets to collect before committing")
+        int batch_size() default 50;
+
+        @AttributeDefinition(name = "Extraction Parallelism",
+                description = "Number of fork-join workers extracting text in bulk mode")
+        int extraction_parallelism() default 2;
+
+        @AttributeDefinition(name = "Bulk Window Size",
+                description = "Number of pages or assets extracted and tagged at a time in bulk mode; bounds memory use")
+        int bulk_window_size() default 200;
+
+        @AttributeDefinition(name = "Chunking Threshold",
+                description = "Pages with more extracted characters are tagged in chunks whose suggestions are "
+                        + "merged by voting; 0 disables chunking")
+        int chunking_threshold() default 8000;
+
+        @AttributeDefinition(name = "Chunked Max Characters",
+                description = "Character budget for extracting pages while chunking is enabled")
+        int chunked_max_characters() default 48000;
+
+        @AttributeDefinition(name = "Chunk Size",
+                description = "Maximum characters per chunk; chunks end at sentence or block boundaries")
+        int chunk_size() default 4000;
+
+        @AttributeDefinition(name = "Chunk Parallelism",
+                description = "Number of chunks tagged at the same time across all pages")
+        int chunk_parallelism() default 3;
+
+        @AttributeDefinition(name = "Result Cache Size",
+                description = "Number of AI suggestions kept in memory by content fingerprint, so previews "
+                        + "and tagging runs of the same content share them")
+        int result_cache_size() default 1000;
+    }
+
+    @Reference
+    private TagProviderService tagProviderService;
+
+    @Reference
+    private OpenAIService openAIService;
+
+    @Reference
+    private AITaggingService aiTaggingService;
+
+    @Reference
+    private TextExtractionService textExtractionService;
+
+    @Reference
+    private MetricsService metricsService;
+
+    @Reference
+    private ResourceResolverFactory resolverFactory;
+
+    @Reference
+    private ResourceCollectionManager resourceCollectionManager;
+
+    @Reference
+    private TaggingScheduler taggingScheduler;
+
+    @Reference
+    private NearDuplicateIndex nearDuplicateIndex;
+
+    @Reference
+    private LiveCopyTaggingService liveCopyTaggingService;
+
+    // Asset metadata (DC/XMP) properties carrying descriptive text
+    private static final String[] ASSET_TEXT_PROPERTIES = {
+            "dc:title", "dc:description", "dc:subject", "xmp:Label",
+            "photoshop:Headline", "photoshop:Category", "Iptc4xmpCore:IntellectualGenre"
+    };
+
+    private static final Set<String> FOLDER_TYPES = Set.of(
+            "sling:Folder", "sling:OrderedFolder", "nt:folder"
+    );
+
+    private static final String[] BULK_NODE_TYPES = {NameConstants.NT_PAGE, DamConstants.NT_DAM_ASSET};
+
+    // Pages or assets a single fork-join task extracts with its own resolver
+    private static final int EXTRACTION_SPLIT_THRESHOLD = 25;
+
+    private static final String PAGE_CONTENT_LABEL = "\nPage Content:\n";
+
+    // Size of the merged tag set of chunked pages, as asked of the AI for single requests
+    private static final int MIN_TAGS = 3;
+    private static final int MAX_TAGS = 8;
+
+    private static final Logger LOG = LoggerFactory.getLogger(TaggingPipelineServiceImpl.class);
+
+    static final String METRIC_FINGERPRINT_SKIPS = "myaemproject.aitagging.fingerprint.skipped";
+    static final String METRIC_STAGE_PREFIX = "myaemproject.aitagging.stage.";
+    static final String METRIC_NEAR_DUPLICATE_REUSES = "myaemproject.aitagging.nearduplicate.reused";
+    static final String METRIC_CHUNKS = "myaemproject.aitagging.chunks";
+    static final String METRIC_RESULT_CACHE_HITS = "myaemproject.aitagging.results.cached";
+    static final String METRIC_RESULT_SHARED = "myaemproject.aitagging.results.shared";
+
+    private Meter fingerprintSkips;
+    private Meter nearDuplicateReuses;
+    private Meter resultCacheHits;
+    private Meter resultsShared;
+    // Suggestions by model and content fingerprint
+    private Map<String, List<String>> resultCache;
+    // AI requests in flight by the same key, joined instead of repeated
+    private final Map<String, CompletableFuture<List<String>>> inFlight = new ConcurrentHashMap<>();
+    private ExecutorService aiExecutor;
+    private ExecutorService chunkExecutor;
+    private ForkJoinPool extractionPool;
+    private int aiParallelism;
+    private int batchSize;
+    private int bulkWindowSize;
+    private int chunkingThreshold;
+    private int chunkedMaxCharacters;
+    private int chunkSize;
+
+    @Activate
+    protected void activate(Config config) {
+        this.aiParallelism = Math.max(1, config.ai_parallelism());
+        this.batchSize = Math.max(1, config.batch_size());
+        this.bulkWindowSize = Math.max(1, config.bulk_window_size());
+        this.fingerprintSkips = metricsService.meter(METRIC_FINGERPRINT_SKIPS);
+        this.nearDuplicateReuses = metricsService.meter(METRIC_NEAR_DUPLICATE_REUSES);
+        this.resultCacheHits = metricsService.meter(METRIC_RESULT_CACHE_HITS);
+        this.resultsShared = metricsService.meter(METRIC_RESULT_SHARED);
+
+        int resultCacheSize = Math.max(1, config.result_cache_size());
+        this.resultCache = Collections.synchronizedMap(new LinkedHashMap<String, List<String>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, List<String>> eldest) {
+                return size() > resultCacheSize;
+            }
+        });
+
+        AtomicInteger threadCount = new AtomicInteger();
+        this.aiExecutor = Executors.newFixedThreadPool(aiParallelism, runnable -> {
+            Thread thread = new Thread(runnable, "ai-tagging-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.extractionPool = new ForkJoinPool(Math.max(1, config.extraction_parallelism()));
+
+        this.chunkingThreshold = Math.max(0, config.chunking_threshold());
+        this.chunkedMaxCharacters = Math.max(chunkingThreshold, config.chunked_max_characters());
+        this.chunkSize = Math.max(1, config.chunk_size());
+        AtomicInteger chunkThreadCount = new AtomicInteger();
+        this.chunkExecutor = Executors.newFixedThreadPool(Math.max(1, config.chunk_parallelism()), runnable -> {
+            Thread thread = new Thread(runnable, "ai-tagging-chunk-" + chunkThreadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Deactivate
+    protected void deactivate() {
+        if (aiExecutor != null) {
+            aiExecutor.shutdownNow();
+        }
+        if (chunkExecutor != null) {
+            chunkExecutor.shutdownNow();
+        }
+        if (extractionPool != null) {
+            extractionPool.shutdownNow();
+        }
+    }
+
+    @Override
+    public boolean process(Resource payload, ResourceResolver resolver, TaggingScheduler.Priority priority,
+                           StageTrace trace) {
+        String payloadPath = payload.getPath();
+
+        try {
+            if (isWorkflowPackage(payload) || isAsset(payloadPath)) {
+                return tagBulk(payload, resolver, null, priority, trace);
+            } else if (isPage(payloadPath)) {
+                return processPage(payload, resolver, priority, trace);
+            }
+
+            LOG.warn("Payload is neither a page nor an asset: {}", payloadPath);
+            return true;
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            LOG.warn("Interrupted while tagging: {}", payloadPath);
+            return false;
+        } catch (Exception e) {
+            LOG.error("Error in AI tagging for: " + payloadPath, e);
+            return false;
+        } finally {
+            recordStageMetrics(trace);
+        }
+    }
+
+    @Override
+    public boolean processBulk(Resource payload, ResourceResolver resolver, ProgressListener listener,
+                               TaggingScheduler.Priority priority, StageTrace trace) {
+        try {
+            return tagBulk(payload, resolver, listener, priority, trace);
+        } finally {
+            recordStageMetrics(trace);
+        }
+    }
+
+    @Override
+    public Preview preview(Resource pageResource, ResourceResolver resolver, StageTrace trace) {
+        Page page = pageResource.adaptTo(Page.class);
+        if (page == null) {
+            return null;
+        }
+        String blueprintPath = liveCopyTaggingService.getBlueprintPath(page);
+        Resource blueprint = blueprintPath != null ? resolver.getResource(blueprintPath) : null;
+        if (blueprint != null) {
+            return preview(blueprint, resolver, trace);
+        }
+
+        Map<String, String> availableTags;
+        String vocabularyVersion;
+        try (StageTrace.Span span = trace.start(StageTrace.VOCABULARY)) {
+            TagProviderService.Vocabulary vocabulary = tagProviderService.getVocabulary();
+            availableTags = vocabulary.getTags();
+            vocabularyVersion = vocabulary.getVersion();
+        }
+
+        String content;
+        try (StageTrace.Span span = trace.start(StageTrace.EXTRACTION)) {
+            content = extractPageContent(page);
+        }
+        if (content.isEmpty()) {
+            return null;
+        }
+
+        AIRequest request = new AIRequest(TaggingScheduler.Priority.EDITOR, taggingScheduler.getSite(pageResource),
+                availableTags);
+        return new PagePreview(page, content, ContentFingerprint.of(content, vocabularyVersion), vocabularyVersion,
+                request, trace);
+    }
+
+    @Override
+    public String getPreviewVersion(Resource pageResource) {
+        Page page = pageResource.adaptTo(Page.class);
+        Calendar lastModified = page != null ? page.getLastModified() : null;
+        if (lastModified == null) {
+            return null;
+        }
+        return lastModified.getTimeInMillis() + "-" + tagProviderService.getVocabulary().getVersion() + "-"
+                + openAIService.getModel();
+    }
+
+    /**
+     * Feed the stage totals of a run into the rolling per-stage timers and histograms,
+     * which Sling Metrics exposes through JMX
+     */
+    private void recordStageMetrics(StageTrace trace) {
+        Map<String, Long> allocatedBytes = trace.getAllocatedBytes();
+        trace.getMillis().forEach((stage, millis) -> {
+            metricsService.timer(METRIC_STAGE_PREFIX + stage).update(millis, TimeUnit.MILLISECONDS);
+            long bytes = allocatedBytes.get(stage);
+            if (bytes >= 0) {
+                metricsService.histogram(METRIC_STAGE_PREFIX + stage + ".allocated").update(bytes);
+            }
+        });
+    }
+
+    private boolean tagBulk(Resource payload, ResourceResolver resolver, ProgressListener listener,
+                            TaggingScheduler.Priority priority, StageTrace trace) {
+        long start = System.currentTimeMillis();
+
+        try {
+            List<String> paths = expand(payload);
+            if (paths.isEmpty()) {
+                LOG.warn("No pages or assets found to tag below: {}", payload.getPath());
+                return true;
+            }
+
+            LOG.debug("Bulk tagging {} pages and assets below {}", paths.size(), payload.getPath());
+
+            Map<String, String> availableTags;
+            String vocabularyVersion;
+            try (StageTrace.Span span = trace.start(StageTrace.VOCABULARY)) {
+                TagProviderService.Vocabulary vocabulary = tagProviderService.getVocabulary();
+                availableTags = vocabulary.getTags();
+                vocabularyVersion = vocabulary.getVersion();
+            }
+            BulkCounts counts = new BulkCounts();
+            AIRequest request = new AIRequest(priority, taggingScheduler.getSite(payload), availableTags);
+
+            // Windows keep only a bounded number of extracted texts in memory
+            for (int from = 0; from < paths.size(); from += bulkWindowSize) {
+                List<String> window = paths.subList(from, Math.min(paths.size(), from + bulkWindowSize));
+
+                List<Candidate> candidates = extractionPool.invoke(
+                        new ExtractionTask(window, vocabularyVersion, trace));
+                counts.skipped += window.size() - candidates.size();
+
+                tagCandidates(candidates, request, vocabularyVersion, resolver, counts, trace);
+
+                counts.processed += window.size();
+                if (listener != null) {
+                    listener.onProgress(counts.processed, paths.size(), System.currentTimeMillis() - start);
+                }
+            }
+
+            LOG.debug("Bulk tagging of {} done in {} ms: {} tagged ({} from near-duplicates), "
+                            + "{} unchanged or without content, {} failed",
+                    payload.getPath(), System.currentTimeMillis() - start, counts.tagged, counts.reused,
+                    counts.skipped, counts.failed);
+            return counts.failed == 0;
+
+        } catch (RepositoryException | PersistenceException | RuntimeException e) {
+            LOG.error("Error in bulk AI tagging for: " + payload.getPath(), e);
+            return false;
+        }
+    }
+
+    private boolean isPage(String path) {
+        return path.startsWith("/content/") &&
+                !path.startsWith("/content/dam") &&
+                !path.startsWith("/content/experience-fragments");
+    }
+
+    private boolean isAsset(String path) {
+        return path.startsWith(DamConstants.MOUNTPOINT_ASSETS + "/");
+    }
+
+    private boolean isWorkflowPackage(Resource resource) {
+        return resource.getChild(JcrConstants.JCR_CONTENT + "/vlt:definition") != null;
+    }
+
+    private boolean processPage(Resource pageResource, ResourceResolver resolver, TaggingScheduler.Priority priority,
+                                StageTrace trace) throws PersistenceException, InterruptedException {
+        Page page = pageResource.adaptTo(Page.class);
+        String blueprintPath = page != null ? liveCopyTaggingService.getBlueprintPath(page) : null;
+        if (blueprintPath != null) {
+            // The blueprint is tagged once and passes its tags on to this and its other live copies
+            LOG.debug("Tagging blueprint {} of live copy {}", blueprintPath, pageResource.getPath());
+            return processPage(resolver.getResource(blueprintPath), resolver, priority, trace);
+        }
+
+        Map<String, String> availableTags;
+        String vocabularyVersion;
+        try (StageTrace.Span span = trace.start(StageTrace.VOCABULARY)) {
+            TagProviderService.Vocabulary vocabulary = tagProviderService.getVocabulary();
+            availableTags = vocabulary.getTags();
+            vocabularyVersion = vocabulary.getVersion();
+        }
+
+        Candidate candidate;
+        try (StageTrace.Span span = trace.start(StageTrace.EXTRACTION)) {
+            candidate = extractCandidate(pageResource, vocabularyVersion);
+        }
+        if (candidate == null) {
+            LOG.debug("Page unchanged since last tagging or without text: {}", pageResource.getPath());
+            // Live copies rolled out since the page was tagged still need its tags
+            try (StageTrace.Span span = trace.start(StageTrace.WRITE)) {
+                if (page != null && liveCopyTaggingService.propagateTags(page) > 0) {
+                    resolver.commit();
+                }
+            }
+            return true;
+        }
+
+        List<String> suggestedTagIds;
+        if (candidate.reusedTagIds != null) {
+            nearDuplicateReuses.mark();
+            suggestedTagIds = candidate.reusedTagIds;
+        } else {
+            AIRequest request = new AIRequest(priority, taggingScheduler.getSite(pageResource), availableTags);
+            suggestedTagIds = request.suggestTags(candidate, trace);
+        }
+
+        try (StageTrace.Span span = trace.start(StageTrace.WRITE)) {
+            if (!writeTags(new Suggestion(candidate, suggestedTagIds), vocabularyVersion, resolver)) {
+                return false;
+            }
+            resolver.commit();
+        }
+        return true;
+    }
+
+    /**
+     * Expand a bulk payload into the paths of the pages and assets to tag
+     */
+    private List<String> expand(Resource payload) throws RepositoryException {
+        List<String> paths = new ArrayList<>();
+
+        if (isWorkflowPackage(payload)) {
+            Node packageNode = payload.adaptTo(Node.class);
+            if (packageNode != null) {
+                for (ResourceCollection collection : resourceCollectionManager.getCollectionsForNode(packageNode)) {
+                    for (Node member : collection.list(BULK_NODE_TYPES)) {
+                        paths.add(member.getPath());
+                    }
+                }
+            }
+        } else if (isAsset(payload.getPath())) {
+            for (Resource asset : collectAssets(payload)) {
+                paths.add(asset.getPath());
+            }
+        } else {
+            Page root = payload.adaptTo(Page.class);
+            if (root != null) {
+                paths.add(root.getPath());
+                Iterator<Page> descendants = root.listChildren(null, true);
+                while (descendants.hasNext()) {
+                    paths.add(descendants.next().getPath());
+                }
+            }
+        }
+
+        return paths;
+    }
+
+    /**
+     * Collect the assets of a payload: the asset itself, or every asset below a folder
+     */
+    private List<Resource> collectAssets(Resource payload) {
+        List<Resource> assets = new ArrayList<>();
+        Deque<Resource> folders = new ArrayDeque<>();
+
+        if (DamUtil.isAsset(payload)) {
+            assets.add(payload);
+        } else if (isFolder(payload)) {
+            folders.push(payload);
+        }
+
+        while (!folders.isEmpty()) {
+            for (Resource child : folders.pop().getChildren()) {
+                if (DamUtil.isAsset(child)) {
+                    assets.add(child);
+                } else if (isFolder(child)) {
+                    folders.push(child);
+                }
+            }
+        }
+
+        return assets;
+    }
+
+    private boolean isFolder(Resource resource) {
+        return FOLDER_TYPES.contains(resource.getValueMap().get(JcrConstants.JCR_PRIMARYTYPE, String.class));
+    }
+
+    /**
+     * Extract the content of a page or asset for the AI
+     * @return The candidate, or null if there is no content or it is unchanged since it was last tagged
+     */
+    private Candidate extractCandidate(Resource resource, String vocabularyVersion) {
+        String content;
+        Resource contentResource;
+        String blueprintPath = null;
+
+        if (DamUtil.isAsset(resource)) {
+            content = extractAssetText(resource);
+            contentResource = resource.getChild(JcrConstants.JCR_CONTENT);
+        } else {
+            Page page = resource.adaptTo(Page.class);
+            if (page == null) {
+                LOG.warn("Could not adapt resource to Page: {}", resource.getPath());
+                return null;
+            }
+            content = extractPageContent(page);
+            contentResource = page.getContentResource();
+            blueprintPath = liveCopyTaggingService.getBlueprintPath(page);
+        }
+
+        if (content.isEmpty()) {
+            LOG.debug("No text content to tag on: {}", resource.getPath());
+            return null;
+        }
+
+        String contentHash = ContentFingerprint.of(content, vocabularyVersion);
+        TaggingState state = TaggingState.read(contentResource);
+
+        // Unchanged content tagged against the same vocabulary and model needs no AI call
+        if (isUnchanged(state, contentHash)) {
+            // Content seen again becomes available for reuse, also after a restart
+            nearDuplicateIndex.put(resource.getPath(), MinHash.decode(state.getMinHash()));
+            LOG.debug("Content unchanged since last tagging, skipping: {}", resource.getPath());
+            return null;
+        }
+
+        int[] signature = MinHash.of(content);
+        List<String> reusedTagIds = blueprintPath != null
+                ? getReusableTags(blueprintPath, resource.getResourceResolver(), vocabularyVersion)
+                : null;
+        if (reusedTagIds == null) {
+            reusedTagIds = findReusableTags(resource, signature, vocabularyVersion);
+        }
+        return new Candidate(resource.getPath(), content, contentHash, signature, reusedTagIds);
+    }
+
+    /**
+     * Check the stored fingerprint of a content resource, counting skips
+     */
+    private boolean isUnchanged(TaggingState state, String contentHash) {
+        if (state != null && state.matches(contentHash, openAIService.getModel())) {
+            fingerprintSkips.mark();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Look up tagged content nearly the same as the content of a page or asset
+     * @return Tags the AI suggested for that content, or null if there is none tagged against
+     *         the same vocabulary and model
+     */
+    private List<String> findReusableTags(Resource resource, int[] signature, String vocabularyVersion) {
+        String similarPath = nearDuplicateIndex.findSimilar(resource.getPath(), signature);
+        if (similarPath == null) {
+            return null;
+        }
+
+        List<String> tagIds = getReusableTags(similarPath, resource.getResourceResolver(), vocabularyVersion);
+        if (tagIds == null) {
+            nearDuplicateIndex.remove(similarPath);
+            return null;
+        }
+
+        LOG.debug("Reusing tags of near-duplicate {} for {}", similarPath, resource.getPath());
+        return tagIds;
+    }
+
+    /**
+     * @param path Path of a tagged page or asset
+     * @return Tags the AI suggested for it, or null if it was not tagged against the same vocabulary and model
+     */
+    private List<String> getReusableTags(String path, ResourceResolver resolver, String vocabularyVersion) {
+        TaggingState state = TaggingState.read(resolver.getResource(path + "/" + JcrConstants.JCR_CONTENT));
+        if (state == null || state.getTagIds().isEmpty()
+                || !vocabularyVersion.equals(state.getVocabularyVersion())
+                || !openAIService.getModel().equals(state.getModel())) {
+            return null;
+        }
+        return state.getTagIds();
+    }
+
+    /**
+     * Tag candidates with a bounded number of concurrent AI requests. Writes stay on the
+     * calling thread since the resolver is not thread-safe; only the AI calls run on the
+     * executor, and writes are committed in batches.
+     */
+    private void tagCandidates(List<Candidate> candidates, AIRequest request, String vocabularyVersion,
+                               ResourceResolver resolver, BulkCounts counts, StageTrace trace)
+            throws PersistenceException {
+        CompletionService<Suggestion> completionService = new ExecutorCompletionService<>(aiExecutor);
+        int maxInFlight = aiParallelism * 2;
+        int inFlight = 0;
+        int pending = 0;
+
+        for (Candidate candidate : candidates) {
+            if (candidate.reusedTagIds != null) {
+                // Near-duplicates inherit their tags without an AI request
+                nearDuplicateReuses.mark();
+                counts.reused++;
+                pending += writeOrCount(new Suggestion(candidate, candidate.reusedTagIds), vocabularyVersion,
+                        resolver, counts, trace);
+            } else {
+                completionService.submit(() -> new Suggestion(candidate, request.suggestTags(candidate, trace)));
+                inFlight++;
+            }
+
+            // Keep the number of queued requests bounded, writing whatever has completed
+            while (inFlight >= maxInFlight) {
+                pending += writeOrCount(takeSuggestion(completionService), vocabularyVersion, resolver, counts,
+                        trace);
+                inFlight--;
+            }
+            if (pending >= batchSize) {
+                commit(resolver, trace);
+                counts.tagged += pending;
+                pending = 0;
+            }
+        }
+
+        while (inFlight > 0) {
+            pending += writeOrCount(takeSuggestion(completionService), vocabularyVersion, resolver, counts, trace);
+            inFlight--;
+        }
+        if (pending > 0) {
+            commit(resolver, trace);
+            counts.tagged += pending;
+        }
+    }
+
+    private void commit(ResourceResolver resolver, StageTrace trace) throws PersistenceException {
+        try (StageTrace.Span span = trace.start(StageTrace.WRITE)) {
+            resolver.commit();
+        }
+    }
+
+    private int writeOrCount(Suggestion suggestion, String vocabularyVersion, ResourceResolver resolver,
+                             BulkCounts counts, StageTrace trace) throws PersistenceException {
+        try (StageTrace.Span span = trace.start(StageTrace.WRITE)) {
+            if (writeTags(suggestion, vocabularyVersion, resolver)) {
+                return 1;
+            }
+        }
+        counts.failed++;
+        return 0;
+    }
+
+    private Suggestion takeSuggestion(CompletionService<Suggestion> completionService) {
+        try {
+            return completionService.take().get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for AI suggestions", e);
+        } catch (ExecutionException e) {
+            LOG.error("AI request failed", e.getCause());
+            return null;
+        }
+    }
+
+    /**
+     * Stage the tags and tagging state of a page or asset without committing
+     * @return false if there was no suggestion to write
+     */
+    private boolean writeTags(Suggestion suggestion, String vocabularyVersion, ResourceResolver resolver)
+            throws PersistenceException {
+        if (suggestion == null || suggestion.tagIds.isEmpty()) {
+            return false;
+        }
+
+        Resource resource = resolver.getResource(suggestion.candidate.path);
+        if (resource == null) {
+            return false;
+        }
+
+        Resource contentResource;
+        Page page = resource.adaptTo(Page.class);
+        if (page != null) {
+            aiTaggingService.applyTagsToPage(page, suggestion.tagIds, false);
+            contentResource = page.getContentResource();
+        } else {
+            aiTaggingService.applyTagsToResource(resource, suggestion.tagIds, resolver, false);
+            contentResource = resource.getChild(JcrConstants.JCR_CONTENT);
+        }
+
+        Candidate candidate = suggestion.candidate;
+        TaggingState.write(contentResource, candidate.contentHash, vocabularyVersion, openAIService.getModel(),
+                suggestion.tagIds, MinHash.encode(candidate.signature));
+        nearDuplicateIndex.put(candidate.path, candidate.signature);
+
+        if (page != null) {
+            // Live copies still inheriting the text share the tags, staged with the same batch
+            liveCopyTaggingService.propagateTags(page);
+        }
+        return true;
+    }
+
+    /**
+     * Extract descriptive text of an asset from its jcr:content/metadata node
+     */
+    private String extractAssetText(Resource asset) {
+        StringBuilder content = new StringBuilder();
+        content.append("Asset Name: ").append(asset.getName()).append("\n");
+
+        Resource metadata = asset.getChild(JcrConstants.JCR_CONTENT + "/" + DamConstants.METADATA_FOLDER);
+        if (metadata == null) {
+            return "";
+        }
+
+        ValueMap properties = metadata.getValueMap();
+        int nameLength = content.length();
+        for (String property : ASSET_TEXT_PROPERTIES) {
+            String[] values = properties.get(property, String[].class);
+            if (values == null) {
+                continue;
+            }
+            for (String value : values) {
+                if (value != null && !value.trim().isEmpty()) {
+                    content.append(value.trim()).append("\n");
+                }
+            }
+        }
+
+        // The file name alone is not worth an AI request
+        return content.length() > nameLength ? content.toString() : "";
+    }
+
+    private String extractPageContent(Page page) {
+        // Long pages are extracted in full when they can be tagged in chunks
+        String textContent = chunkingThreshold > 0
+                ? textExtractionService.extractText(page.getContentResource(), chunkedMaxCharacters)
+                : textExtractionService.extractText(page.getContentResource());
+        return textContent.isEmpty() ? "" : buildPageContent(page, textContent);
+    }
+
+    private String buildPageContent(Page page, String extractedText) {
+        StringBuilder content = new StringBuilder();
+        content.append("Page Title: ").append(page.getTitle() != null ? page.getTitle() : "").append("\n");
+        content.append("Page Name: ").append(page.getName()).append("\n");
+
+        if (page.getDescription() != null && !page.getDescription().isEmpty()) {
+            content.append("Description: ").append(page.getDescription()).append("\n");
+        }
+
+        content.append(PAGE_CONTENT_LABEL).append(extractedText);
+        return content.toString();
+    }
+
+    /**
+     * Extracts a window of pages and assets, splitting it across the fork-join pool
+     */
+    private final class ExtractionTask extends RecursiveTask<List<Candidate>> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final transient List<String> paths;
+        private final String vocabularyVersion;
+        private final transient StageTrace trace;
+
+        private ExtractionTask(List<String> paths, String vocabularyVersion, StageTrace trace) {
+            this.paths = paths;
+            this.vocabularyVersion = vocabularyVersion;
+            this.trace = trace;
+        }
+
+        @Override
+        protected List<Candidate> compute() {
+            if (paths.size() > EXTRACTION_SPLIT_THRESHOLD) {
+                int middle = paths.size() / 2;
+                ExtractionTask left = new ExtractionTask(paths.subList(0, middle), vocabularyVersion, trace);
+                left.fork();
+                List<Candidate> right = new ExtractionTask(paths.subList(middle, paths.size()), vocabularyVersion,
+                        trace).compute();
+                List<Candidate> candidates = new ArrayList<>(left.join());
+                candidates.addAll(right);
+                return candidates;
+            }
+
+            // Resolvers are not thread-safe, so every task reads with its own
+            try (ResourceResolver resolver = resolverFactory.getServiceResourceResolver(
+                    Map.of(ResourceResolverFactory.SUBSERVICE, SUBSERVICE));
+                 StageTrace.Span span = trace.start(StageTrace.EXTRACTION)) {
+                List<Candidate> candidates = new ArrayList<>();
+                for (String path : paths) {
+                    Resource resource = resolver.getResource(path);
+                    Candidate candidate = resource != null ? extractCandidate(resource, vocabularyVersion) : null;
+                    if (candidate != null) {
+                        candidates.add(candidate);
+                    }
+                }
+                return candidates;
+            } catch (LoginException e) {
+                throw new IllegalStateException("Could not open service resolver for subservice " + SUBSERVICE, e);
+            }
+        }
+    }
+
+    /**
+     * AI requests of one tagging run, queued in the {@link TaggingScheduler} before they are sent
+     */
+    private final class AIRequest {
+        private final TaggingScheduler.Priority priority;
+        private final String site;
+        private final Map<String, String> availableTags;
+
+        private AIRequest(TaggingScheduler.Priority priority, String site, Map<String, String> availableTags) {
+            this.priority = priority;
+            this.site = site;
+            this.availableTags = availableTags;
+        }
+
+        /**
+         * Suggest tags once per content: recent suggestions are answered from the result cache,
+         * and callers asking for content already in flight wait for that request
+         */
+        private List<String> suggestTags(Candidate candidate, StageTrace trace) throws InterruptedException {
+            String key = openAIService.getModel() + ":" + candidate.contentHash;
+            List<String> cached = resultCache.get(key);
+            if (cached != null) {
+                resultCacheHits.mark();
+                return cached;
+            }
+
+            CompletableFuture<List<String>> flight = new CompletableFuture<>();
+            CompletableFuture<List<String>> running = inFlight.putIfAbsent(key, flight);
+            if (running != null) {
+                resultsShared.mark();
+                return await(running, candidate.path);
+            }
+
+            try {
+                // Another request may have finished since the cache was checked
+                List<String> tagIds = resultCache.get(key);
+                if (tagIds == null) {
+                    tagIds = requestTags(candidate, trace);
+                    if (!tagIds.isEmpty()) {
+                        resultCache.put(key, tagIds);
+                    }
+                }
+                flight.complete(tagIds);
+                return tagIds;
+            } catch (InterruptedException | RuntimeException e) {
+                flight.completeExceptionally(e);
+                throw e;
+            } finally {
+                inFlight.remove(key, flight);
+            }
+        }
+
+        private List<String> await(CompletableFuture<List<String>> running, String path) throws InterruptedException {
+            try {
+                return running.get();
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Shared AI request for " + path + " failed", e.getCause());
+            }
+        }
+
+        private List<String> requestTags(Candidate candidate, StageTrace trace) throws InterruptedException {
+            int contentStart = candidate.content.indexOf(PAGE_CONTENT_LABEL);
+            if (chunkingThreshold > 0 && contentStart >= 0
+                    && candidate.content.length() - contentStart > chunkingThreshold) {
+                return suggestChunkedTags(candidate, contentStart, trace);
+            }
+            return suggestTags(candidate.content, trace);
+        }
+
+        private List<String> suggestTags(String content, StageTrace trace) throws InterruptedException {
+            try (TaggingScheduler.Permit permit = taggingScheduler.acquire(priority, site);
+                 StageTrace.Span span = trace.start(StageTrace.AI)) {
+                return openAIService.generateTagSuggestions(content, availableTags);
+            }
+        }
+
+        /**
+         * Map: tag the chunks of a long page in parallel, each with the page title and
+         * description. Reduce: merge the suggestions per chunk by voting.
+         */
+        private List<String> suggestChunkedTags(Candidate candidate, int contentStart, StageTrace trace)
+                throws InterruptedException {
+            String header = candidate.content.substring(0, contentStart);
+            List<String> chunks = TextChunker.split(
+                    candidate.content.substring(contentStart + PAGE_CONTENT_LABEL.length()), chunkSize);
+            metricsService.histogram(METRIC_CHUNKS).update(chunks.size());
+
+            List<Future<List<String>>> futures = new ArrayList<>();
+            for (int i = 0; i < chunks.size(); i++) {
+                String content = header + "\nPage Content (part " + (i + 1) + " of " + chunks.size() + "):\n"
+                        + chunks.get(i);
+                futures.add(chunkExecutor.submit(() -> suggestTags(content, trace)));
+            }
+
+            List<List<String>> suggestions = new ArrayList<>();
+            try {
+                for (Future<List<String>> future : futures) {
+                    try {
+                        suggestions.add(future.get());
+                    } catch (ExecutionException e) {
+                        LOG.warn("AI request for a chunk of {} failed", candidate.path, e.getCause());
+                    }
+                }
+            } finally {
+                futures.forEach(future -> future.cancel(true));
+            }
+
+            LOG.debug("Tagged {} in {} chunks", candidate.path, chunks.size());
+            return TagVoting.merge(suggestions, MIN_TAGS, MAX_TAGS);
+        }
+    }
+
+    /**
+     * Preview of a page; the content is fingerprinted up front, tags are suggested on request
+     */
+    private final class PagePreview implements Preview {
+        private final Page page;
+        private final String content;
+        private final String contentHash;
+        private final String vocabularyVersion;
+        private final String model;
+        private final AIRequest request;
+        private final StageTrace trace;
+
+        private PagePreview(Page page, String content, String contentHash, String vocabularyVersion,
+                            AIRequest request, StageTrace trace) {
+            this.page = page;
+            this.content = content;
+            this.contentHash = contentHash;
+            this.vocabularyVersion = vocabularyVersion;
+            this.model = openAIService.getModel();
+            this.request = request;
+            this.trace = trace;
+        }
+
+        @Override
+        public String getContentHash() {
+            return contentHash;
+        }
+
+        @Override
+        public String getVocabularyVersion() {
+            return vocabularyVersion;
+        }
+
+        @Override
+        public String getModel() {
+            return model;
+        }
+
+        @Override
+        public List<String> getTagIds() throws InterruptedException {
+            TaggingState state = TaggingState.read(page.getContentResource());
+            if (state != null && state.matches(contentHash, model) && !state.getTagIds().isEmpty()) {
+                return state.getTagIds();
+            }
+
+            int[] signature = MinHash.of(content);
+            List<String> reusedTagIds = findReusableTags(page.adaptTo(Resource.class), signature, vocabularyVersion);
+            if (reusedTagIds != null) {
+                return reusedTagIds;
+            }
+            return request.suggestTags(new Candidate(page.getPath(), content, contentHash, signature, null), trace);
+        }
+    }
+
+    private static final class Candidate {
+        private final String path;
+        private final String content;
+        private final String contentHash;
+        private final int[] signature;
+        // Tags of near-duplicate content, or null if the AI has to suggest tags
+        private final List<String> reusedTagIds;
+
+        private Candidate(String path, String content, String contentHash, int[] signature,
+                          List<String> reusedTagIds) {
+            this.path = path;
+            this.content = content;
+            this.contentHash = contentHash;
+            this.signature = signature;
+            this.reusedTagIds = reusedTagIds;
+        }
+    }
+
+    private static final class Suggestion {
+        private final Candidate candidate;
+        private final List<String> tagIds;
+
+        private Suggestion(Candidate candidate, List<String> tagIds) {
+            this.candidate = candidate;
+            this.tagIds = tagIds;
+        }
+    }
+
+    private static final class BulkCounts {
+        private int processed;
+        private int tagged;
+        private int reused;
+        private int skipped;
+        private int failed;
+    }
+}
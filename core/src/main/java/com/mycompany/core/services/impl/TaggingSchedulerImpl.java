@@ -0,0 +1,247 @@
+package com.mycompany.core.services.impl;
+
+import com.day.cq.commons.jcr.JcrConstants;
+import com.day.cq.dam.api.DamConstants;
+import com.mycompany.core.services.TaggingScheduler;
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.commons.metrics.Counter;
+import org.apache.sling.commons.metrics.MetricsService;
+import org.apache.sling.commons.metrics.Timer;
+import org.osgi.service.component.annotations.Activate;
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Reference;
+import org.osgi.service.metatype.annotations.AttributeDefinition;
+import org.osgi.service.metatype.annotations.Designate;
+import org.osgi.service.metatype.annotations.ObjectClassDefinition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Hands out a fixed number of permits. Waiting requests are granted by priority class;
+ * within a class, the site with the lowest virtual time goes next. Granting a request
+ * advances its site's virtual time by the inverse of the site's weight, so a site with
+ * weight 2 gets twice the requests of a site with weight 1 while both are waiting.
+ */
+@Component(service = TaggingScheduler.class)
+@Designate(ocd = TaggingSchedulerImpl.Config.class)
+public class TaggingSchedulerImpl implements TaggingScheduler {
+
+    @ObjectClassDefinition(name = "AI Tagging Scheduler Configuration")
+    public @interface Config {
+        @AttributeDefinition(name = "Max Concurrent Requests",
+                description = "Number of AI requests running at the same time across all tagging runs")
+        int max_concurrent_requests() default 4;
+
+        @AttributeDefinition(name = "Site Weights",
+                description = "Relative shares of sites as site=weight, e.g. myaemproject=2; other sites weigh 1")
+        String[] site_weights() default {};
+    }
+
+    static final String METRIC_QUEUED_PREFIX = "myaemproject.aitagging.scheduler.queued.";
+    static final String METRIC_WAIT_PREFIX = "myaemproject.aitagging.scheduler.wait.";
+
+    private static final String DEFAULT_SITE = "default";
+    private static final String PN_CONF = "cq:conf";
+
+    private static final Logger LOG = LoggerFactory.getLogger(TaggingSchedulerImpl.class);
+
+    @Reference
+    private MetricsService metricsService;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition granted = lock.newCondition();
+
+    // Waiting requests per class and site; sites are kept in arrival order
+    private final Map<Priority, Map<String, ArrayDeque<Waiter>>> queues = new EnumMap<>(Priority.class);
+    private final Map<String, Double> virtualTimes = new HashMap<>();
+    private final Map<Priority, Counter> queued = new EnumMap<>(Priority.class);
+    private final Map<Priority, Timer> waits = new EnumMap<>(Priority.class);
+    private Map<String, Double> siteWeights;
+    private double virtualTime;
+    private int available;
+
+    @Activate
+    protected void activate(Config config) {
+        this.available = Math.max(1, config.max_concurrent_requests());
+        this.siteWeights = parseWeights(config.site_weights());
+
+        for (Priority priority : Priority.values()) {
+            String name = priority.name().toLowerCase();
+            queues.put(priority, new LinkedHashMap<>());
+            queued.put(priority, metricsService.counter(METRIC_QUEUED_PREFIX + name));
+            waits.put(priority, metricsService.timer(METRIC_WAIT_PREFIX + name));
+        }
+    }
+
+    @Override
+    public String getSite(Resource resource) {
+        for (Resource current = resource; current != null; current = current.getParent()) {
+            String conf = current.getValueMap().get(PN_CONF, String.class);
+            Resource content = current.getChild(JcrConstants.JCR_CONTENT);
+            if (conf == null && content != null) {
+                conf = content.getValueMap().get(PN_CONF, String.class);
+            }
+            if (conf != null && !conf.isEmpty()) {
+                return conf.substring(conf.lastIndexOf('/') + 1);
+            }
+        }
+
+        // Content root, e.g. /content/<site>/... or /content/dam/<site>/...
+        String path = resource.getPath();
+        String root = path.startsWith(DamConstants.MOUNTPOINT_ASSETS + "/")
+                ? path.substring(DamConstants.MOUNTPOINT_ASSETS.length() + 1)
+                : path.startsWith("/content/") ? path.substring("/content/".length()) : null;
+        if (root == null || root.isEmpty()) {
+            return DEFAULT_SITE;
+        }
+        int end = root.indexOf('/');
+        return end > 0 ? root.substring(0, end) : root;
+    }
+
+    @Override
+    public Permit acquire(Priority priority, String site) throws InterruptedException {
+        Waiter waiter = new Waiter(priority, site);
+
+        lock.lock();
+        try {
+            ArrayDeque<Waiter> siteQueue = queues.get(priority).computeIfAbsent(site, key -> new ArrayDeque<>());
+            if (siteQueue.isEmpty()) {
+                // A site coming back from idle must not spend the share it did not use
+                virtualTimes.merge(site, virtualTime, Math::max);
+            }
+            siteQueue.add(waiter);
+            queued.get(priority).increment();
+            dispatch();
+
+            while (!waiter.granted) {
+                try {
+                    granted.await();
+                } catch (InterruptedException e) {
+                    if (!waiter.granted) {
+                        siteQueue.remove(waiter);
+                        queued.get(priority).decrement();
+                        throw e;
+                    }
+                    Thread.currentThread().interrupt();
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        waits.get(priority).update(System.nanoTime() - waiter.enqueued, TimeUnit.NANOSECONDS);
+        AtomicBoolean released = new AtomicBoolean();
+        return () -> {
+            if (released.compareAndSet(false, true)) {
+                release();
+            }
+        };
+    }
+
+    /**
+     * @return Number of requests waiting for a permit
+     */
+    int getWaiting() {
+        lock.lock();
+        try {
+            return queues.values().stream()
+                    .flatMap(sites -> sites.values().stream())
+                    .mapToInt(ArrayDeque::size)
+                    .sum();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void release() {
+        lock.lock();
+        try {
+            available++;
+            dispatch();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Grant free permits to the next waiters; must hold the lock
+     */
+    private void dispatch() {
+        boolean grantedAny = false;
+        while (available > 0) {
+            Waiter next = next();
+            if (next == null) {
+                break;
+            }
+            queues.get(next.priority).get(next.site).poll();
+            queued.get(next.priority).decrement();
+
+            virtualTime = virtualTimes.getOrDefault(next.site, virtualTime);
+            virtualTimes.put(next.site, virtualTime + 1d / siteWeights.getOrDefault(next.site, 1d));
+            next.granted = true;
+            available--;
+            grantedAny = true;
+        }
+        if (grantedAny) {
+            granted.signalAll();
+        }
+    }
+
+    private Waiter next() {
+        for (Priority priority : Priority.values()) {
+            Waiter next = null;
+            double lowest = Double.MAX_VALUE;
+            for (Map.Entry<String, ArrayDeque<Waiter>> site : queues.get(priority).entrySet()) {
+                double siteTime = virtualTimes.getOrDefault(site.getKey(), virtualTime);
+                if (!site.getValue().isEmpty() && siteTime < lowest) {
+                    lowest = siteTime;
+                    next = site.getValue().peek();
+                }
+            }
+            if (next != null) {
+                return next;
+            }
+        }
+        return null;
+    }
+
+    private static Map<String, Double> parseWeights(String[] entries) {
+        Map<String, Double> weights = new HashMap<>();
+        for (String entry : entries) {
+            String[] parts = entry.split("=", 2);
+            try {
+                double weight = parts.length == 2 ? Double.parseDouble(parts[1].trim()) : 0;
+                if (weight > 0) {
+                    weights.put(parts[0].trim(), weight);
+                    continue;
+                }
+            } catch (NumberFormatException e) {
+                // reported below
+            }
+            LOG.warn("Ignoring invalid site weight: {}", entry);
+        }
+        return weights;
+    }
+
+    private static final class Waiter {
+        private final Priority priority;
+        private final String site;
+        private final long enqueued = System.nanoTime();
+        private boolean granted;
+
+        private Waiter(Priority priority, String site) {
+            this.priority = priority;
+            this.site = site;
+        }
+    }
+}
@@ -0,0 +1,463 @@
+package com.mycompany.core.services.impl;
+
+import com.adobe.cq.dam.cfm.ContentElement;
+import com.adobe.cq.dam.cfm.ContentFragment;
+import com.day.cq.commons.jcr.JcrConstants;
+import com.day.cq.wcm.api.NameConstants;
+import com.mycompany.core.services.TextExtractionService;
+import com.mycompany.core.services.TextExtractor;
+import com.mycompany.core.utils.HtmlStripper;
+import com.mycompany.core.utils.TaggingEvents;
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.api.resource.ValueMap;
+import org.apache.sling.commons.osgi.PropertiesUtil;
+import org.osgi.service.component.annotations.Activate;
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Modified;
+import org.osgi.service.component.annotations.Reference;
+import org.osgi.service.component.annotations.ReferenceCardinality;
+import org.osgi.service.component.annotations.ReferencePolicy;
+import org.osgi.service.component.annotations.ReferencePolicyOption;
+import org.osgi.service.metatype.annotations.AttributeDefinition;
+import org.osgi.service.metatype.annotations.Designate;
+import org.osgi.service.metatype.annotations.ObjectClassDefinition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+
+@Component(service = TextExtractionService.class)
+@Designate(ocd = TextExtractionServiceImpl.Config.class)
+public class TextExtractionServiceImpl implements TextExtractionService {
+
+    private static final Logger LOG = LoggerFactory.getLogger(TextExtractionServiceImpl.class);
+
+    @ObjectClassDefinition(name = "AI Tagging Text Extraction Configuration")
+    public @interface Config {
+        @AttributeDefinition(name = "Max Characters",
+                description = "Character budget per resource tree for callers without a budget of their own, "
+                        + "and for referenced fragments; extraction stops once it is reached")
+        int max_characters() default 8000;
+
+        @AttributeDefinition(name = "Max Depth",
+                description = "Maximum depth below the root resource to extract text from")
+        int max_depth() default 10;
+
+        @AttributeDefinition(name = "Excluded References",
+                description = "Experience fragments and content fragments (and everything below them) never "
+                        + "extracted when referenced, e.g. the site header and footer")
+        String[] excluded_references() default {};
+
+        @AttributeDefinition(name = "Reference Cache Size",
+                description = "Number of referenced fragments whose extracted text is cached")
+        int reference_cache_size() default 500;
+    }
+
+    // Properties read on resources no registered extractor handles; fixed order keeps the
+    // extracted text stable between runs
+    private static final TextExtractor DEFAULT_EXTRACTOR = new DefaultTextExtractor(List.of(
+            "text", "jcr:title", "title", "jcr:description",
+            "description", "alt", "heading", "subtitle",
+            "caption", "label", "content"
+    ));
+
+    // Binary nodes (e.g. image/file) never hold text worth sending to the AI
+    private static final Set<String> SKIPPED_NODE_TYPES = Set.of(
+            JcrConstants.NT_FILE, JcrConstants.NT_RESOURCE
+    );
+
+    // Version segment of core component resource types, e.g. /v3/title
+    private static final Pattern COMPONENT_VERSION = Pattern.compile("/v\\d+/[^/]+$");
+
+    // Reused per thread; the largest character budget in use bounds its size
+    private static final ThreadLocal<StringBuilder> BUFFER = ThreadLocal.withInitial(StringBuilder::new);
+
+    // Largest budget extracted with since activation, e.g. the pipeline's budget for chunked
+    // pages, so buffers sized for it are kept instead of being regrown for every long page
+    private final AtomicInteger largestLimit = new AtomicInteger();
+
+    // Registered extractors by the resource types they declare
+    private final Map<String, TextExtractor> extractors = new ConcurrentHashMap<>();
+
+    // Resolved extractor per sling:resourceType, cleared whenever extractors change
+    private final Map<String, TextExtractor> extractorCache = new ConcurrentHashMap<>();
+
+    // Union of the properties of all extractors, rebuilt whenever extractors change
+    private volatile Set<String> textPropertyNames;
+
+    // Extracted text of referenced fragments by path; entries are replaced once the
+    // fragment is modified
+    private Map<String, CachedText> referenceCache;
+
+    private int maxCharacters;
+    private int maxDepth;
+    private String[] excludedReferences;
+
+    @Activate
+    @Modified
+    protected void activate(Config config) {
+        this.maxCharacters = Math.max(1, config.max_characters());
+        this.maxDepth = Math.max(0, config.max_depth());
+        this.excludedReferences = config.excluded_references();
+        largestLimit.set(maxCharacters);
+
+        int cacheSize = Math.max(1, config.reference_cache_size());
+        this.referenceCache = Collections.synchronizedMap(new LinkedHashMap<String, CachedText>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedText> eldest) {
+                return size() > cacheSize;
+            }
+        });
+    }
+
+    @Reference(service = TextExtractor.class, cardinality = ReferenceCardinality.MULTIPLE,
+            policy = ReferencePolicy.DYNAMIC, policyOption = ReferencePolicyOption.GREEDY,
+            updated = "updatedTextExtractor")
+    protected void bindTextExtractor(TextExtractor extractor, Map<String, Object> properties) {
+        putResourceTypes(extractor, properties);
+        extractorCache.clear();
+        textPropertyNames = null;
+    }
+
+    /**
+     * Called when the configuration of an extractor changes, which may change both its
+     * resource types and its properties
+     */
+    protected void updatedTextExtractor(TextExtractor extractor, Map<String, Object> properties) {
+        extractors.values().removeIf(registered -> registered == extractor);
+        putResourceTypes(extractor, properties);
+        extractorCache.clear();
+        textPropertyNames = null;
+    }
+
+    protected void unbindTextExtractor(TextExtractor extractor, Map<String, Object> properties) {
+        extractors.values().removeIf(registered -> registered == extractor);
+        extractorCache.clear();
+        textPropertyNames = null;
+    }
+
+    private void putResourceTypes(TextExtractor extractor, Map<String, Object> properties) {
+        for (String resourceType : PropertiesUtil.toStringArray(properties.get(TextExtractor.RESOURCE_TYPES),
+                new String[0])) {
+            extractors.put(resourceType, extractor);
+        }
+    }
+
+    @Override
+    public Set<String> getTextPropertyNames() {
+        Set<String> names = textPropertyNames;
+        if (names == null) {
+            Set<String> collected = new HashSet<>(DEFAULT_EXTRACTOR.getTextProperties());
+            for (TextExtractor extractor : extractors.values()) {
+                collected.addAll(extractor.getTextProperties());
+                collected.addAll(extractor.getItemTextProperties());
+                collected.addAll(extractor.getReferenceProperties());
+            }
+            names = Collections.unmodifiableSet(collected);
+            textPropertyNames = names;
+        }
+        return names;
+    }
+
+    @Override
+    public String extractText(Resource resource) {
+        return extractText(resource, maxCharacters);
+    }
+
+    @Override
+    public String extractText(Resource resource, int limit) {
+        if (resource == null) {
+            return "";
+        }
+
+        Object event = TaggingEvents.beginExtraction();
+        int budget = Math.max(1, limit);
+        int largest = largestLimit.accumulateAndGet(budget, Math::max);
+        StringBuilder text = BUFFER.get();
+        text.setLength(0);
+
+        if (!walk(resource, text, true, budget)) {
+            LOG.debug("Character budget of {} reached for {}", limit, resource.getPath());
+        }
+
+        String extracted = text.toString().trim();
+        if (text.capacity() > largest * 2) {
+            // Do not keep a buffer larger than any budget in use needs
+            BUFFER.remove();
+        }
+        TaggingEvents.commitExtraction(event, resource.getPath(), extracted.length());
+        return extracted;
+    }
+
+    /**
+     * @return Capacity of the calling thread's buffer
+     */
+    static int bufferCapacity() {
+        return BUFFER.get().capacity();
+    }
+
+    /**
+     * Pre-order walk keeping only one child iterator per level
+     * @param followReferences false when walking referenced content, so fragments referencing
+     *                         each other cannot recurse
+     * @param limit Character budget
+     * @return false once the character budget is used up
+     */
+    private boolean walk(Resource resource, StringBuilder text, boolean followReferences, int limit) {
+        Deque<Level> levels = new ArrayDeque<>();
+        TextExtractor rootExtractor = getExtractor(resource);
+        boolean withinBudget = appendText(resource, rootExtractor.getTextProperties(), text, limit)
+                && (!followReferences
+                || appendReferences(resource, rootExtractor.getReferenceProperties(), text, limit));
+        if (withinBudget && maxDepth > 0 && rootExtractor.includeChildren()) {
+            levels.push(new Level(resource, rootExtractor));
+        }
+
+        while (withinBudget && !levels.isEmpty()) {
+            Level level = levels.peek();
+            if (!level.children.hasNext()) {
+                levels.pop();
+                continue;
+            }
+
+            Resource child = level.children.next();
+            if (isSkipped(child)) {
+                continue;
+            }
+
+            TextExtractor extractor = getExtractor(child);
+            withinBudget = appendText(child, level.extractor.getItemTextProperties(), text, limit)
+                    && appendText(child, extractor.getTextProperties(), text, limit)
+                    && (!followReferences
+                    || appendReferences(child, extractor.getReferenceProperties(), text, limit));
+            if (extractor.includeChildren() && levels.size() < maxDepth) {
+                levels.push(new Level(child, extractor));
+            }
+        }
+
+        return withinBudget;
+    }
+    /**
+     * Look up the extractor of a resource, following resource super types so that proxy
+     * components use the extractor of their core component
+     */
+    private TextExtractor getExtractor(Resource resource) {
+        ResourceResolver resolver = resource.getResourceResolver();
+        return extractorCache.computeIfAbsent(resource.getResourceType(), resourceType -> {
+            Set<String> visited = new HashSet<>();
+            for (String type = resourceType; type != null && visited.add(type);
+                 type = resolver.getParentResourceType(type)) {
+                TextExtractor extractor = extractors.get(type);
+                if (extractor == null) {
+                    extractor = extractors.get(COMPONENT_VERSION.matcher(type).replaceFirst(""));
+                }
+                if (extractor != null) {
+                    return extractor;
+                }
+            }
+            return DEFAULT_EXTRACTOR;
+        });
+    }
+
+    private boolean isSkipped(Resource resource) {
+        return SKIPPED_NODE_TYPES.contains(resource.getValueMap().get(JcrConstants.JCR_PRIMARYTYPE, String.class));
+    }
+
+    /**
+     * Append the text properties of a single resource
+     * @return false once the character budget is used up
+     */
+    private boolean appendText(Resource resource, List<String> names, StringBuilder text, int limit) {
+        if (names.isEmpty()) {
+            return text.length() < limit;
+        }
+
+        ValueMap properties = resource.getValueMap();
+        for (String name : names) {
+            // Only text properties are read, so binaries are never loaded
+            Object value = properties.get(name);
+            if (value instanceof String && !appendValue((String) value, text, limit)) {
+                return false;
+            }
+        }
+
+        return text.length() < limit;
+    }
+
+    /**
+     * Append the text of the fragments referenced by a component
+     * @return false once the character budget is used up
+     */
+    private boolean appendReferences(Resource resource, List<String> names, StringBuilder text, int limit) {
+        if (names.isEmpty()) {
+            return text.length() < limit;
+        }
+
+        ValueMap properties = resource.getValueMap();
+        for (String name : names) {
+            String path = properties.get(name, String.class);
+            if (path == null || path.isEmpty() || isExcludedReference(path)) {
+                continue;
+            }
+
+            Resource referenced = resource.getResourceResolver().getResource(path);
+            if (referenced != null && !appendValue(getReferencedText(referenced), text, limit)) {
+                return false;
+            }
+        }
+
+        return text.length() < limit;
+    }
+
+    /**
+     * Append a single value, truncated to the remaining budget. Rich text is stripped
+     * of markup on the way in.
+     * @return false once the character budget is used up
+     */
+    private boolean appendValue(String value, StringBuilder text, int limit) {
+        if (HtmlStripper.isMarkup(value)) {
+            int start = text.length();
+            if (!HtmlStripper.append(value, text, limit)) {
+                return false;
+            }
+            if (text.length() > start && text.charAt(text.length() - 1) != ' ') {
+                text.append(' ');
+            }
+            return true;
+        }
+
+        String textValue = value.trim();
+        if (textValue.isEmpty()) {
+            return true;
+        }
+
+        int remaining = limit - text.length();
+        if (textValue.length() >= remaining) {
+            text.append(textValue, 0, remaining);
+            return false;
+        }
+        text.append(textValue).append(' ');
+        return true;
+    }
+
+    private boolean isExcludedReference(String path) {
+        for (String excluded : excludedReferences) {
+            if (path.equals(excluded) || path.startsWith(excluded + "/")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Text of an experience fragment variation or content fragment, extracted once per
+     * modification and shared by every page referencing it; always within the configured budget
+     */
+    private String getReferencedText(Resource referenced) {
+        Resource contentResource = referenced.getChild(JcrConstants.JCR_CONTENT);
+        if (contentResource == null) {
+            return "";
+        }
+
+        Calendar lastModified = getLastModified(contentResource);
+        if (lastModified == null) {
+            return extractReferencedText(referenced, contentResource);
+        }
+
+        CachedText cached = referenceCache.get(referenced.getPath());
+        if (cached != null && cached.lastModified == lastModified.getTimeInMillis()) {
+            return cached.text;
+        }
+
+        String text = extractReferencedText(referenced, contentResource);
+        referenceCache.put(referenced.getPath(), new CachedText(lastModified.getTimeInMillis(), text));
+        return text;
+    }
+
+    private String extractReferencedText(Resource referenced, Resource contentResource) {
+        // Separate buffer, the thread's buffer holds the text of the referencing page
+        StringBuilder text = new StringBuilder();
+
+        ContentFragment fragment = referenced.adaptTo(ContentFragment.class);
+        if (fragment != null) {
+            Iterator<ContentElement> elements = fragment.getElements();
+            while (elements.hasNext()) {
+                String content = elements.next().getContent();
+                if (content != null && !appendValue(content, text, maxCharacters)) {
+                    break;
+                }
+            }
+        } else {
+            walk(contentResource, text, false, maxCharacters);
+        }
+
+        return text.toString().trim();
+    }
+
+    private Calendar getLastModified(Resource contentResource) {
+        ValueMap properties = contentResource.getValueMap();
+        Calendar lastModified = properties.get(NameConstants.PN_PAGE_LAST_MOD, Calendar.class);
+        return lastModified != null ? lastModified : properties.get(JcrConstants.JCR_LASTMODIFIED, Calendar.class);
+    }
+
+    private static final class Level {
+        private final Iterator<Resource> children;
+        private final TextExtractor extractor;
+
+        private Level(Resource resource, TextExtractor extractor) {
+            this.children = resource.listChildren();
+            this.extractor = extractor;
+        }
+    }
+
+    private static final class CachedText {
+        private final long lastModified;
+        private final String text;
+
+        private CachedText(long lastModified, String text) {
+            this.lastModified = lastModified;
+            this.text = text;
+        }
+    }
+
+    private static final class DefaultTextExtractor implements TextExtractor {
+        private final List<String> textProperties;
+
+        private DefaultTextExtractor(List<String> textProperties) {
+            this.textProperties = textProperties;
+        }
+
+        @Override
+        public List<String> getTextProperties() {
+            return textProperties;
+        }
+
+        @Override
+        public List<String> getItemTextProperties() {
+            return List.of();
+        }
+
+        @Override
+        public List<String> getReferenceProperties() {
+            return List.of();
+        }
+
+        @Override
+        public boolean includeChildren() {
+            return true;
+        }
+    }
+}
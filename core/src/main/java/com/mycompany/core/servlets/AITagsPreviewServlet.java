@@ -0,0 +1,137 @@
+package com.mycompany.core.servlets;
+
+import com.day.cq.tagging.Tag;
+import com.day.cq.tagging.TagManager;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.mycompany.core.services.TaggingPipelineService;
+import com.mycompany.core.utils.StageTrace;
+import org.apache.sling.api.SlingHttpServletRequest;
+import org.apache.sling.api.SlingHttpServletResponse;
+import org.apache.sling.api.servlets.HttpConstants;
+import org.apache.sling.api.servlets.SlingSafeMethodsServlet;
+import org.apache.sling.servlets.annotations.SlingServletResourceTypes;
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.ConfigurationPolicy;
+import org.osgi.service.component.annotations.Reference;
+import org.osgi.service.component.propertytypes.ServiceDescription;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.servlet.Servlet;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Dry run of AI tagging for editors: {@code /content/page.aitags.json} returns the tags the
+ * AI would apply to a page, without writing them. The strong ETag is derived from the last
+ * modification of the page, the cached vocabulary version and the model, so a matching
+ * If-None-Match is answered with 304 before any text is extracted or tags are suggested.
+ * Edits of referenced fragments show once the page itself is modified. Previews are paid AI
+ * requests, so the servlet only runs where its configuration is deployed, i.e. on author.
+ */
+@Component(service = { Servlet.class }, configurationPolicy = ConfigurationPolicy.REQUIRE)
+@SlingServletResourceTypes(
+        resourceTypes="cq/Page",
+        methods=HttpConstants.METHOD_GET,
+        selectors=AITagsPreviewServlet.SELECTOR,
+        extensions="json")
+@ServiceDescription("AI Tags Preview Servlet")
+public class AITagsPreviewServlet extends SlingSafeMethodsServlet {
+
+    private static final long serialVersionUID = 1L;
+
+    static final String SELECTOR = "aitags";
+
+    private static final String HEADER_ETAG = "ETag";
+    private static final String HEADER_IF_NONE_MATCH = "If-None-Match";
+    private static final String HEADER_CACHE_CONTROL = "Cache-Control";
+
+    // Private to the editor's browser, revalidated with the ETag on every use
+    private static final String CACHE_CONTROL = "private, no-cache";
+
+    private static final Logger LOG = LoggerFactory.getLogger(AITagsPreviewServlet.class);
+
+    @Reference
+    private transient TaggingPipelineService taggingPipelineService;
+
+    @Override
+    protected void doGet(final SlingHttpServletRequest req,
+            final SlingHttpServletResponse resp) throws IOException {
+        String version = taggingPipelineService.getPreviewVersion(req.getResource());
+        String eTag = version != null ? getETag(version) : null;
+        resp.setHeader(HEADER_CACHE_CONTROL, CACHE_CONTROL);
+        if (eTag != null && matches(req.getHeader(HEADER_IF_NONE_MATCH), eTag)) {
+            resp.setHeader(HEADER_ETAG, eTag);
+            resp.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+
+        StageTrace trace = new StageTrace();
+        TaggingPipelineService.Preview preview =
+                taggingPipelineService.preview(req.getResource(), req.getResourceResolver(), trace);
+        if (preview == null) {
+            resp.sendError(HttpServletResponse.SC_NOT_FOUND, "No text to tag");
+            return;
+        }
+
+        List<String> tagIds;
+        try {
+            tagIds = preview.getTagIds();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            resp.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+            return;
+        }
+        LOG.debug("Previewed tags of {}: {}", req.getResource().getPath(), trace);
+        if (eTag != null && !tagIds.isEmpty()) {
+            // Failed suggestions are not worth revalidating against
+            resp.setHeader(HEADER_ETAG, eTag);
+        }
+
+        TagManager tagManager = req.getResourceResolver().adaptTo(TagManager.class);
+        JsonArray tags = new JsonArray();
+        for (String tagId : tagIds) {
+            Tag tag = tagManager != null ? tagManager.resolve(tagId) : null;
+            JsonObject json = new JsonObject();
+            json.addProperty("id", tagId);
+            json.addProperty("title", tag != null ? tag.getTitle() : tagId);
+            tags.add(json);
+        }
+        JsonObject body = new JsonObject();
+        body.addProperty("path", req.getResource().getPath());
+        body.add("tags", tags);
+
+        resp.setContentType("application/json");
+        resp.setCharacterEncoding("UTF-8");
+        resp.getWriter().write(body.toString());
+    }
+
+    /**
+     * Strong ETag of a preview version: an unmodified page gets the same tags from the same
+     * vocabulary and model
+     */
+    static String getETag(String previewVersion) {
+        return "\"" + previewVersion.replaceAll("[^A-Za-z0-9._-]", "_") + "\"";
+    }
+
+    /**
+     * @param ifNoneMatch Value of the If-None-Match header, a list of ETags or *; compared weakly
+     */
+    static boolean matches(String ifNoneMatch, String eTag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            String trimmed = candidate.trim();
+            if (trimmed.startsWith("W/")) {
+                trimmed = trimmed.substring(2);
+            }
+            if (trimmed.equals("*") || trimmed.equals(eTag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,243 @@
+package com.mycompany.core.servlets;
+
+import com.day.cq.tagging.TagConstants;
+import com.day.cq.wcm.api.Page;
+import com.day.cq.wcm.api.PageManager;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.mycompany.core.services.TextExtractionService;
+import com.mycompany.core.utils.TaggingState;
+import org.apache.sling.api.SlingHttpServletRequest;
+import org.apache.sling.api.SlingHttpServletResponse;
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.servlets.HttpConstants;
+import org.apache.sling.api.servlets.SlingSafeMethodsServlet;
+import org.apache.sling.servlets.annotations.SlingServletResourceTypes;
+import org.osgi.service.component.annotations.Activate;
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.ConfigurationPolicy;
+import org.osgi.service.component.annotations.Modified;
+import org.osgi.service.component.annotations.Reference;
+import org.osgi.service.component.propertytypes.ServiceDescription;
+import org.osgi.service.metatype.annotations.AttributeDefinition;
+import org.osgi.service.metatype.annotations.Designate;
+import org.osgi.service.metatype.annotations.ObjectClassDefinition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.servlet.Servlet;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayDeque;
+import java.util.Calendar;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Streams the extracted text and tags of every page below a root as NDJSON, one line per
+ * page in document order: {@code /content/site.aitext.ndjson}. Lines are written as pages
+ * are read and flushed periodically, so memory use does not grow with the number of pages.
+ * An interrupted export is resumed by passing the path of the last complete line as
+ * {@code cursor}; {@code limit} caps the number of lines per request, up to a configured
+ * maximum, so large trees are exported in pages. Pages are read with the requesting user's
+ * resolver, and the servlet only runs where its configuration is deployed, i.e. on author.
+ */
+@Designate(ocd = AITextExportServlet.Config.class)
+@Component(service = { Servlet.class }, configurationPolicy = ConfigurationPolicy.REQUIRE)
+@SlingServletResourceTypes(
+        resourceTypes="cq/Page",
+        methods=HttpConstants.METHOD_GET,
+        selectors=AITextExportServlet.SELECTOR,
+        extensions="ndjson")
+@ServiceDescription("AI Text Export Servlet")
+public class AITextExportServlet extends SlingSafeMethodsServlet {
+
+    @ObjectClassDefinition(name = "AI Text Export Servlet",
+                           description = "Exports extracted text and tags of page trees")
+    public static @interface Config {
+
+        @AttributeDefinition(name = "Default Limit",
+                             description = "Lines per request when no limit is passed")
+        int default_limit() default 100;
+
+        @AttributeDefinition(name = "Max Limit",
+                             description = "Largest limit a request may pass; larger limits are lowered to it")
+        int max_limit() default 1000;
+    }
+
+    private static final long serialVersionUID = 1L;
+
+    static final String SELECTOR = "aitext";
+    static final String PARAM_CURSOR = "cursor";
+    static final String PARAM_LIMIT = "limit";
+
+    // Lines written between flushes
+    private static final int FLUSH_INTERVAL = 100;
+
+    private static final Logger LOG = LoggerFactory.getLogger(AITextExportServlet.class);
+
+    @Reference
+    private transient TextExtractionService textExtractionService;
+
+    private int defaultLimit;
+    private int maxLimit;
+
+    @Activate
+    @Modified
+    protected void activate(final Config config) {
+        maxLimit = Math.max(1, config.max_limit());
+        defaultLimit = Math.min(Math.max(1, config.default_limit()), maxLimit);
+    }
+
+    @Override
+    protected void doGet(final SlingHttpServletRequest req,
+            final SlingHttpServletResponse resp) throws IOException {
+        Page root = req.getResource().adaptTo(Page.class);
+        if (root == null) {
+            resp.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+
+        String cursor = req.getParameter(PARAM_CURSOR);
+        if (cursor != null && !cursor.equals(root.getPath()) && !cursor.startsWith(root.getPath() + "/")) {
+            resp.sendError(HttpServletResponse.SC_BAD_REQUEST, "Cursor is not below " + root.getPath());
+            return;
+        }
+        int limit;
+        try {
+            String limitParameter = req.getParameter(PARAM_LIMIT);
+            limit = limitParameter != null ? Integer.parseInt(limitParameter) : defaultLimit;
+        } catch (NumberFormatException e) {
+            limit = 0;
+        }
+        if (limit < 1) {
+            resp.sendError(HttpServletResponse.SC_BAD_REQUEST, "Invalid limit");
+            return;
+        }
+        limit = Math.min(limit, maxLimit);
+
+        resp.setContentType("application/x-ndjson");
+        resp.setCharacterEncoding("UTF-8");
+        PrintWriter writer = resp.getWriter();
+
+        long start = System.currentTimeMillis();
+        int count = 0;
+        Iterator<Page> pages = new PageWalker(root, cursor);
+        while (count < limit && pages.hasNext()) {
+            writer.write(toLine(pages.next()));
+            writer.write('\n');
+            count++;
+
+            if (count % FLUSH_INTERVAL == 0) {
+                resp.flushBuffer();
+                if (writer.checkError()) {
+                    LOG.debug("Client left the export of {} after {} pages", root.getPath(), count);
+                    return;
+                }
+            }
+        }
+        writer.flush();
+
+        LOG.debug("Exported {} pages below {} in {} ms", count, root.getPath(), System.currentTimeMillis() - start);
+    }
+
+    private String toLine(Page page) {
+        JsonObject line = new JsonObject();
+        line.addProperty("path", page.getPath());
+        line.addProperty("title", page.getTitle());
+        Calendar lastModified = page.getLastModified();
+        if (lastModified != null) {
+            line.addProperty("lastModified", lastModified.getTimeInMillis());
+        }
+
+        Resource content = page.getContentResource();
+        JsonArray tags = new JsonArray();
+        if (content != null) {
+            for (String tagId : content.getValueMap().get(TagConstants.PN_TAGS, new String[0])) {
+                tags.add(tagId);
+            }
+        }
+        line.add("tags", tags);
+
+        TaggingState state = TaggingState.read(content);
+        if (state != null) {
+            JsonArray aiTags = new JsonArray();
+            state.getTagIds().forEach(aiTags::add);
+            line.add("aiTags", aiTags);
+            line.addProperty("fingerprint", state.getContentHash());
+        }
+
+        line.addProperty("text", content != null ? textExtractionService.extractText(content) : "");
+        return line.toString();
+    }
+
+    /**
+     * Pre-order walk over a page tree that holds one child iterator per level, so it can
+     * be resumed after any page without visiting the pages before it
+     */
+    static final class PageWalker implements Iterator<Page> {
+
+        private final Deque<Iterator<Page>> levels = new ArrayDeque<>();
+        private Page next;
+
+        /**
+         * @param root Root page, returned first unless resuming
+         * @param cursor Last page already returned, or null to start at the root
+         */
+        PageWalker(Page root, String cursor) {
+            if (cursor == null) {
+                next = root;
+                return;
+            }
+
+            // Skip the siblings before each ancestor of the cursor, which were returned before it
+            PageManager pageManager = root.getPageManager();
+            Page current = root;
+            while (!current.getPath().equals(cursor)) {
+                int end = cursor.indexOf('/', current.getPath().length() + 1);
+                String childPath = end < 0 ? cursor : cursor.substring(0, end);
+                Iterator<Page> children = current.listChildren();
+                Page child = pageManager.getPage(childPath);
+                if (child == null) {
+                    // Deleted since: resume with all children, repeating some lines
+                    levels.push(children);
+                    return;
+                }
+                while (children.hasNext()) {
+                    if (children.next().getPath().equals(childPath)) {
+                        break;
+                    }
+                }
+                levels.push(children);
+                current = child;
+            }
+            levels.push(current.listChildren());
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (next == null && !levels.isEmpty()) {
+                Iterator<Page> level = levels.peek();
+                if (level.hasNext()) {
+                    next = level.next();
+                } else {
+                    levels.pop();
+                }
+            }
+            return next != null;
+        }
+
+        @Override
+        public Page next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Page page = next;
+            next = null;
+            levels.push(page.listChildren());
+            return page;
+        }
+    }
+}
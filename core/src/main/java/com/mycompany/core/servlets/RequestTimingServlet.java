@@ -0,0 +1,89 @@
+package com.mycompany.core.servlets;
+
+import com.google.gson.JsonObject;
+import com.mycompany.core.services.RequestTimingService;
+import com.mycompany.core.utils.LatencyHistogram;
+import org.apache.jackrabbit.api.security.user.Authorizable;
+import org.apache.jackrabbit.api.security.user.Group;
+import org.apache.jackrabbit.api.security.user.UserManager;
+import org.apache.sling.api.SlingHttpServletRequest;
+import org.apache.sling.api.SlingHttpServletResponse;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.api.servlets.HttpConstants;
+import org.apache.sling.api.servlets.SlingSafeMethodsServlet;
+import org.apache.sling.servlets.annotations.SlingServletPaths;
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Reference;
+import org.osgi.service.component.propertytypes.ServiceDescription;
+
+import javax.jcr.RepositoryException;
+import javax.servlet.Servlet;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Latency aggregates of the {@link com.mycompany.core.filters.RequestTimingFilter} as JSON,
+ * slowest mean first, for administrators: {@code /bin/myaemproject/requesttimings.json}
+ */
+@Component(service = { Servlet.class },
+           property = "sling.servlet.methods=" + HttpConstants.METHOD_GET)
+@SlingServletPaths(RequestTimingServlet.PATH)
+@ServiceDescription("Request Timing Servlet")
+public class RequestTimingServlet extends SlingSafeMethodsServlet {
+
+    private static final long serialVersionUID = 1L;
+
+    static final String PATH = "/bin/myaemproject/requesttimings";
+
+    private static final String ADMIN = "admin";
+    private static final String ADMINISTRATORS = "administrators";
+
+    @Reference
+    private transient RequestTimingService requestTimingService;
+
+    @Override
+    protected void doGet(final SlingHttpServletRequest req,
+            final SlingHttpServletResponse resp) throws IOException {
+        if (!isAdministrator(req.getResourceResolver())) {
+            resp.sendError(HttpServletResponse.SC_FORBIDDEN);
+            return;
+        }
+
+        JsonObject body = new JsonObject();
+        for (Map.Entry<String, LatencyHistogram.Snapshot> entry : requestTimingService.getTimings().entrySet()) {
+            LatencyHistogram.Snapshot snapshot = entry.getValue();
+            JsonObject timing = new JsonObject();
+            timing.addProperty("count", snapshot.getCount());
+            timing.addProperty("mean", snapshot.getMean());
+            timing.addProperty("p50", snapshot.getPercentile(0.5));
+            timing.addProperty("p95", snapshot.getPercentile(0.95));
+            timing.addProperty("p99", snapshot.getPercentile(0.99));
+            timing.addProperty("max", snapshot.getMax());
+            body.add(entry.getKey(), timing);
+        }
+
+        resp.setContentType("application/json");
+        resp.setCharacterEncoding("UTF-8");
+        resp.setHeader("Cache-Control", "no-store");
+        resp.getWriter().write(body.toString());
+    }
+
+    static boolean isAdministrator(ResourceResolver resolver) {
+        String userId = resolver.getUserID();
+        if (ADMIN.equals(userId)) {
+            return true;
+        }
+        UserManager userManager = resolver.adaptTo(UserManager.class);
+        if (userManager == null || userId == null) {
+            return false;
+        }
+        try {
+            Authorizable user = userManager.getAuthorizable(userId);
+            Authorizable administrators = userManager.getAuthorizable(ADMINISTRATORS);
+            return user != null && administrators instanceof Group && ((Group) administrators).isMember(user);
+        } catch (RepositoryException e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package com.mycompany.core.utils;
+
+import java.util.Collection;
+
+/**
+ * Bounded ring buffer handing changes from observation threads to a single consumer. Adding
+ * never blocks and never allocates; once the buffer is full, the {@link OverflowPolicy}
+ * decides which change is dropped.
+ * @param <T> Type of the buffered changes
+ */
+public final class ChangeRingBuffer<T> {
+
+    /**
+     * Which change is dropped when a change is added to a full buffer
+     */
+    public enum OverflowPolicy {
+        /** The added change; the buffer keeps the oldest changes */
+        DROP_NEWEST,
+        /** The oldest buffered change; the buffer keeps the latest changes */
+        DROP_OLDEST
+    }
+
+    private final Object[] slots;
+    private final OverflowPolicy overflowPolicy;
+
+    // Index of the oldest change and number of buffered changes
+    private int head;
+    private int size;
+    private long dropped;
+
+    /**
+     * @param capacity Maximum number of buffered changes
+     * @param overflowPolicy What to drop once the buffer is full
+     */
+    public ChangeRingBuffer(int capacity, OverflowPolicy overflowPolicy) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        }
+        this.slots = new Object[capacity];
+        this.overflowPolicy = overflowPolicy;
+    }
+
+    /**
+     * @param change Change to buffer
+     * @return false if a change was dropped to respect the capacity
+     */
+    public synchronized boolean offer(T change) {
+        if (size == slots.length) {
+            dropped++;
+            if (overflowPolicy == OverflowPolicy.DROP_NEWEST) {
+                return false;
+            }
+            slots[head] = change;
+            head = (head + 1) % slots.length;
+            return false;
+        }
+        slots[(head + size) % slots.length] = change;
+        size++;
+        return true;
+    }
+
+    /**
+     * Move the oldest changes to a collection, without waiting for more
+     * @param target Collection the changes are added to, oldest first
+     * @param maxChanges Maximum number of changes to move
+     * @return Number of changes moved
+     */
+    @SuppressWarnings("unchecked")
+    public synchronized int drainTo(Collection<? super T> target, int maxChanges) {
+        int count = Math.min(size, maxChanges);
+        for (int i = 0; i < count; i++) {
+            target.add((T) slots[head]);
+            slots[head] = null;
+            head = (head + 1) % slots.length;
+        }
+        size -= count;
+        return count;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    public int capacity() {
+        return slots.length;
+    }
+
+    /**
+     * @return Number of changes dropped since the buffer was created
+     */
+    public synchronized long getDropped() {
+        return dropped;
+    }
+}
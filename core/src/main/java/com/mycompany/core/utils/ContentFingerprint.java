@@ -0,0 +1,99 @@
+package com.mycompany.core.utils;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Compact fingerprints of extracted content and tag vocabularies, used to detect
+ * whether content needs to be sent to the AI again.
+ */
+public final class ContentFingerprint {
+
+    // 128 bits of SHA-256 are plenty to detect changes
+    private static final int FINGERPRINT_BYTES = 16;
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private ContentFingerprint() {
+        // static methods only
+    }
+
+    /**
+     * Fingerprint normalized text together with the vocabulary version it was tagged against
+     * @param text Extracted content
+     * @param vocabularyVersion Version of the tag vocabulary, see {@link #ofVocabulary(Map)}
+     * @return Hex encoded fingerprint
+     */
+    public static String of(String text, String vocabularyVersion) {
+        MessageDigest digest = newDigest();
+        digest.update(normalize(text).getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+        digest.update(vocabularyVersion.getBytes(StandardCharsets.UTF_8));
+        return toHex(digest.digest());
+    }
+
+    /**
+     * Version of a tag vocabulary; changes whenever a tag is added, removed or renamed
+     * @param availableTags Map of tag ID to tag title
+     * @return Hex encoded version
+     */
+    public static String ofVocabulary(Map<String, String> availableTags) {
+        MessageDigest digest = newDigest();
+        for (Map.Entry<String, String> tag : new TreeMap<>(availableTags).entrySet()) {
+            digest.update(tag.getKey().getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(String.valueOf(tag.getValue()).getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+        }
+        return toHex(digest.digest());
+    }
+
+    /**
+     * Fingerprint of a repository path, usable as a flat node name
+     * @param path Path, taken as is
+     * @return Hex encoded fingerprint
+     */
+    public static String ofPath(String path) {
+        return toHex(newDigest().digest(path.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * Collapse whitespace and ignore case, so formatting-only edits keep the fingerprint
+     */
+    static String normalize(String text) {
+        StringBuilder normalized = new StringBuilder(text.length());
+        boolean whitespace = false;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (Character.isWhitespace(c)) {
+                whitespace = normalized.length() > 0;
+            } else {
+                if (whitespace) {
+                    normalized.append(' ');
+                    whitespace = false;
+                }
+                normalized.append(Character.toLowerCase(c));
+            }
+        }
+        return normalized.toString();
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        char[] hex = new char[FINGERPRINT_BYTES * 2];
+        for (int i = 0; i < FINGERPRINT_BYTES; i++) {
+            hex[i * 2] = HEX[(bytes[i] >> 4) & 0xF];
+            hex[i * 2 + 1] = HEX[bytes[i] & 0xF];
+        }
+        return new String(hex);
+    }
+}
@@ -0,0 +1,227 @@
+package com.mycompany.core.utils;
+
+/**
+ * Single-pass conversion of rich text HTML into plain text, appending straight to a
+ * caller's buffer without building a DOM. Tags are dropped, script and style content is
+ * skipped, entities are decoded and whitespace is collapsed. Block boundaries become
+ * sentence breaks, so a heading and the paragraph after it do not run into one sentence.
+ */
+public final class HtmlStripper {
+
+    // Elements whose boundaries end a sentence
+    private static final String[] BLOCK_ELEMENTS = {
+            "p", "div", "br", "li", "ul", "ol", "dl", "dt", "dd", "h1", "h2", "h3", "h4", "h5", "h6",
+            "blockquote", "pre", "table", "tr", "td", "th", "section", "article", "header", "footer", "hr"
+    };
+
+    // Elements whose content is not text
+    private static final String[] SKIPPED_ELEMENTS = {"script", "style"};
+
+    private static final char NBSP = '\u00A0';
+    private static final char SHY = '\u00AD';
+
+    // Named entities and their characters, looked up without allocating
+    private static final String[] ENTITY_NAMES = {
+            "amp", "lt", "gt", "quot", "apos", "nbsp", "ndash", "mdash", "hellip", "lsquo", "rsquo",
+            "ldquo", "rdquo", "laquo", "raquo", "bull", "middot", "copy", "reg", "trade", "euro", "shy"
+    };
+    private static final char[] ENTITY_CHARS = {
+            '&', '<', '>', '"', '\'', NBSP, '\u2013', '\u2014', '\u2026', '\u2018', '\u2019',
+            '\u201C', '\u201D', '\u00AB', '\u00BB', '\u2022', '\u00B7', '\u00A9', '\u00AE', '\u2122', '\u20AC', SHY
+    };
+
+    // Longest entity worth decoding, e.g. "#x1F600"
+    private static final int MAX_ENTITY_LENGTH = 8;
+
+    private HtmlStripper() {
+        // static methods only
+    }
+
+    /**
+     * @return true if the value may hold tags or entities and should be stripped
+     */
+    public static boolean isMarkup(String value) {
+        return value.indexOf('<') >= 0 || value.indexOf('&') >= 0;
+    }
+
+    /**
+     * Append the text of an HTML fragment
+     * @param html Rich text
+     * @param out Buffer to append to; a trailing space in it counts as whitespace already written
+     * @param limit Length the buffer must not exceed
+     * @return false once the limit is reached
+     */
+    public static boolean append(String html, StringBuilder out, int limit) {
+        int length = html.length();
+        // Whitespace (or a block boundary) seen since the last character written
+        boolean space = false;
+        boolean sentenceBreak = false;
+        int i = 0;
+
+        while (i < length) {
+            char c = html.charAt(i);
+
+            // A '<' that cannot start a tag, e.g. "range < 500 km", is text
+            int end = c == '<' && isTagStart(html, i + 1) ? html.indexOf('>', i + 1) : -1;
+            if (end >= 0) {
+                if (html.startsWith("<!--", i)) {
+                    int commentEnd = html.indexOf("-->", i + 4);
+                    i = commentEnd < 0 ? length : commentEnd + 3;
+                    continue;
+                }
+
+                boolean closing = html.charAt(i + 1) == '/';
+                int nameStart = closing ? i + 2 : i + 1;
+                int nameEnd = nameStart;
+                while (nameEnd < end && Character.isLetterOrDigit(html.charAt(nameEnd))) {
+                    nameEnd++;
+                }
+
+                int skipped = closing ? -1 : indexOf(SKIPPED_ELEMENTS, html, nameStart, nameEnd);
+                if (skipped >= 0) {
+                    int close = indexOfClosingTag(html, SKIPPED_ELEMENTS[skipped], end + 1);
+                    i = close < 0 ? length : close;
+                    continue;
+                }
+                // Inline elements separate words only where the source has whitespace
+                if (indexOf(BLOCK_ELEMENTS, html, nameStart, nameEnd) >= 0) {
+                    sentenceBreak = true;
+                }
+                i = end + 1;
+                continue;
+            }
+
+            if (c == '&') {
+                int semicolon = html.indexOf(';', i + 1);
+                int decoded = semicolon > i + 1 && semicolon - i - 1 <= MAX_ENTITY_LENGTH
+                        ? decodeEntity(html, i + 1, semicolon) : -1;
+                if (decoded >= 0) {
+                    i = semicolon + 1;
+                    if (decoded == SHY) {
+                        continue;
+                    }
+                    if (decoded == NBSP) {
+                        space = true;
+                        continue;
+                    }
+                    if (!write(out, decoded, space, sentenceBreak, limit)) {
+                        return false;
+                    }
+                    space = false;
+                    sentenceBreak = false;
+                    continue;
+                }
+            }
+
+            if (Character.isWhitespace(c)) {
+                space = true;
+            } else {
+                if (!write(out, c, space, sentenceBreak, limit)) {
+                    return false;
+                }
+                space = false;
+                sentenceBreak = false;
+            }
+            i++;
+        }
+
+        return out.length() < limit;
+    }
+
+    /**
+     * Write a character, preceded by the pending separator
+     * @return false once the limit is reached
+     */
+    private static boolean write(StringBuilder out, int codePoint, boolean space, boolean sentenceBreak, int limit) {
+        int last = out.length() - 1;
+        boolean separated = last < 0 || out.charAt(last) == ' ';
+        // A period goes before the trailing space, if there is one
+        int end = separated ? last - 1 : last;
+        boolean period = sentenceBreak && end >= 0 && !isSentenceEnd(out.charAt(end));
+        boolean blank = (space || sentenceBreak) && (period || !separated);
+
+        // Separators are only written along with the character, so they cannot overrun the limit
+        int length = out.length() + (period && !separated ? 1 : 0) + (blank ? 1 : 0) + Character.charCount(codePoint);
+        if (length > limit) {
+            return false;
+        }
+        if (period) {
+            if (separated) {
+                out.setLength(last);
+            }
+            out.append('.');
+        }
+        if (blank) {
+            out.append(' ');
+        }
+        out.appendCodePoint(codePoint);
+        return out.length() < limit;
+    }
+
+    /**
+     * @return true if the character after a '<' starts an element, closing tag, comment or declaration
+     */
+    private static boolean isTagStart(String html, int index) {
+        if (index >= html.length()) {
+            return false;
+        }
+        char c = html.charAt(index);
+        return Character.isLetter(c) || c == '/' || c == '!';
+    }
+
+    private static boolean isSentenceEnd(char c) {
+        return c == '.' || c == '!' || c == '?' || c == ':' || c == ';';
+    }
+
+    /**
+     * @return Index of the name between from and to in names, ignoring case, or -1
+     */
+    private static int indexOf(String[] names, String html, int from, int to) {
+        int length = to - from;
+        for (int n = 0; n < names.length; n++) {
+            if (names[n].length() == length && html.regionMatches(true, from, names[n], 0, length)) {
+                return n;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return Decoded code point of the entity between from and to, or -1 if unknown
+     */
+    private static int decodeEntity(String html, int from, int to) {
+        if (html.charAt(from) != '#') {
+            int named = indexOf(ENTITY_NAMES, html, from, to);
+            return named >= 0 ? ENTITY_CHARS[named] : -1;
+        }
+
+        boolean hex = to > from + 1 && (html.charAt(from + 1) == 'x' || html.charAt(from + 1) == 'X');
+        int radix = hex ? 16 : 10;
+        int start = hex ? from + 2 : from + 1;
+        if (start == to) {
+            return -1;
+        }
+        int codePoint = 0;
+        for (int i = start; i < to; i++) {
+            int digit = Character.digit(html.charAt(i), radix);
+            if (digit < 0) {
+                return -1;
+            }
+            codePoint = codePoint * radix + digit;
+        }
+        return Character.isValidCodePoint(codePoint) ? codePoint : -1;
+    }
+
+    /**
+     * @return Index after the closing tag of an element, or -1 if it is not closed
+     */
+    private static int indexOfClosingTag(String html, String name, int from) {
+        for (int i = html.indexOf("</", from); i >= 0; i = html.indexOf("</", i + 2)) {
+            if (html.regionMatches(true, i + 2, name, 0, name.length())) {
+                int end = html.indexOf('>', i);
+                return end < 0 ? -1 : end + 1;
+            }
+        }
+        return -1;
+    }
+}
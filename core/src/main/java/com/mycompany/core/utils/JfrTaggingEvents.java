@@ -0,0 +1,154 @@
+package com.mycompany.core.utils;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JDK Flight Recorder event types of the tagging pipeline. Only loaded through
+ * {@link TaggingEvents} once jdk.jfr is known to be wired; all types are disabled by default
+ * and enabled in a recording's settings, e.g. {@code com.mycompany.aitagging.AIRequest#enabled=true}.
+ */
+final class JfrTaggingEvents {
+
+    private static final String CATEGORY = "AI Tagging";
+
+    private JfrTaggingEvents() {
+        // static methods only
+    }
+
+    static boolean isRecording() {
+        return FlightRecorder.isInitialized();
+    }
+
+    static Object beginExtraction() {
+        ExtractionEvent event = new ExtractionEvent();
+        event.begin();
+        return event;
+    }
+
+    static void commitExtraction(Object handle, String path, int characters) {
+        ExtractionEvent event = (ExtractionEvent) handle;
+        event.end();
+        if (event.shouldCommit()) {
+            event.path = path;
+            event.characters = characters;
+            event.commit();
+        }
+    }
+
+    static Object beginVocabulary() {
+        VocabularyEvent event = new VocabularyEvent();
+        event.begin();
+        return event;
+    }
+
+    static void commitVocabulary(Object handle, int tags) {
+        VocabularyEvent event = (VocabularyEvent) handle;
+        event.end();
+        if (event.shouldCommit()) {
+            event.tags = tags;
+            event.commit();
+        }
+    }
+
+    static Object beginAIRequest() {
+        AIRequestEvent event = new AIRequestEvent();
+        event.begin();
+        return event;
+    }
+
+    static void commitAIRequest(Object handle, String model, long requestBytes, long responseBytes, int status) {
+        AIRequestEvent event = (AIRequestEvent) handle;
+        event.end();
+        if (event.shouldCommit()) {
+            event.model = model;
+            event.requestBytes = requestBytes;
+            event.responseBytes = responseBytes;
+            event.status = status;
+            event.commit();
+        }
+    }
+
+    static Object beginTagWrite() {
+        TagWriteEvent event = new TagWriteEvent();
+        event.begin();
+        return event;
+    }
+
+    static void commitTagWrite(Object handle, String path, int tags, boolean written) {
+        TagWriteEvent event = (TagWriteEvent) handle;
+        event.end();
+        if (event.shouldCommit()) {
+            event.path = path;
+            event.tags = tags;
+            event.written = written;
+            event.commit();
+        }
+    }
+
+    @Name("com.mycompany.aitagging.Extraction")
+    @Label("Text Extraction")
+    @Category(CATEGORY)
+    @Enabled(false)
+    @StackTrace(false)
+    static final class ExtractionEvent extends Event {
+        @Label("Path")
+        String path;
+
+        @Label("Characters")
+        int characters;
+    }
+
+    @Name("com.mycompany.aitagging.Vocabulary")
+    @Label("Vocabulary Load")
+    @Category(CATEGORY)
+    @Enabled(false)
+    @StackTrace(false)
+    static final class VocabularyEvent extends Event {
+        @Label("Tags")
+        int tags;
+    }
+
+    @Name("com.mycompany.aitagging.AIRequest")
+    @Label("AI Request")
+    @Category(CATEGORY)
+    @Enabled(false)
+    @StackTrace(false)
+    static final class AIRequestEvent extends Event {
+        @Label("Model")
+        String model;
+
+        @Label("Request Size")
+        @DataAmount
+        long requestBytes;
+
+        @Label("Response Size")
+        @DataAmount
+        long responseBytes;
+
+        @Label("HTTP Status")
+        int status;
+    }
+
+    @Name("com.mycompany.aitagging.TagWrite")
+    @Label("Tag Write")
+    @Category(CATEGORY)
+    @Enabled(false)
+    @StackTrace(false)
+    static final class TagWriteEvent extends Event {
+        @Label("Path")
+        String path;
+
+        @Label("Tags")
+        int tags;
+
+        @Label("Written")
+        boolean written;
+    }
+}
@@ -0,0 +1,119 @@
+package com.mycompany.core.utils;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free latency histogram with log-linear buckets: every power of two of microseconds
+ * is split into {@link #SUB_BUCKETS} buckets, so percentiles are accurate to within 25%
+ * at a fixed size of about 1 KB, whatever the number of recorded values.
+ */
+public final class LatencyHistogram {
+
+    private static final int SUB_BITS = 2;
+    static final int SUB_BUCKETS = 1 << SUB_BITS;
+
+    // Up to 2^36 microseconds, about 19 hours
+    private static final int MAX_EXPONENT = 36;
+    static final int BUCKETS = SUB_BUCKETS + (MAX_EXPONENT - SUB_BITS + 1) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder totalMicros = new LongAdder();
+    private final AtomicLong maxMicros = new AtomicLong();
+
+    /**
+     * @param nanos Latency to record
+     */
+    public void record(long nanos) {
+        long micros = Math.max(0, nanos / 1000);
+        counts.incrementAndGet(bucketOf(micros));
+        count.increment();
+        totalMicros.add(micros);
+        maxMicros.accumulateAndGet(micros, Math::max);
+    }
+
+    /**
+     * @return Consistent enough view of the recorded values; values recorded meanwhile may be
+     *         partly included
+     */
+    public Snapshot snapshot() {
+        long[] bucketCounts = new long[BUCKETS];
+        long total = 0;
+        for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            bucketCounts[bucket] = counts.get(bucket);
+            total += bucketCounts[bucket];
+        }
+        return new Snapshot(bucketCounts, total, totalMicros.sum(), maxMicros.get());
+    }
+
+    static int bucketOf(long micros) {
+        if (micros < SUB_BUCKETS) {
+            return (int) micros;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(micros);
+        int sub = (int) (micros >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1);
+        return Math.min(BUCKETS - 1, SUB_BUCKETS + (exponent - SUB_BITS) * SUB_BUCKETS + sub);
+    }
+
+    /**
+     * @return Largest value in microseconds that falls into a bucket
+     */
+    static long upperBoundOf(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int exponent = (bucket - SUB_BUCKETS) / SUB_BUCKETS + SUB_BITS;
+        int sub = (bucket - SUB_BUCKETS) % SUB_BUCKETS;
+        return ((long) (SUB_BUCKETS + sub + 1) << (exponent - SUB_BITS)) - 1;
+    }
+
+    /**
+     * Recorded values at one point in time, in milliseconds
+     */
+    public static final class Snapshot {
+        private final long[] bucketCounts;
+        private final long count;
+        private final long totalMicros;
+        private final long maxMicros;
+
+        private Snapshot(long[] bucketCounts, long count, long totalMicros, long maxMicros) {
+            this.bucketCounts = bucketCounts;
+            this.count = count;
+            this.totalMicros = totalMicros;
+            this.maxMicros = maxMicros;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public double getMean() {
+            return count > 0 ? totalMicros / 1000.0 / count : 0;
+        }
+
+        public double getMax() {
+            return maxMicros / 1000.0;
+        }
+
+        /**
+         * @param quantile Between 0 and 1, e.g. 0.99
+         * @return Upper bound of the bucket holding the quantile, at most the maximum
+         */
+        public double getPercentile(double quantile) {
+            if (count == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(quantile * count));
+            long seen = 0;
+            for (int bucket = 0; bucket < bucketCounts.length; bucket++) {
+                seen += bucketCounts[bucket];
+                if (seen >= rank) {
+                    return Math.min(upperBoundOf(bucket), maxMicros) / 1000.0;
+                }
+            }
+            return getMax();
+        }
+    }
+}
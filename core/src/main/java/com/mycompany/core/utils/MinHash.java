@@ -0,0 +1,117 @@
+package com.mycompany.core.utils;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Random;
+
+/**
+ * MinHash signatures of extracted content. The share of equal positions in two signatures
+ * estimates the Jaccard similarity of the word shingles of the two texts, so near-duplicate
+ * content can be found without comparing the texts themselves.
+ */
+public final class MinHash {
+
+    /** Number of hash functions, i.e. positions of a signature */
+    public static final int NUM_HASHES = 128;
+
+    // Consecutive words per shingle
+    private static final int SHINGLE_WORDS = 3;
+
+    // Odd multipliers and offsets of the hash functions; fixed, since signatures are stored
+    private static final long[] MULTIPLIERS = new long[NUM_HASHES];
+    private static final long[] OFFSETS = new long[NUM_HASHES];
+
+    static {
+        Random random = new Random(0x5eed5eedL);
+        for (int i = 0; i < NUM_HASHES; i++) {
+            MULTIPLIERS[i] = random.nextLong() | 1L;
+            OFFSETS[i] = random.nextLong();
+        }
+    }
+
+    private MinHash() {
+        // static methods only
+    }
+
+    /**
+     * Signature of the word shingles of normalized text
+     * @param text Extracted content
+     * @return Signature of {@link #NUM_HASHES} positions
+     */
+    public static int[] of(String text) {
+        int[] signature = new int[NUM_HASHES];
+        Arrays.fill(signature, Integer.MAX_VALUE);
+
+        String[] words = ContentFingerprint.normalize(text).split(" ");
+        int shingles = Math.max(1, words.length - SHINGLE_WORDS + 1);
+        for (int start = 0; start < shingles; start++) {
+            long shingle = hashShingle(words, start, Math.min(words.length, start + SHINGLE_WORDS));
+            for (int i = 0; i < NUM_HASHES; i++) {
+                // Upper bits of a multiply-add hash; shifted to stay non-negative
+                int hash = (int) ((MULTIPLIERS[i] * shingle + OFFSETS[i]) >>> 33);
+                if (hash < signature[i]) {
+                    signature[i] = hash;
+                }
+            }
+        }
+        return signature;
+    }
+
+    /**
+     * @return Estimated Jaccard similarity of the texts of two signatures, between 0 and 1
+     */
+    public static double similarity(int[] a, int[] b) {
+        int equal = 0;
+        for (int i = 0; i < NUM_HASHES; i++) {
+            if (a[i] == b[i]) {
+                equal++;
+            }
+        }
+        return (double) equal / NUM_HASHES;
+    }
+
+    /**
+     * @return Signature as Base64 string, to be stored as property
+     */
+    public static String encode(int[] signature) {
+        ByteBuffer buffer = ByteBuffer.allocate(NUM_HASHES * Integer.BYTES);
+        buffer.asIntBuffer().put(signature);
+        return Base64.getEncoder().encodeToString(buffer.array());
+    }
+
+    /**
+     * @return Signature of a string created by {@link #encode(int[])}, or null if it is not one
+     */
+    public static int[] decode(String encoded) {
+        if (encoded == null) {
+            return null;
+        }
+        try {
+            byte[] bytes = Base64.getDecoder().decode(encoded);
+            if (bytes.length != NUM_HASHES * Integer.BYTES) {
+                return null;
+            }
+            int[] signature = new int[NUM_HASHES];
+            ByteBuffer.wrap(bytes).asIntBuffer().get(signature);
+            return signature;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 64-bit FNV-1a hash of a range of words
+     */
+    private static long hashShingle(String[] words, int from, int to) {
+        long hash = 0xcbf29ce484222325L;
+        for (int w = from; w < to; w++) {
+            String word = words[w];
+            for (int c = 0; c < word.length(); c++) {
+                hash = (hash ^ word.charAt(c)) * 0x100000001b3L;
+            }
+            hash = (hash ^ ' ') * 0x100000001b3L;
+        }
+        return hash;
+    }
+}
@@ -0,0 +1,57 @@
+package com.mycompany.core.utils;
+
+import java.util.regex.Pattern;
+
+/**
+ * Repository path pattern in which a single asterisk matches within one path segment and a
+ * double asterisk matches across segments, e.g. {@code /content/myaemproject/**} matches
+ * every path below the site. Compiled once, so matching is cheap enough for observation
+ * threads.
+ */
+public final class PathGlob {
+
+    private final String glob;
+    private final Pattern pattern;
+
+    private PathGlob(String glob) {
+        this.glob = glob;
+        this.pattern = Pattern.compile(toRegex(glob));
+    }
+
+    public static PathGlob compile(String glob) {
+        return new PathGlob(glob);
+    }
+
+    public boolean matches(String path) {
+        return pattern.matcher(path).matches();
+    }
+
+    @Override
+    public String toString() {
+        return glob;
+    }
+
+    static String toRegex(String glob) {
+        StringBuilder regex = new StringBuilder(glob.length() + 16);
+        int literalStart = 0;
+        for (int i = 0; i < glob.length(); i++) {
+            if (glob.charAt(i) != '*') {
+                continue;
+            }
+            if (i > literalStart) {
+                regex.append(Pattern.quote(glob.substring(literalStart, i)));
+            }
+            if (i + 1 < glob.length() && glob.charAt(i + 1) == '*') {
+                regex.append(".*");
+                i++;
+            } else {
+                regex.append("[^/]*");
+            }
+            literalStart = i + 1;
+        }
+        if (literalStart < glob.length()) {
+            regex.append(Pattern.quote(glob.substring(literalStart)));
+        }
+        return regex.toString();
+    }
+}
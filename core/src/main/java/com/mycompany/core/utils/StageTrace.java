@@ -0,0 +1,123 @@
+package com.mycompany.core.utils;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Wall-clock time and heap allocation spent per stage of a tagging run. Stages may run
+ * on several threads at once (e.g. extraction and AI calls in bulk mode); their spans
+ * are summed.
+ */
+public final class StageTrace {
+
+    public static final String VOCABULARY = "vocabulary";
+    public static final String EXTRACTION = "extraction";
+    public static final String AI = "ai";
+    public static final String WRITE = "write";
+
+    // Allocation is measured with the HotSpot extension when the JVM supports it
+    private static final com.sun.management.ThreadMXBean ALLOCATION_BEAN = allocationBean();
+
+    private final long started = System.nanoTime();
+    private final Map<String, Stage> stages = Collections.synchronizedMap(new LinkedHashMap<>());
+
+    /**
+     * Start measuring a stage on the current thread
+     * @return Span to close once the stage is done
+     */
+    public Span start(String stage) {
+        return new Span(stages.computeIfAbsent(stage, name -> new Stage()));
+    }
+
+    /**
+     * @return Time since the trace was created
+     */
+    public long getElapsedMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+    }
+
+    /**
+     * @return Total wall-clock milliseconds per stage, in the order stages were first started
+     */
+    public Map<String, Long> getMillis() {
+        Map<String, Long> millis = new LinkedHashMap<>();
+        synchronized (stages) {
+            stages.forEach((name, stage) -> millis.put(name, TimeUnit.NANOSECONDS.toMillis(stage.nanos.sum())));
+        }
+        return millis;
+    }
+
+    /**
+     * @return Total bytes allocated per stage, or -1 per stage if allocation cannot be measured
+     */
+    public Map<String, Long> getAllocatedBytes() {
+        Map<String, Long> bytes = new LinkedHashMap<>();
+        synchronized (stages) {
+            stages.forEach((name, stage) -> bytes.put(name, ALLOCATION_BEAN != null ? stage.bytes.sum() : -1L));
+        }
+        return bytes;
+    }
+
+    /**
+     * @return Stages formatted for a log line, e.g. "extraction=12ms/1024B ai=830ms/20480B"
+     */
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder();
+        Map<String, Long> bytes = getAllocatedBytes();
+        getMillis().forEach((name, millis) -> text.append(text.length() > 0 ? " " : "")
+                .append(name).append('=').append(millis).append("ms/").append(bytes.get(name)).append('B'));
+        return text.toString();
+    }
+
+    private static com.sun.management.ThreadMXBean allocationBean() {
+        try {
+            ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+            if (bean instanceof com.sun.management.ThreadMXBean) {
+                com.sun.management.ThreadMXBean allocationBean = (com.sun.management.ThreadMXBean) bean;
+                if (allocationBean.isThreadAllocatedMemorySupported()
+                        && allocationBean.isThreadAllocatedMemoryEnabled()) {
+                    return allocationBean;
+                }
+            }
+        } catch (LinkageError e) {
+            // com.sun.management is imported optionally and may not be wired
+        }
+        return null;
+    }
+
+    private static long allocatedBytes() {
+        return ALLOCATION_BEAN != null ? ALLOCATION_BEAN.getThreadAllocatedBytes(Thread.currentThread().getId()) : 0L;
+    }
+
+    private static final class Stage {
+        private final LongAdder nanos = new LongAdder();
+        private final LongAdder bytes = new LongAdder();
+    }
+
+    /**
+     * A single measurement of a stage; must be closed on the thread that started it
+     */
+    public static final class Span implements AutoCloseable {
+        private final Stage stage;
+        private final long startNanos;
+        private final long startBytes;
+
+        private Span(Stage stage) {
+            this.stage = stage;
+            this.startBytes = allocatedBytes();
+            this.startNanos = System.nanoTime();
+        }
+
+        @Override
+        public void close() {
+            stage.nanos.add(System.nanoTime() - startNanos);
+            stage.bytes.add(allocatedBytes() - startBytes);
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.mycompany.core.utils;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Merges the tag suggestions for the chunks of one text into a single set. Every chunk
+ * suggesting a tag is one vote; a tag ranked higher within a chunk, or suggested for an
+ * earlier chunk, weighs a little more, since suggestions come ordered by relevance and
+ * pages usually introduce their topic first.
+ */
+public final class TagVoting {
+
+    // Extra weight of the top ranked tag of a chunk, and of tags of the first chunk
+    private static final double RANK_WEIGHT = 0.5;
+    private static final double POSITION_WEIGHT = 0.25;
+
+    private TagVoting() {
+        // static methods only
+    }
+
+    /**
+     * @param suggestions Suggested tag IDs per chunk, in text order, each ordered by relevance
+     * @param minTags Minimum number of tags to return, if that many were suggested
+     * @param maxTags Maximum number of tags to return
+     * @return Tag IDs by descending score. Tags suggested for a single chunk only make it in
+     *         while fewer than minTags tags were suggested for several chunks.
+     */
+    public static List<String> merge(List<List<String>> suggestions, int minTags, int maxTags) {
+        Map<String, Vote> votes = new LinkedHashMap<>();
+        int chunks = suggestions.size();
+
+        for (int chunk = 0; chunk < chunks; chunk++) {
+            List<String> tagIds = suggestions.get(chunk);
+            double position = chunks > 1 ? 1d - (double) chunk / (chunks - 1) : 1d;
+            for (int rank = 0; rank < tagIds.size(); rank++) {
+                Vote vote = votes.computeIfAbsent(tagIds.get(rank), key -> new Vote());
+                if (vote.lastChunk == chunk) {
+                    continue;
+                }
+                vote.lastChunk = chunk;
+                vote.count++;
+                vote.score += 1d + RANK_WEIGHT * (tagIds.size() - rank) / tagIds.size()
+                        + POSITION_WEIGHT * position;
+            }
+        }
+
+        List<Map.Entry<String, Vote>> ranked = new ArrayList<>(votes.entrySet());
+        // Stable sort: equal scores keep the order of first suggestion
+        ranked.sort(Comparator.comparingDouble((Map.Entry<String, Vote> entry) -> entry.getValue().score)
+                .reversed());
+
+        List<String> merged = ranked.stream()
+                .filter(entry -> chunks == 1 || entry.getValue().count > 1)
+                .limit(maxTags)
+                .map(Map.Entry::getKey)
+                .collect(Collectors.toList());
+        for (Map.Entry<String, Vote> entry : ranked) {
+            if (merged.size() >= minTags || merged.size() >= maxTags) {
+                break;
+            }
+            if (!merged.contains(entry.getKey())) {
+                merged.add(entry.getKey());
+            }
+        }
+        return merged;
+    }
+
+    private static final class Vote {
+        private int count;
+        private double score;
+        private int lastChunk = -1;
+    }
+}
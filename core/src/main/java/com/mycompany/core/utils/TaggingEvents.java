@@ -0,0 +1,98 @@
+package com.mycompany.core.utils;
+
+/**
+ * Emits JDK Flight Recorder events of the tagging pipeline, so tagging work shows up next
+ * to GC and thread activity in a recording. jdk.jfr is imported optionally; without it, or
+ * before any recording was started, begin methods return null and commit methods do nothing.
+ * Every begin must be followed by the matching commit on the same thread.
+ */
+public final class TaggingEvents {
+
+    private static final boolean AVAILABLE = isAvailable();
+
+    private TaggingEvents() {
+        // static methods only
+    }
+
+    /**
+     * @return Handle for {@link #commitExtraction}, or null if not recording
+     */
+    public static Object beginExtraction() {
+        return isRecording() ? JfrTaggingEvents.beginExtraction() : null;
+    }
+
+    /**
+     * @param path Resource the text was extracted from
+     * @param characters Length of the extracted text
+     */
+    public static void commitExtraction(Object handle, String path, int characters) {
+        if (handle != null) {
+            JfrTaggingEvents.commitExtraction(handle, path, characters);
+        }
+    }
+
+    /**
+     * @return Handle for {@link #commitVocabulary}, or null if not recording
+     */
+    public static Object beginVocabulary() {
+        return isRecording() ? JfrTaggingEvents.beginVocabulary() : null;
+    }
+
+    /**
+     * @param tags Number of tags loaded
+     */
+    public static void commitVocabulary(Object handle, int tags) {
+        if (handle != null) {
+            JfrTaggingEvents.commitVocabulary(handle, tags);
+        }
+    }
+
+    /**
+     * @return Handle for {@link #commitAIRequest}, or null if not recording
+     */
+    public static Object beginAIRequest() {
+        return isRecording() ? JfrTaggingEvents.beginAIRequest() : null;
+    }
+
+    /**
+     * @param status HTTP status of the response, or -1 if there was none
+     */
+    public static void commitAIRequest(Object handle, String model, long requestBytes, long responseBytes,
+                                       int status) {
+        if (handle != null) {
+            JfrTaggingEvents.commitAIRequest(handle, model, requestBytes, responseBytes, status);
+        }
+    }
+
+    /**
+     * @return Handle for {@link #commitTagWrite}, or null if not recording
+     */
+    public static Object beginTagWrite() {
+        return isRecording() ? JfrTaggingEvents.beginTagWrite() : null;
+    }
+
+    /**
+     * @param path Page or resource the tags were written to
+     * @param tags Number of tags suggested
+     * @param written Whether the tags of the page or resource changed
+     */
+    public static void commitTagWrite(Object handle, String path, int tags, boolean written) {
+        if (handle != null) {
+            JfrTaggingEvents.commitTagWrite(handle, path, tags, written);
+        }
+    }
+
+    private static boolean isRecording() {
+        return AVAILABLE && JfrTaggingEvents.isRecording();
+    }
+
+    private static boolean isAvailable() {
+        try {
+            // Fails if jdk.jfr is not wired to the bundle
+            Class.forName("jdk.jfr.FlightRecorder", false, TaggingEvents.class.getClassLoader());
+            return true;
+        } catch (ClassNotFoundException | LinkageError e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package com.mycompany.core.utils;
+
+import com.day.cq.commons.jcr.JcrConstants;
+import org.apache.sling.api.resource.ModifiableValueMap;
+import org.apache.sling.api.resource.PersistenceException;
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ValueMap;
+
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * AI tagging state stored below the content resource of a page or asset
+ * (e.g. jcr:content/aiTagging), recording what the current tags were derived from.
+ */
+public final class TaggingState {
+
+    public static final String NODE_NAME = "aiTagging";
+    public static final String PN_CONTENT_HASH = "contentHash";
+    public static final String PN_VOCABULARY_VERSION = "vocabularyVersion";
+    public static final String PN_MODEL = "model";
+    public static final String PN_LAST_TAGGED = "lastTagged";
+    public static final String PN_TAG_IDS = "tagIds";
+    public static final String PN_MIN_HASH = "minHash";
+
+    private final String contentHash;
+    private final String vocabularyVersion;
+    private final String model;
+    private final Calendar lastTagged;
+    private final String[] tagIds;
+    private final String minHash;
+
+    private TaggingState(ValueMap properties) {
+        this.contentHash = properties.get(PN_CONTENT_HASH, String.class);
+        this.vocabularyVersion = properties.get(PN_VOCABULARY_VERSION, String.class);
+        this.model = properties.get(PN_MODEL, String.class);
+        this.lastTagged = properties.get(PN_LAST_TAGGED, Calendar.class);
+        this.tagIds = properties.get(PN_TAG_IDS, new String[0]);
+        this.minHash = properties.get(PN_MIN_HASH, String.class);
+    }
+
+    /**
+     * Read the state stored below a content resource
+     * @param contentResource jcr:content resource of a page or asset
+     * @return The stored state, or null if the content was never tagged
+     */
+    public static TaggingState read(Resource contentResource) {
+        Resource stateResource = contentResource != null ? contentResource.getChild(NODE_NAME) : null;
+        return stateResource != null ? new TaggingState(stateResource.getValueMap()) : null;
+    }
+
+    /**
+     * Store the state below a content resource; the caller is responsible for committing
+     * @param contentResource jcr:content resource of a page or asset
+     * @param contentHash Fingerprint of the tagged content, see {@link ContentFingerprint}
+     * @param vocabularyVersion Version of the vocabulary the content was tagged against
+     * @param model AI model that produced the tags
+     * @param tagIds Tags the AI suggested for the content
+     * @param minHash Encoded {@link MinHash} signature of the content, may be null
+     */
+    public static void write(Resource contentResource, String contentHash, String vocabularyVersion, String model,
+                             List<String> tagIds, String minHash)
+            throws PersistenceException {
+        Map<String, Object> properties = new HashMap<>();
+        properties.put(PN_CONTENT_HASH, contentHash);
+        properties.put(PN_VOCABULARY_VERSION, vocabularyVersion);
+        properties.put(PN_MODEL, model);
+        properties.put(PN_LAST_TAGGED, Calendar.getInstance());
+        properties.put(PN_TAG_IDS, tagIds.toArray(new String[0]));
+        if (minHash != null) {
+            properties.put(PN_MIN_HASH, minHash);
+        }
+
+        Resource stateResource = contentResource.getChild(NODE_NAME);
+        if (stateResource == null) {
+            properties.put(JcrConstants.JCR_PRIMARYTYPE, JcrConstants.NT_UNSTRUCTURED);
+            contentResource.getResourceResolver().create(contentResource, NODE_NAME, properties);
+            return;
+        }
+
+        ModifiableValueMap stateProperties = stateResource.adaptTo(ModifiableValueMap.class);
+        if (stateProperties == null) {
+            throw new PersistenceException("Tagging state is not modifiable: " + stateResource.getPath());
+        }
+        stateProperties.putAll(properties);
+        if (minHash == null) {
+            stateProperties.remove(PN_MIN_HASH);
+        }
+    }
+
+    /**
+     * Record that the content was checked against the stored state and found unchanged, so it
+     * counts as tagged as of now; the caller is responsible for committing
+     * @param contentResource jcr:content resource of a page or asset with stored state
+     * @return false if there is no stored state
+     */
+    public static boolean touch(Resource contentResource) {
+        Resource stateResource = contentResource != null ? contentResource.getChild(NODE_NAME) : null;
+        ModifiableValueMap stateProperties = stateResource != null
+                ? stateResource.adaptTo(ModifiableValueMap.class)
+                : null;
+        if (stateProperties == null) {
+            return false;
+        }
+        stateProperties.put(PN_LAST_TAGGED, Calendar.getInstance());
+        return true;
+    }
+
+    /**
+     * @return true if the stored state was produced from the same content, vocabulary and model
+     */
+    public boolean matches(String contentHash, String model) {
+        return contentHash.equals(this.contentHash) && model.equals(this.model);
+    }
+
+    public String getContentHash() {
+        return contentHash;
+    }
+
+    public String getVocabularyVersion() {
+        return vocabularyVersion;
+    }
+
+    public String getModel() {
+        return model;
+    }
+
+    public Calendar getLastTagged() {
+        return lastTagged;
+    }
+
+    /**
+     * @return Tags the AI suggested, empty for state written before they were recorded
+     */
+    public List<String> getTagIds() {
+        return Arrays.asList(tagIds);
+    }
+
+    /**
+     * @return Encoded {@link MinHash} signature of the tagged content, or null
+     */
+    public String getMinHash() {
+        return minHash;
+    }
+}
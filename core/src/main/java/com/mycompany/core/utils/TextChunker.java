@@ -0,0 +1,65 @@
+package com.mycompany.core.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Splits long extracted text into chunks that end at sentence or block boundaries, so
+ * every chunk can be tagged on its own without cutting sentences apart.
+ */
+public final class TextChunker {
+
+    // Ends of sentences, and ends of rich text blocks
+    private static final Pattern BOUNDARY = Pattern.compile(
+            "(?<=[.!?])\\s+|(?<=</(?:p|li|h[1-6]|div|tr|blockquote|ul|ol|table)>)\\s*|<br\\s*/?>\\s*",
+            Pattern.CASE_INSENSITIVE);
+
+    private TextChunker() {
+        // static methods only
+    }
+
+    /**
+     * Split text into chunks of at most chunkSize characters. Segments between boundaries
+     * are packed into chunks in order; a single segment longer than a chunk is split at
+     * whitespace.
+     * @param text Extracted text
+     * @param chunkSize Maximum characters per chunk
+     * @return Chunks in text order; a single chunk if the text fits
+     */
+    public static List<String> split(String text, int chunkSize) {
+        List<String> chunks = new ArrayList<>();
+        StringBuilder chunk = new StringBuilder();
+
+        Matcher boundaries = BOUNDARY.matcher(text);
+        int start = 0;
+        while (start < text.length()) {
+            int end = boundaries.find() ? boundaries.end() : text.length();
+            String segment = text.substring(start, end);
+            start = end;
+
+            if (chunk.length() + segment.length() > chunkSize && chunk.length() > 0) {
+                addChunk(chunks, chunk);
+            }
+            while (segment.length() > chunkSize) {
+                int cut = segment.lastIndexOf(' ', chunkSize);
+                cut = cut > 0 ? cut + 1 : chunkSize;
+                chunks.add(segment.substring(0, cut).trim());
+                segment = segment.substring(cut);
+            }
+            chunk.append(segment);
+        }
+        addChunk(chunks, chunk);
+
+        return chunks;
+    }
+
+    private static void addChunk(List<String> chunks, StringBuilder chunk) {
+        String trimmed = chunk.toString().trim();
+        if (!trimmed.isEmpty()) {
+            chunks.add(trimmed);
+        }
+        chunk.setLength(0);
+    }
+}
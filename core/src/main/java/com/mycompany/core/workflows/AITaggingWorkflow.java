@@ -5,25 +5,36 @@ import com.adobe.granite.workflow.WorkflowSession;
 import com.adobe.granite.workflow.exec.WorkItem;
 import com.adobe.granite.workflow.exec.WorkflowProcess;
 import com.adobe.granite.workflow.metadata.MetaDataMap;
-import com.mycompany.core.services.AITaggingService;
-import com.mycompany.core.services.OpenAIService;
-import com.mycompany.core.services.TagProviderService;
-import org.apache.sling.api.resource.LoginException;
-import org.apache.sling.api.resource.Resource;
+import com.day.cq.wcm.api.Page;
+import com.day.cq.wcm.api.PageManager;
+import com.mycompany.core.jobs.AITaggingJobConsumer;
+import com.mycompany.core.services.LiveCopyTaggingService;
+import com.mycompany.core.services.TaggingLeaseService;
 import org.apache.sling.api.resource.ResourceResolver;
-import org.apache.sling.api.resource.ValueMap;
+import org.apache.sling.event.jobs.Job;
+import org.apache.sling.event.jobs.JobManager;
 import org.osgi.service.component.annotations.Component;
 import org.osgi.service.component.annotations.Reference;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import com.day.cq.wcm.api.Page;
-import com.day.cq.wcm.api.PageManager;
 
-import java.util.LinkedHashMap;
-import java.util.List;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.Map;
-import java.util.Set;
-
+import java.util.stream.Stream;
+
+/**
+ * Hands the payload to the AI tagging job queue, so the blocking AI call never runs on a
+ * workflow thread. The step must not auto-advance: {@link AITaggingJobConsumer} completes
+ * the work item once the job is done.
+ * With the process argument {@code mode=bulk} a page payload is tagged together with all
+ * pages below it; workflow packages are always tagged in bulk. The process argument
+ * {@code priority=<class>} overrides the priority class of the AI requests.
+ * Only one run per payload tags at a time: a run started while another is in flight, or
+ * shortly after one finished, only advances the workflow.
+ * A live copy page that still inherits its text from its blueprint is tagged through the
+ * blueprint, which passes the tags on to all such live copies.
+ */
 @Component(
         service = WorkflowProcess.class,
         property = {
@@ -32,200 +43,97 @@ import java.util.Set;
 )
 public class AITaggingWorkflow implements WorkflowProcess {
 
+    static final String METADATA_JOB_ID = "aiTaggingJobId";
+    static final String METADATA_DUPLICATE = "aiTaggingDuplicate";
+
+    private static final String PROCESS_ARGS = "PROCESS_ARGS";
+    private static final String BULK_MODE_ARG = "mode=bulk";
+    private static final String PRIORITY_ARG = "priority=";
+
+    private static final Logger LOG = LoggerFactory.getLogger(AITaggingWorkflow.class);
+
     @Reference
-    private TagProviderService tagProviderService;
+    private JobManager jobManager;
 
     @Reference
-    private OpenAIService openAIService;
+    private TaggingLeaseService taggingLeaseService;
 
     @Reference
-    private AITaggingService aiTaggingService;
-
-    // Properties to EXCLUDE (system/metadata properties not relevant for tagging)
-    private static final Set<String> EXCLUDED_PROPERTIES = Set.of(
-            "jcr:created",
-            "jcr:createdBy",
-            "jcr:lastModified",
-            "jcr:lastModifiedBy",
-            "cq:lastModified",
-            "cq:lastModifiedBy",
-            "cq:lastReplicated",
-            "cq:lastReplicatedBy",
-            "cq:lastReplicationAction",
-            "cq:lastRolledout",
-            "cq:lastRolledoutBy",
-            "jcr:uuid",
-            "jcr:baseVersion",
-            "jcr:predecessors",
-            "jcr:versionHistory",
-            "jcr:isCheckedOut",
-            "cq:lastPublished",
-            "cq:lastPublishedBy"
-    );
-
-    private static final Set<String> TEXT_PROPERTIES = Set.of(
-            "text", "jcr:title", "title", "jcr:description",
-            "description", "alt", "heading", "subtitle",
-            "caption", "label", "value", "content", "name"
-    );
-
-    private static final int MAX_DEPTH = 10;
-    private static final Logger LOG = LoggerFactory.getLogger(AITaggingWorkflow.class);
+    private LiveCopyTaggingService liveCopyTaggingService;
 
     @Override
     public void execute(WorkItem workItem, WorkflowSession workflowSession, MetaDataMap metaDataMap)
             throws WorkflowException {
 
+        boolean bulk = isBulkMode(metaDataMap);
         String payloadPath = workItem.getWorkflowData().getPayload().toString();
-        LOG.info("Processing AI Tagging Workflow for payload: {}", payloadPath);
-
-        try (ResourceResolver resolver = getWorkflowResolver(workflowSession)) {
-
-            Resource resource = resolver.getResource(payloadPath);
-
-            if (resource == null) {
-                LOG.error("❌ Resource not found: {}", payloadPath);
-                return;
-            }
-
-            LOG.info("✅ Resource found: {}", payloadPath);
-
-            if (isPage(payloadPath)) {
-                processPage(resource, resolver);
-            }
-
-        } catch (Exception e) {
-            LOG.error("❌ Error in AI tagging workflow for: " + payloadPath, e);
+        if (!bulk) {
+            payloadPath = getTaggingPath(payloadPath, workflowSession);
         }
 
-        LOG.info("AI Tagging Workflow completed successfully for: {}", payloadPath);
-    }
-
-    private ResourceResolver getWorkflowResolver(WorkflowSession workflowSession) throws LoginException {
-        return workflowSession.adaptTo(ResourceResolver.class);
-    }
-
-    private boolean isPage(String path) {
-        return path.startsWith("/content/") &&
-                !path.startsWith("/content/dam") &&
-                !path.startsWith("/content/experience-fragments");
-    }
-
-    private boolean processPage(Resource pageResource, ResourceResolver resolver) {
-        try {
-            PageManager pageManager = resolver.adaptTo(PageManager.class);
-            if (pageManager == null) {
-                LOG.error("❌ Could not get PageManager");
-                return false;
-            }
-
-            Page page = pageManager.getPage(pageResource.getPath());
-            if (page == null) {
-                LOG.warn("⚠️ Could not adapt resource to Page: {}", pageResource.getPath());
-                return false;
-            }
-
-            LOG.info("📄 Processing page: {}", page.getPath());
-
-            // Build clean JSON structure by excluding system properties
-            Map<String, Object> cleanJson = buildCleanJsonTree(pageResource, 0);
+        Map<String, Object> properties = new HashMap<>();
+        properties.put(AITaggingJobConsumer.PROPERTY_PAYLOAD, payloadPath);
+        properties.put(AITaggingJobConsumer.PROPERTY_WORK_ITEM_ID, workItem.getId());
+        properties.put(AITaggingJobConsumer.PROPERTY_BULK, bulk);
+        String priority = getPriority(metaDataMap);
+        if (priority != null) {
+            properties.put(AITaggingJobConsumer.PROPERTY_PRIORITY, priority);
+        }
 
-            // Extract text content for AI
-            String textContent = extractTextFromJson(cleanJson);
+        TaggingLeaseService.Outcome lease = taggingLeaseService.acquire(payloadPath, workItem.getId());
+        if (lease == TaggingLeaseService.Outcome.ACQUIRED) {
+            properties.put(AITaggingJobConsumer.PROPERTY_LEASE_OWNER, workItem.getId());
+        } else {
+            properties.put(AITaggingJobConsumer.PROPERTY_DUPLICATE, lease.name());
+            workItem.getWorkflowData().getMetaDataMap().put(METADATA_DUPLICATE, lease.name());
+        }
 
-            if (textContent == null || textContent.trim().isEmpty()) {
-                LOG.warn("⚠️ No text content extracted from page: {}", page.getPath());
-                return false;
+        Job job = jobManager.addJob(AITaggingJobConsumer.getTopic(bulk), properties);
+        if (job == null) {
+            if (lease == TaggingLeaseService.Outcome.ACQUIRED) {
+                taggingLeaseService.release(payloadPath, workItem.getId());
             }
-
-            LOG.info("📝 Extracted {} characters of text", textContent.length());
-
-            // Build full content for AI
-            String fullContent = buildPageContent(page, textContent);
-            LOG.info("🤖 Content for AI:\n{}", fullContent);
-
-            // TODO: Call your AI service here with cleanJson or fullContent
-             Map<String, String> availableTags = tagProviderService.getAllAvailableTags(resolver);
-             List<String> suggestedTagIds = openAIService.generateTagSuggestions(fullContent, availableTags);
-             aiTaggingService.applyTagsToPage(page, suggestedTagIds);
-            // resolver.commit();
-
-            return true;
-
-        } catch (Exception e) {
-            LOG.error("❌ Error processing page", e);
-            return false;
+            throw new WorkflowException("Could not enqueue AI tagging job for " + payloadPath);
         }
+
+        workItem.getWorkflowData().getMetaDataMap().put(METADATA_JOB_ID, job.getId());
+        LOG.debug("Enqueued AI tagging job {} for payload: {}", job.getId(), payloadPath);
     }
 
     /**
-     * Build JSON tree excluding system/metadata properties
+     * @return Path of the blueprint if the payload is a live copy still inheriting its text,
+     *         so that all live copies of a blueprint share one lease and one run
      */
-    private Map<String, Object> buildCleanJsonTree(Resource resource, int depth) {
-        Map<String, Object> node = new LinkedHashMap<>();
-
-        if (resource == null || depth > MAX_DEPTH) {
-            return node;
+    private String getTaggingPath(String payloadPath, WorkflowSession workflowSession) {
+        ResourceResolver resolver = workflowSession.adaptTo(ResourceResolver.class);
+        PageManager pageManager = resolver != null ? resolver.adaptTo(PageManager.class) : null;
+        Page page = pageManager != null ? pageManager.getPage(payloadPath) : null;
+        String blueprintPath = page != null ? liveCopyTaggingService.getBlueprintPath(page) : null;
+        if (blueprintPath == null) {
+            return payloadPath;
         }
 
-        // Add all properties EXCEPT excluded ones
-        ValueMap properties = resource.getValueMap();
-        properties.forEach((key, value) -> {
-            if (!EXCLUDED_PROPERTIES.contains(key)) {
-                node.put(key, value);
-            }
-        });
-
-        // Recursively process children
-        for (Resource child : resource.getChildren()) {
-            Map<String, Object> childNode = buildCleanJsonTree(child, depth + 1);
-            if (!childNode.isEmpty()) {
-                node.put(child.getName(), childNode);
-            }
-        }
+        LOG.debug("Tagging live copy {} through its blueprint {}", payloadPath, blueprintPath);
+        return blueprintPath;
+    }
 
-        return node;
+    private boolean isBulkMode(MetaDataMap metaDataMap) {
+        return getProcessArgs(metaDataMap).anyMatch(BULK_MODE_ARG::equals);
     }
 
     /**
-     * Extract text content from clean JSON for AI processing
+     * @return Priority class given as e.g. priority=RECENTLY_MODIFIED, or null for the default
      */
-    private String extractTextFromJson(Map<String, Object> jsonMap) {
-        StringBuilder text = new StringBuilder();
-        extractTextRecursive(jsonMap, text);
-        return text.toString().trim();
+    private String getPriority(MetaDataMap metaDataMap) {
+        return getProcessArgs(metaDataMap)
+                .filter(arg -> arg.startsWith(PRIORITY_ARG))
+                .map(arg -> arg.substring(PRIORITY_ARG.length()).toUpperCase())
+                .findFirst()
+                .orElse(null);
     }
 
-    private void extractTextRecursive(Map<String, Object> map, StringBuilder text) {
-        for (Map.Entry<String, Object> entry : map.entrySet()) {
-            String key = entry.getKey();
-            Object value = entry.getValue();
-
-            // Extract text from known text properties
-            if (TEXT_PROPERTIES.contains(key) && value instanceof String) {
-                String textValue = ((String) value).trim();
-                if (!textValue.isEmpty()) {
-                    text.append(textValue).append(" ");
-                }
-            }
-
-            // Recurse into nested maps
-            if (value instanceof Map) {
-                extractTextRecursive((Map<String, Object>) value, text);
-            }
-        }
-    }
-
-    private String buildPageContent(Page page, String extractedText) {
-        StringBuilder content = new StringBuilder();
-        content.append("Page Title: ").append(page.getTitle() != null ? page.getTitle() : "").append("\n");
-        content.append("Page Name: ").append(page.getName()).append("\n");
-
-        if (page.getDescription() != null && !page.getDescription().isEmpty()) {
-            content.append("Description: ").append(page.getDescription()).append("\n");
-        }
-
-        content.append("\nPage Content:\n").append(extractedText);
-        return content.toString();
+    private Stream<String> getProcessArgs(MetaDataMap metaDataMap) {
+        return Arrays.stream(metaDataMap.get(PROCESS_ARGS, "").split(","))
+                .map(String::trim);
     }
 }
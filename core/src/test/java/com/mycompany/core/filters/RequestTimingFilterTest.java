@@ -0,0 +1,78 @@
+package com.mycompany.core.filters;
+
+import com.mycompany.core.testcontext.AppAemContext;
+import io.wcm.testing.mock.aem.junit5.AemContext;
+import io.wcm.testing.mock.aem.junit5.AemContextExtension;
+import org.apache.sling.testing.mock.sling.servlet.MockRequestPathInfo;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import javax.servlet.FilterChain;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(AemContextExtension.class)
+class RequestTimingFilterTest {
+
+    private static final String TEASER = "myaemproject/components/teaser";
+
+    private final AemContext context = AppAemContext.newAemContext();
+
+    private final FilterChain chain = mock(FilterChain.class);
+
+    @BeforeEach
+    void setup() {
+        context.create().resource("/content/page/jcr:content/root/teaser", "sling:resourceType", TEASER);
+        context.currentResource("/content/page/jcr:content/root/teaser");
+        ((MockRequestPathInfo) context.request().getRequestPathInfo()).setExtension("html");
+    }
+
+    @Test
+    void recordsLatencyPerResourceTypeSelectorsAndExtension() throws Exception {
+        RequestTimingFilter filter = context.registerInjectActivateService(new RequestTimingFilter(),
+                "sample.rate", 1.0);
+
+        filter.doFilter(context.request(), context.response(), chain);
+        ((MockRequestPathInfo) context.request().getRequestPathInfo()).setSelectorString("mobile");
+        filter.doFilter(context.request(), context.response(), chain);
+        filter.doFilter(context.request(), context.response(), chain);
+
+        verify(chain, times(3)).doFilter(context.request(), context.response());
+        assertEquals(1, filter.getTimings().get(TEASER + "|-|html").getCount());
+        assertEquals(2, filter.getTimings().get(TEASER + "|mobile|html").getCount());
+    }
+
+    @Test
+    void timesOnlySampledRequests() throws Exception {
+        RequestTimingFilter filter = context.registerInjectActivateService(new RequestTimingFilter(),
+                "sample.rate", 0.0);
+
+        filter.doFilter(context.request(), context.response(), chain);
+
+        verify(chain).doFilter(context.request(), context.response());
+        assertTrue(filter.getTimings().isEmpty());
+    }
+
+    @Test
+    void capsNumberOfKeys() throws Exception {
+        RequestTimingFilter filter = context.registerInjectActivateService(new RequestTimingFilter(),
+                "sample.rate", 1.0, "max.keys", 1);
+        MockRequestPathInfo pathInfo = (MockRequestPathInfo) context.request().getRequestPathInfo();
+
+        for (String selector : new String[] {"a", "b", "c"}) {
+            pathInfo.setSelectorString(selector);
+            filter.doFilter(context.request(), context.response(), chain);
+        }
+
+        assertEquals(2, filter.getTimings().size());
+        assertEquals(2, filter.getTimings().get(RequestTimingFilter.OTHER_KEY).getCount());
+
+        filter.reset();
+        assertTrue(filter.getTimings().isEmpty());
+    }
+}
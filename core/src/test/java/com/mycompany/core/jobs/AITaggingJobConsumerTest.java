@@ -0,0 +1,184 @@
+package com.mycompany.core.jobs;
+
+import com.adobe.granite.workflow.WorkflowException;
+import com.adobe.granite.workflow.WorkflowSession;
+import com.adobe.granite.workflow.exec.Route;
+import com.adobe.granite.workflow.exec.WorkItem;
+import com.adobe.granite.workflow.exec.Workflow;
+import com.adobe.granite.workflow.exec.WorkflowData;
+import com.adobe.granite.workflow.metadata.MetaDataMap;
+import com.mycompany.core.services.TaggingLeaseService;
+import com.mycompany.core.services.TaggingPipelineService;
+import com.mycompany.core.testcontext.AppAemContext;
+import io.wcm.testing.mock.aem.junit5.AemContext;
+import io.wcm.testing.mock.aem.junit5.AemContextExtension;
+import org.apache.sling.api.resource.LoginException;
+import org.apache.sling.api.resource.PersistenceException;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.api.resource.ResourceResolverFactory;
+import org.apache.sling.event.jobs.Job;
+import org.apache.sling.event.jobs.JobManager;
+import org.apache.sling.event.jobs.consumer.JobConsumer.JobResult;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.osgi.framework.Constants;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(AemContextExtension.class)
+class AITaggingJobConsumerTest {
+
+    private static final String PAYLOAD = "/content/myaemproject/en";
+    private static final String WORK_ITEM = "work-item";
+
+    private final AemContext context = AppAemContext.newAemContext();
+
+    private final TaggingPipelineService pipeline = mock(TaggingPipelineService.class);
+    private final TaggingLeaseService leases = mock(TaggingLeaseService.class);
+    private final WorkflowSession workflowSession = mock(WorkflowSession.class);
+    private final WorkItem workItem = mock(WorkItem.class);
+    private final Route route = mock(Route.class);
+    private final JobManager jobManager = mock(JobManager.class);
+
+    private AITaggingJobConsumer consumer;
+
+    @BeforeEach
+    void setup() throws PersistenceException, WorkflowException {
+        context.create().page(PAYLOAD);
+        context.resourceResolver().commit();
+
+        Workflow workflow = mock(Workflow.class);
+        WorkflowData workflowData = mock(WorkflowData.class);
+        when(workflowData.getMetaDataMap()).thenReturn(mock(MetaDataMap.class));
+        when(workflow.getWorkflowData()).thenReturn(workflowData);
+        when(workItem.getWorkflow()).thenReturn(workflow);
+        when(workflowSession.getWorkItem(WORK_ITEM)).thenReturn(workItem);
+        when(workflowSession.getRoutes(workItem, false)).thenReturn(List.of(route));
+        context.registerAdapter(ResourceResolver.class, WorkflowSession.class, workflowSession);
+
+        context.registerService(TaggingPipelineService.class, pipeline);
+        context.registerService(TaggingLeaseService.class, leases);
+        context.registerService(JobManager.class, jobManager);
+        consumer = context.registerInjectActivateService(new AITaggingJobConsumer());
+    }
+
+    @Test
+    void completesWorkItemOfDuplicate() throws WorkflowException {
+        Job job = job(0, 2);
+        when(job.getProperty(AITaggingJobConsumer.PROPERTY_DUPLICATE, String.class)).thenReturn("QUIET");
+
+        assertEquals(JobResult.OK, consumer.process(job));
+        verify(pipeline, never()).process(any(), any(), any(), any());
+        verify(workflowSession).complete(workItem, route);
+    }
+
+    @Test
+    void retriesFailedAttemptBeforeTheLast() throws WorkflowException {
+        when(pipeline.process(any(), any(), any(), any())).thenReturn(false);
+
+        assertEquals(JobResult.FAILED, consumer.process(job(0, 2)));
+        verify(workflowSession, never()).complete(any(), any());
+        verify(leases, never()).release(anyString(), anyString());
+    }
+
+    @Test
+    void completesWorkItemAfterLastFailedAttempt() throws WorkflowException {
+        when(pipeline.process(any(), any(), any(), any())).thenReturn(false);
+
+        assertEquals(JobResult.CANCEL, consumer.process(job(2, 2)));
+        verify(leases).release(PAYLOAD, WORK_ITEM);
+        verify(workflowSession).complete(workItem, route);
+    }
+
+    @Test
+    void completesWorkItemWhenLastAttemptThrows() throws WorkflowException {
+        when(pipeline.process(any(), any(), any(), any())).thenThrow(new IllegalStateException("broken"));
+
+        assertEquals(JobResult.CANCEL, consumer.process(job(2, 2)));
+        verify(workflowSession).complete(workItem, route);
+    }
+
+    @Test
+    void tagsAgainForMergedRuns() throws WorkflowException {
+        when(pipeline.process(any(), any(), any(), any())).thenReturn(true);
+        when(leases.release(PAYLOAD, WORK_ITEM)).thenReturn(true, false);
+
+        assertEquals(JobResult.OK, consumer.process(job(0, 2)));
+        verify(pipeline, times(2)).process(any(), any(), any(), any());
+        verify(leases, times(2)).release(PAYLOAD, WORK_ITEM);
+        verify(workflowSession).complete(workItem, route);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void handsOverPayloadThatKeepsChanging() throws WorkflowException {
+        when(pipeline.process(any(), any(), any(), any())).thenReturn(true);
+        when(leases.release(PAYLOAD, WORK_ITEM)).thenReturn(true);
+        when(jobManager.addJob(anyString(), anyMap())).thenReturn(mock(Job.class));
+
+        assertEquals(JobResult.OK, consumer.process(job(0, 2)));
+
+        // The first run and three merged runs, then a new job holding the lease takes over
+        verify(pipeline, times(4)).process(any(), any(), any(), any());
+        ArgumentCaptor<Map<String, Object>> properties = ArgumentCaptor.forClass(Map.class);
+        verify(jobManager).addJob(eq(AITaggingJobConsumer.TOPIC), properties.capture());
+        assertEquals(PAYLOAD, properties.getValue().get(AITaggingJobConsumer.PROPERTY_PAYLOAD));
+        assertEquals(WORK_ITEM, properties.getValue().get(AITaggingJobConsumer.PROPERTY_LEASE_OWNER));
+        assertNull(properties.getValue().get(AITaggingJobConsumer.PROPERTY_WORK_ITEM_ID));
+        verify(workflowSession).complete(workItem, route);
+    }
+
+    @Test
+    void handsOverBulkRunsToTheBulkQueue() {
+        when(pipeline.processBulk(any(), any(), any(), any(), any())).thenReturn(true);
+        when(leases.release(PAYLOAD, WORK_ITEM)).thenReturn(true);
+        when(jobManager.addJob(anyString(), anyMap())).thenReturn(mock(Job.class));
+        Job job = job(0, 2);
+        when(job.getProperty(AITaggingJobConsumer.PROPERTY_BULK, false)).thenReturn(true);
+
+        assertEquals(JobResult.OK, consumer.process(job));
+
+        verify(jobManager).addJob(eq(AITaggingJobConsumer.TOPIC_BULK), anyMap());
+    }
+
+    @Test
+    void releasesLeaseWhenLastAttemptCannotLogIn() throws LoginException {
+        ResourceResolverFactory resolverFactory = mock(ResourceResolverFactory.class);
+        when(resolverFactory.getServiceResourceResolver(anyMap())).thenThrow(new LoginException("no user"));
+        context.registerService(ResourceResolverFactory.class, resolverFactory,
+                Constants.SERVICE_RANKING, Integer.MAX_VALUE);
+        consumer = context.registerInjectActivateService(new AITaggingJobConsumer());
+
+        assertEquals(JobResult.FAILED, consumer.process(job(0, 2)));
+        verify(leases, never()).release(anyString(), anyString());
+
+        assertEquals(JobResult.CANCEL, consumer.process(job(2, 2)));
+        verify(leases).release(PAYLOAD, WORK_ITEM);
+    }
+
+    private static Job job(int retryCount, int retries) {
+        Job job = mock(Job.class);
+        when(job.getProperty(AITaggingJobConsumer.PROPERTY_PAYLOAD, String.class)).thenReturn(PAYLOAD);
+        when(job.getProperty(AITaggingJobConsumer.PROPERTY_WORK_ITEM_ID, String.class)).thenReturn(WORK_ITEM);
+        when(job.getProperty(AITaggingJobConsumer.PROPERTY_LEASE_OWNER, String.class)).thenReturn(WORK_ITEM);
+        when(job.getProperty(AITaggingJobConsumer.PROPERTY_BULK, false)).thenReturn(false);
+        when(job.getRetryCount()).thenReturn(retryCount);
+        when(job.getNumberOfRetries()).thenReturn(retries);
+        return job;
+    }
+}
@@ -0,0 +1,175 @@
+package com.mycompany.core.listeners;
+
+import com.mycompany.core.jobs.AITaggingJobConsumer;
+import com.mycompany.core.services.TaggingLeaseService;
+import com.mycompany.core.services.TextExtractionService;
+import com.mycompany.core.testcontext.AppAemContext;
+import io.wcm.testing.mock.aem.junit5.AemContext;
+import io.wcm.testing.mock.aem.junit5.AemContextExtension;
+import org.apache.sling.api.resource.observation.ResourceChange;
+import org.apache.sling.api.resource.observation.ResourceChange.ChangeType;
+import org.apache.sling.commons.metrics.MetricsService;
+import org.apache.sling.event.jobs.Job;
+import org.apache.sling.event.jobs.JobManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(AemContextExtension.class)
+class AITaggingChangeListenerTest {
+
+    private static final String PAGE = "/content/myaemproject/en";
+
+    private final AemContext context = AppAemContext.newAemContext();
+
+    private final JobManager jobManager = mock(JobManager.class);
+
+    private AITaggingChangeListener listener;
+
+    @BeforeEach
+    void setup() {
+        TaggingLeaseService leases = mock(TaggingLeaseService.class);
+        when(leases.acquire(anyString(), anyString())).thenReturn(TaggingLeaseService.Outcome.ACQUIRED);
+        TextExtractionService textExtractionService = mock(TextExtractionService.class);
+        when(textExtractionService.getTextPropertyNames()).thenReturn(Set.of("text", "jcr:title"));
+        when(jobManager.addJob(anyString(), anyMap())).thenReturn(mock(Job.class));
+
+        context.registerService(JobManager.class, jobManager);
+        context.registerService(TaggingLeaseService.class, leases);
+        context.registerService(TextExtractionService.class, textExtractionService);
+        context.registerService(MetricsService.class, MetricsService.NOOP);
+
+        listener = context.registerInjectActivateService(new AITaggingChangeListener(),
+                "enabled", true,
+                "quiet.period.seconds", 60);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void collapsesBurstAfterQuietPeriod() {
+        long start = System.currentTimeMillis();
+        listener.onChange(List.of(
+                changed(PAGE + "/jcr:content/root/text", "text"),
+                changed(PAGE + "/jcr:content", "jcr:title"),
+                new ResourceChange(ChangeType.ADDED, PAGE + "/jcr:content/root/teaser", false, null, null, null)));
+
+        listener.flush(start);
+        verify(jobManager, never()).addJob(anyString(), anyMap());
+
+        listener.flush(start + 120000);
+        ArgumentCaptor<Map<String, Object>> properties = ArgumentCaptor.forClass(Map.class);
+        verify(jobManager).addJob(eq(AITaggingJobConsumer.TOPIC), properties.capture());
+        assertEquals(PAGE, properties.getValue().get(AITaggingJobConsumer.PROPERTY_PAYLOAD));
+        assertEquals("RECENTLY_MODIFIED", properties.getValue().get(AITaggingJobConsumer.PROPERTY_PRIORITY));
+    }
+
+    @Test
+    void ignoresChangesOutsideText() {
+        listener.onChange(List.of(
+                changed(PAGE + "/jcr:content", "cq:tags", "cq:lastModified"),
+                new ResourceChange(ChangeType.ADDED, PAGE + "/jcr:content/aiTagging", false, null, null, null),
+                new ResourceChange(ChangeType.ADDED, PAGE, false, null, null, null)));
+
+        listener.flush(System.currentTimeMillis() + 120000);
+        verify(jobManager, never()).addJob(anyString(), any());
+    }
+
+    @Test
+    void tagsChangesWithoutPropertyNames() {
+        listener.onChange(List.of(
+                new ResourceChange(ChangeType.CHANGED, PAGE + "/jcr:content/root/text", false, null, null, null)));
+
+        listener.flush(System.currentTimeMillis() + 120000);
+        verify(jobManager).addJob(eq(AITaggingJobConsumer.TOPIC), anyMap());
+    }
+
+    @Test
+    void ignoresChangesOfServiceUser() {
+        listener.onChange(List.of(
+                changedBy("myaemproject-ai-tagging-service", PAGE + "/jcr:content"),
+                changedBy("myaemproject-ai-tagging-service", PAGE + "/jcr:content/root/text")));
+
+        listener.flush(System.currentTimeMillis() + 120000);
+        verify(jobManager, never()).addJob(anyString(), any());
+
+        listener.onChange(List.of(changedBy("editor", PAGE + "/jcr:content/root/text")));
+
+        listener.flush(System.currentTimeMillis() + 120000);
+        verify(jobManager).addJob(eq(AITaggingJobConsumer.TOPIC), anyMap());
+    }
+
+    @Test
+    void ignoresExcludedPaths() {
+        listener = context.registerInjectActivateService(new AITaggingChangeListener(),
+                "enabled", true,
+                "excluded.paths", new String[] {"/content/*/en/**"});
+
+        listener.onChange(List.of(changed(PAGE + "/jcr:content/root/text", "text")));
+
+        listener.flush(System.currentTimeMillis() + 120000);
+        verify(jobManager, never()).addJob(anyString(), any());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void dropsOldestChangesWhenBufferIsFull() {
+        listener = context.registerInjectActivateService(new AITaggingChangeListener(),
+                "enabled", true,
+                "buffer.capacity", 2,
+                "batch.size", 1);
+
+        listener.onChange(List.of(
+                changed("/content/myaemproject/a/jcr:content", "jcr:title"),
+                changed("/content/myaemproject/b/jcr:content", "jcr:title"),
+                changed("/content/myaemproject/c/jcr:content", "jcr:title")));
+
+        listener.flush(System.currentTimeMillis() + 120000);
+        ArgumentCaptor<Map<String, Object>> properties = ArgumentCaptor.forClass(Map.class);
+        verify(jobManager, times(2)).addJob(eq(AITaggingJobConsumer.TOPIC), properties.capture());
+        assertEquals(Set.of("/content/myaemproject/b", "/content/myaemproject/c"), properties.getAllValues().stream()
+                .map(jobProperties -> jobProperties.get(AITaggingJobConsumer.PROPERTY_PAYLOAD))
+                .collect(Collectors.toSet()));
+    }
+
+    @Test
+    void derivesPagePath() {
+        assertEquals(PAGE, AITaggingChangeListener.getPagePath(PAGE + "/jcr:content/root/text"));
+        assertEquals(PAGE, AITaggingChangeListener.getPagePath(PAGE + "/jcr:content"));
+        assertNull(AITaggingChangeListener.getPagePath(PAGE));
+        assertNull(AITaggingChangeListener.getPagePath(PAGE + "/jcr:contentx"));
+    }
+
+    /**
+     * Change without property names, as reported by the JCR resource provider
+     */
+    private static ResourceChange changedBy(String userId, String path) {
+        return new ResourceChange(ChangeType.CHANGED, path, false, null, null, null) {
+            @Override
+            public String getUserId() {
+                return userId;
+            }
+        };
+    }
+
+    private static ResourceChange changed(String path, String... properties) {
+        return new ResourceChange(ChangeType.CHANGED, path, false, null, Set.of(properties), null);
+    }
+}
@@ -0,0 +1,67 @@
+package com.mycompany.core.models;
+
+import com.day.cq.wcm.api.Page;
+import com.mycompany.core.services.impl.ModelStateCacheImpl;
+import com.mycompany.core.testcontext.AppAemContext;
+import io.wcm.testing.mock.aem.junit5.AemContext;
+import io.wcm.testing.mock.aem.junit5.AemContextExtension;
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.commons.metrics.MetricsService;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Rendering time of a page of HelloWorld components with and without the model state cache.
+ * Not a unit test: runs with {@code mvn test -Pbenchmark} and writes its result to
+ * target/benchmarks/HelloWorldModel.txt.
+ */
+@ExtendWith(AemContextExtension.class)
+class HelloWorldModelBenchmark {
+
+    private static final int COMPONENTS = 200;
+    private static final int WARM_UP_ROUNDS = 50;
+    private static final int ROUNDS = 200;
+
+    private final AemContext context = AppAemContext.newAemContext();
+
+    @Test
+    void rendersPageWithAndWithoutCache() throws IOException {
+        Page page = context.create().page("/content/mypage");
+        Resource parsys = context.create().resource(page.getContentResource().getPath() + "/root");
+        List<Resource> components = new ArrayList<>();
+        for (int i = 0; i < COMPONENTS; i++) {
+            components.add(context.create().resource(parsys, "hello" + i,
+                "sling:resourceType", "myaemproject/components/helloworld"));
+        }
+
+        double uncachedMillis = millisPerPage(components);
+        context.registerService(MetricsService.class, MetricsService.NOOP);
+        context.registerInjectActivateService(new ModelStateCacheImpl());
+        double cachedMillis = millisPerPage(components);
+
+        Path dir = Paths.get(System.getProperty("benchmark.dir", "target/benchmarks"));
+        Files.createDirectories(dir);
+        Files.write(dir.resolve("HelloWorldModel.txt"), List.of(
+                "components=" + COMPONENTS,
+                "uncachedMillisPerPage=" + uncachedMillis,
+                "cachedMillisPerPage=" + cachedMillis));
+    }
+
+    private static double millisPerPage(List<Resource> components) {
+        for (int round = 0; round < WARM_UP_ROUNDS; round++) {
+            components.forEach(component -> component.adaptTo(HelloWorldModel.class).getMessage());
+        }
+        long start = System.nanoTime();
+        for (int round = 0; round < ROUNDS; round++) {
+            components.forEach(component -> component.adaptTo(HelloWorldModel.class).getMessage());
+        }
+        return (System.nanoTime() - start) / 1e6 / ROUNDS;
+    }
+}
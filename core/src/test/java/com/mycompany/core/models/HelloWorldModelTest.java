@@ -17,6 +17,8 @@ package com.mycompany.core.models;
 
 import org.apache.commons.lang3.StringUtils;
 import org.apache.sling.api.resource.Resource;
+import org.apache.sling.commons.metrics.Meter;
+import org.apache.sling.commons.metrics.MetricsService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -24,10 +26,20 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import com.day.cq.wcm.api.Page;
 import io.wcm.testing.mock.aem.junit5.AemContext;
 import io.wcm.testing.mock.aem.junit5.AemContextExtension;
+import com.mycompany.core.services.impl.ModelStateCacheImpl;
 import com.mycompany.core.testcontext.AppAemContext;
 
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 /**
  * Simple JUnit test verifying the HelloWorldModel
@@ -63,4 +75,22 @@ class HelloWorldModelTest {
         assertTrue(StringUtils.contains(msg, page.getPath()));
     }
 
+    @Test
+    void testGetMessageFromCache() throws Exception {
+        Map<String, Meter> meters = new HashMap<>();
+        MetricsService metricsService = mock(MetricsService.class);
+        when(metricsService.meter(anyString())).thenAnswer(invocation ->
+            meters.computeIfAbsent(invocation.getArgument(0), name -> mock(Meter.class)));
+        context.registerService(MetricsService.class, metricsService);
+        context.registerInjectActivateService(new ModelStateCacheImpl());
+
+        assertEquals(hello.getMessage(), resource.adaptTo(HelloWorldModel.class).getMessage());
+        verify(meters.get("myaemproject.models.cache.misses")).mark();
+        verify(meters.get("myaemproject.models.cache.hits"), never()).mark();
+
+        assertEquals(hello.getMessage(), resource.adaptTo(HelloWorldModel.class).getMessage());
+        verify(meters.get("myaemproject.models.cache.misses")).mark();
+        verify(meters.get("myaemproject.models.cache.hits")).mark();
+    }
+
 }
@@ -0,0 +1,198 @@
+package com.mycompany.core.schedulers;
+
+import com.day.cq.commons.jcr.JcrConstants;
+import com.day.cq.wcm.api.NameConstants;
+import com.mycompany.core.jobs.AITaggingJobConsumer;
+import com.mycompany.core.services.OpenAIService;
+import com.mycompany.core.services.TagProviderService;
+import com.mycompany.core.services.TaggingLeaseService;
+import com.mycompany.core.services.TaggingPipelineService;
+import com.mycompany.core.services.TaggingScheduler;
+import com.mycompany.core.testcontext.AppAemContext;
+import com.mycompany.core.utils.ContentFingerprint;
+import com.mycompany.core.utils.TaggingState;
+import io.wcm.testing.mock.aem.junit5.AemContext;
+import io.wcm.testing.mock.aem.junit5.AemContextExtension;
+import org.apache.sling.api.resource.ModifiableValueMap;
+import org.apache.sling.api.resource.PersistenceException;
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.commons.metrics.MetricsService;
+import org.apache.sling.event.jobs.Job;
+import org.apache.sling.event.jobs.JobManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+
+import java.util.Calendar;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(AemContextExtension.class)
+class AITaggingBackfillTaskTest {
+
+    private static final Map<String, String> TAGS = Map.of("myaemproject:topic/ev", "EV");
+
+    private final AemContext context = AppAemContext.newAemContext();
+
+    private final TaggingPipelineService pipeline = mock(TaggingPipelineService.class);
+
+    private final TaggingLeaseService leases = mock(TaggingLeaseService.class);
+
+    private final JobManager jobManager = mock(JobManager.class);
+
+    private AITaggingBackfillTask task;
+
+    @BeforeEach
+    void setup() throws PersistenceException {
+        context.create().page("/content/myaemproject");
+        context.create().page("/content/myaemproject/a");
+        context.create().page("/content/myaemproject/b");
+        context.resourceResolver().commit();
+
+        when(leases.acquire(anyString(), anyString())).thenReturn(TaggingLeaseService.Outcome.ACQUIRED);
+        OpenAIService openAIService = mock(OpenAIService.class);
+        when(openAIService.getModel()).thenReturn("test-model");
+        TagProviderService tagProviderService = mock(TagProviderService.class);
+        when(tagProviderService.getVocabulary()).thenReturn(new TagProviderService.Vocabulary(TAGS));
+        // Tags like the pipeline does, storing the tagging state
+        when(pipeline.process(any(), any(), any(), any())).thenAnswer(invocation -> {
+            Resource page = invocation.getArgument(0);
+            writeState(page.getChild(JcrConstants.JCR_CONTENT));
+            page.getResourceResolver().commit();
+            return true;
+        });
+
+        context.registerService(TaggingPipelineService.class, pipeline);
+        context.registerService(TaggingLeaseService.class, leases);
+        context.registerService(OpenAIService.class, openAIService);
+        context.registerService(TagProviderService.class, tagProviderService);
+        context.registerService(MetricsService.class, MetricsService.NOOP);
+        context.registerService(JobManager.class, jobManager);
+
+        task = context.registerInjectActivateService(new AITaggingBackfillTask(),
+                "enabled", true,
+                "batch.size", 2,
+                "requests.per.minute", 60000,
+                "max.load.per.cpu", 1000d);
+    }
+
+    @Test
+    void resumesAfterCheckpoint() {
+        task.runBatch();
+
+        assertEquals(List.of("/content/myaemproject", "/content/myaemproject/a"), taggedPaths());
+        context.resourceResolver().refresh();
+        Resource checkpoint = context.resourceResolver().getResource(AITaggingBackfillTask.CHECKPOINT_PATH);
+        assertNotNull(checkpoint);
+        assertEquals("/content/myaemproject/a",
+                checkpoint.getValueMap().get(AITaggingBackfillTask.PN_CURSOR, String.class));
+
+        clearInvocations(pipeline);
+        task.runBatch();
+
+        assertEquals(List.of("/content/myaemproject/b"), taggedPaths());
+        context.resourceResolver().refresh();
+        assertNotNull(context.resourceResolver().getResource(AITaggingBackfillTask.CHECKPOINT_PATH)
+                .getValueMap().get(AITaggingBackfillTask.PN_LAST_COMPLETED));
+    }
+
+    @Test
+    void touchesStaleButUnchangedPages() throws PersistenceException {
+        Calendar lastTagged = Calendar.getInstance();
+        lastTagged.add(Calendar.HOUR, -1);
+        Calendar lastModified = Calendar.getInstance();
+        lastModified.add(Calendar.MINUTE, -1);
+        for (String path : List.of("/content/myaemproject", "/content/myaemproject/a", "/content/myaemproject/b")) {
+            Resource content = context.resourceResolver().getResource(path + "/" + JcrConstants.JCR_CONTENT);
+            writeState(content);
+            content.getChild(TaggingState.NODE_NAME).adaptTo(ModifiableValueMap.class)
+                    .put(TaggingState.PN_LAST_TAGGED, lastTagged);
+            content.adaptTo(ModifiableValueMap.class).put(NameConstants.PN_PAGE_LAST_MOD, lastModified);
+        }
+        context.resourceResolver().commit();
+        // Modified, but the text is the same, so the pipeline skips without writing
+        when(pipeline.process(any(), any(), any(), any())).thenReturn(true);
+
+        task.runBatch();
+
+        // Skipped pages do not use up the batch of two
+        assertEquals(3, taggedPaths().size());
+        context.resourceResolver().refresh();
+        assertTrue(TaggingState.read(context.resourceResolver().getResource("/content/myaemproject/b/"
+                + JcrConstants.JCR_CONTENT)).getLastTagged().after(lastModified));
+
+        clearInvocations(pipeline);
+        task.runBatch();
+
+        verify(pipeline, never()).process(any(), any(), any(), any());
+    }
+
+    @Test
+    void recordsStateOfPagesWithoutText() {
+        // Nothing to tag, so the pipeline writes no state
+        when(pipeline.process(any(), any(), any(), any())).thenReturn(true);
+
+        task.runBatch();
+
+        assertEquals(3, taggedPaths().size());
+        context.resourceResolver().refresh();
+        TaggingState state = TaggingState.read(context.resourceResolver().getResource("/content/myaemproject/a/"
+                + JcrConstants.JCR_CONTENT));
+        assertNotNull(state);
+        assertTrue(state.getTagIds().isEmpty());
+
+        clearInvocations(pipeline);
+        task.runBatch();
+
+        verify(pipeline, never()).process(any(), any(), any(), any());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void handsOverPageThatKeepsChanging() {
+        when(leases.release(eq("/content/myaemproject"), anyString())).thenReturn(true);
+        when(jobManager.addJob(anyString(), anyMap())).thenReturn(mock(Job.class));
+
+        task.runBatch();
+
+        // The first run and three merged runs, then a job holding the lease takes over
+        verify(pipeline, times(4)).process(argThat(page -> page.getPath().equals("/content/myaemproject")), any(),
+                any(), any());
+        ArgumentCaptor<Map<String, Object>> properties = ArgumentCaptor.forClass(Map.class);
+        verify(jobManager).addJob(eq(AITaggingJobConsumer.TOPIC), properties.capture());
+        assertEquals("/content/myaemproject", properties.getValue().get(AITaggingJobConsumer.PROPERTY_PAYLOAD));
+        assertNotNull(properties.getValue().get(AITaggingJobConsumer.PROPERTY_LEASE_OWNER));
+        assertNull(properties.getValue().get(AITaggingJobConsumer.PROPERTY_WORK_ITEM_ID));
+    }
+
+    private static void writeState(Resource content) throws PersistenceException {
+        TaggingState.write(content, "hash", ContentFingerprint.ofVocabulary(TAGS), "test-model",
+                List.of("myaemproject:topic/ev"), null);
+    }
+
+    private List<String> taggedPaths() {
+        ArgumentCaptor<Resource> payloads = ArgumentCaptor.forClass(Resource.class);
+        verify(pipeline, atLeastOnce()).process(payloads.capture(), any(), eq(TaggingScheduler.Priority.BACKFILL),
+                any());
+        return payloads.getAllValues().stream().map(Resource::getPath).collect(Collectors.toList());
+    }
+}
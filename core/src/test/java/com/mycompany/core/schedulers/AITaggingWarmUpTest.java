@@ -0,0 +1,73 @@
+package com.mycompany.core.schedulers;
+
+import com.mycompany.core.services.OpenAIService;
+import com.mycompany.core.services.TagProviderService;
+import com.mycompany.core.services.TextExtractionService;
+import com.mycompany.core.services.impl.TextExtractionServiceImpl;
+import com.mycompany.core.testcontext.AppAemContext;
+import io.wcm.testing.mock.aem.junit5.AemContext;
+import io.wcm.testing.mock.aem.junit5.AemContextExtension;
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.commons.metrics.MetricsService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(AemContextExtension.class)
+class AITaggingWarmUpTest {
+
+    private static final Map<String, String> TAGS = Map.of("myaemproject:topic/ev", "EV");
+
+    private final AemContext context = AppAemContext.newAemContext();
+
+    private final OpenAIService openAIService = mock(OpenAIService.class);
+
+    private TextExtractionService textExtractionService;
+
+    @BeforeEach
+    void setup() {
+        TagProviderService tagProviderService = mock(TagProviderService.class);
+        when(tagProviderService.getVocabulary()).thenReturn(new TagProviderService.Vocabulary(TAGS));
+        when(openAIService.warmUp(any(), anyInt())).thenReturn(2);
+
+        context.registerService(TagProviderService.class, tagProviderService);
+        context.registerService(OpenAIService.class, openAIService);
+        context.registerService(MetricsService.class, MetricsService.NOOP);
+        textExtractionService = context.registerInjectActivateService(new TextExtractionServiceImpl());
+    }
+
+    @Test
+    void warmsUpVocabularyAndConnections() {
+        AITaggingWarmUp warmUp = context.registerInjectActivateService(new AITaggingWarmUp(),
+                "enabled", false,
+                "connections", 2,
+                "extraction.runs", 3);
+
+        warmUp.warmUp();
+
+        verify(openAIService).warmUp(TAGS, 2);
+    }
+
+    @Test
+    void extractsTextFromSyntheticPage() {
+        Resource page = AITaggingWarmUp.createSyntheticPage(context.resourceResolver());
+
+        String text = textExtractionService.extractText(page);
+
+        assertTrue(text.contains("Our new electric SUV"), text);
+        assertTrue(text.contains("Range & charging"), text);
+        assertTrue(text.contains("Electric SUV at a charger"), text);
+        assertEquals(AITaggingWarmUp.SYNTHETIC_PAGE_PATH + "/jcr:content/root/text",
+                page.getChild("root").getChild("text").getPath());
+    }
+}
@@ -0,0 +1,142 @@
+package com.mycompany.core.services.impl;
+
+import com.day.cq.tagging.Tag;
+import com.day.cq.tagging.TagManager;
+import com.day.cq.wcm.api.Page;
+import com.mycompany.core.services.OpenAIService;
+import com.mycompany.core.testcontext.AppAemContext;
+import io.wcm.testing.mock.aem.junit5.AemContext;
+import io.wcm.testing.mock.aem.junit5.AemContextExtension;
+import org.apache.sling.api.resource.ModifiableValueMap;
+import org.apache.sling.api.resource.PersistenceException;
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.commons.metrics.Meter;
+import org.apache.sling.commons.metrics.MetricsService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(AemContextExtension.class)
+class AITaggingServiceImplTest {
+
+    private static final String EV = "myaemproject:topic/ev";
+    private static final String SUV = "myaemproject:topic/suv";
+    private static final String FRAGMENT = "/content/experience-fragments/myaemproject/us/en/promo";
+    private static final String ASSET = "/content/dam/myaemproject/electric-suv.jpg";
+
+    private final AemContext context = AppAemContext.newAemContext();
+
+    private final Map<String, Meter> meters = new HashMap<>();
+
+    private AITaggingServiceImpl service;
+
+    @BeforeEach
+    void setup() {
+        context.create().tag(EV);
+        context.create().tag(SUV);
+
+        MetricsService metricsService = mock(MetricsService.class);
+        when(metricsService.meter(anyString())).thenAnswer(invocation ->
+                meters.computeIfAbsent(invocation.getArgument(0), name -> mock(Meter.class)));
+        context.registerService(MetricsService.class, metricsService);
+        context.registerService(OpenAIService.class, mock(OpenAIService.class));
+        service = context.registerInjectActivateService(new AITaggingServiceImpl());
+    }
+
+    @Test
+    void skipsWriteOfTagsThePageCarries() throws PersistenceException {
+        Page page = context.create().page("/content/myaemproject/en", null, "cq:tags", new String[] {EV, SUV});
+        context.resourceResolver().commit();
+
+        assertFalse(service.applyTagsToPage(page, List.of(SUV, EV), false));
+
+        assertFalse(context.resourceResolver().hasChanges());
+        verify(meters.get(AITaggingServiceImpl.METRIC_TAG_WRITES_SKIPPED)).mark();
+        verify(meters.get(AITaggingServiceImpl.METRIC_TAG_WRITES), never()).mark();
+    }
+
+    @Test
+    void mergesTagsThePageLacks() throws PersistenceException {
+        Page page = context.create().page("/content/myaemproject/en", null, "cq:tags", new String[] {EV});
+        context.resourceResolver().commit();
+
+        assertTrue(service.applyTagsToPage(page, List.of(SUV), false));
+
+        assertTrue(context.resourceResolver().hasChanges());
+        assertEquals(Set.of(EV, SUV), tagIds(page.getContentResource()));
+        verify(meters.get(AITaggingServiceImpl.METRIC_TAG_WRITES)).mark();
+        verify(meters.get(AITaggingServiceImpl.METRIC_TAG_WRITES_SKIPPED), never()).mark();
+    }
+
+    @Test
+    void skipsWriteOfTagsTheResourceCarries() throws PersistenceException {
+        Resource fragment = context.create().resource(FRAGMENT);
+        context.create().resource(fragment, "jcr:content", "cq:tags", new String[] {EV, SUV});
+        context.resourceResolver().commit();
+
+        assertFalse(service.applyTagsToResource(fragment, List.of(SUV), context.resourceResolver(), false));
+
+        assertFalse(context.resourceResolver().hasChanges());
+        verify(meters.get(AITaggingServiceImpl.METRIC_TAG_WRITES_SKIPPED)).mark();
+        verify(meters.get(AITaggingServiceImpl.METRIC_TAG_WRITES), never()).mark();
+    }
+
+    @Test
+    void mergesTagsTheResourceLacks() throws PersistenceException {
+        Resource fragment = context.create().resource(FRAGMENT);
+        context.create().resource(fragment, "jcr:content", "cq:tags", new String[] {EV});
+        context.resourceResolver().commit();
+
+        assertTrue(service.applyTagsToResource(fragment, List.of(SUV), context.resourceResolver(), false));
+
+        assertTrue(context.resourceResolver().hasChanges());
+        assertEquals(Set.of(EV, SUV), tagIds(fragment.getChild("jcr:content")));
+        verify(meters.get(AITaggingServiceImpl.METRIC_TAG_WRITES)).mark();
+    }
+
+    @Test
+    void writesAssetTagsToItsMetadata() throws PersistenceException {
+        Resource asset = context.create().asset(ASSET, 10, 10, "image/jpeg").adaptTo(Resource.class);
+        context.resourceResolver().commit();
+
+        assertTrue(service.applyTagsToResource(asset, List.of(EV), context.resourceResolver(), false));
+
+        assertEquals(Set.of(EV), tagIds(asset.getChild("jcr:content/metadata")));
+        assertFalse(asset.getChild("jcr:content").getValueMap().containsKey("cq:tags"));
+    }
+
+    @Test
+    void keepsAssetTagsSetBeforehand() throws PersistenceException {
+        Resource asset = context.create().asset(ASSET, 10, 10, "image/jpeg").adaptTo(Resource.class);
+        asset.getChild("jcr:content/metadata").adaptTo(ModifiableValueMap.class).put("cq:tags", new String[] {EV});
+        context.resourceResolver().commit();
+
+        assertFalse(service.applyTagsToResource(asset, List.of(EV), context.resourceResolver(), false));
+        assertFalse(context.resourceResolver().hasChanges());
+        verify(meters.get(AITaggingServiceImpl.METRIC_TAG_WRITES_SKIPPED)).mark();
+
+        assertTrue(service.applyTagsToResource(asset, List.of(SUV), context.resourceResolver(), false));
+        assertEquals(Set.of(EV, SUV), tagIds(asset.getChild("jcr:content/metadata")));
+    }
+
+    private Set<String> tagIds(Resource resource) {
+        Tag[] tags = context.resourceResolver().adaptTo(TagManager.class).getTags(resource);
+        return Arrays.stream(tags).map(Tag::getTagID).collect(Collectors.toSet());
+    }
+}
@@ -0,0 +1,145 @@
+package com.mycompany.core.services.impl;
+
+import com.day.cq.wcm.api.NameConstants;
+import com.day.cq.wcm.api.Page;
+import com.day.cq.wcm.msm.api.LiveRelationship;
+import com.day.cq.wcm.msm.api.LiveRelationshipManager;
+import com.mycompany.core.services.AITaggingService;
+import com.mycompany.core.services.TextExtractionService;
+import com.mycompany.core.testcontext.AppAemContext;
+import com.mycompany.core.utils.TaggingState;
+import io.wcm.testing.mock.aem.junit5.AemContext;
+import io.wcm.testing.mock.aem.junit5.AemContextExtension;
+import org.apache.jackrabbit.commons.iterator.RangeIteratorAdapter;
+import org.apache.sling.api.resource.ModifiableValueMap;
+import org.apache.sling.api.resource.PersistenceException;
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.commons.metrics.MetricsService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.osgi.framework.Constants;
+
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(AemContextExtension.class)
+class LiveCopyTaggingServiceImplTest {
+
+    private static final String BLUEPRINT = "/content/myaemproject/language-masters/en/cars";
+    private static final String INHERITING = "/content/myaemproject/us/en/cars";
+    private static final String CANCELLED = "/content/myaemproject/ca/en/cars";
+    private static final String[] SYNCED = {LiveCopyTaggingServiceImpl.MIX_LIVE_RELATIONSHIP};
+    private static final List<String> TAGS = List.of("myaemproject:topic/ev");
+
+    private final AemContext context = AppAemContext.newAemContext();
+
+    private final AITaggingService aiTaggingService = mock(AITaggingService.class);
+
+    private LiveCopyTaggingServiceImpl service;
+
+    @BeforeEach
+    void setup() throws Exception {
+        Page blueprint = context.create().page(BLUEPRINT, null, Map.of("jcr:title", "Cars"));
+        context.create().resource(BLUEPRINT + "/jcr:content/root/text", "text", "Electric cars");
+        TaggingState.write(blueprint.getContentResource(), "hash", "v1", "model", TAGS, null);
+
+        context.create().page(INHERITING, null, Map.of("jcr:title", "Cars", "jcr:mixinTypes", SYNCED));
+        context.create().resource(INHERITING + "/jcr:content/root/text", "text", "Electric cars",
+                "jcr:mixinTypes", SYNCED);
+        context.create().page(CANCELLED, null, Map.of("jcr:title", "Cars", "jcr:mixinTypes", SYNCED));
+        context.create().resource(CANCELLED + "/jcr:content/root/text", "text", "Electric cars in Canada",
+                "jcr:mixinTypes", new String[] {LiveCopyTaggingServiceImpl.MIX_LIVE_RELATIONSHIP,
+                        LiveCopyTaggingServiceImpl.MIX_LIVE_SYNC_CANCELLED});
+        context.resourceResolver().commit();
+
+        LiveRelationshipManager liveRelationshipManager = mock(LiveRelationshipManager.class);
+        when(liveRelationshipManager.hasLiveRelationship(any(Resource.class)))
+                .thenAnswer(invocation -> !invocation.<Resource>getArgument(0).getPath().startsWith(BLUEPRINT));
+        LiveRelationship inheriting = relationship(INHERITING);
+        List<LiveRelationship> liveCopies = List.of(inheriting, relationship(CANCELLED));
+        when(liveRelationshipManager.getLiveRelationship(any(Resource.class), eq(false))).thenReturn(inheriting);
+        when(liveRelationshipManager.getLiveRelationships(any(Resource.class), isNull(), isNull()))
+                .thenAnswer(invocation -> new RangeIteratorAdapter(
+                        BLUEPRINT.equals(invocation.<Resource>getArgument(0).getPath())
+                                ? liveCopies : Collections.emptyList()));
+        TextExtractionService textExtractionService = mock(TextExtractionService.class);
+        when(textExtractionService.getTextPropertyNames()).thenReturn(Set.of("text", "jcr:title"));
+
+        context.registerService(LiveRelationshipManager.class, liveRelationshipManager,
+                Constants.SERVICE_RANKING, Integer.MAX_VALUE);
+        context.registerService(AITaggingService.class, aiTaggingService);
+        context.registerService(TextExtractionService.class, textExtractionService);
+        context.registerService(MetricsService.class, MetricsService.NOOP);
+        service = context.registerInjectActivateService(new LiveCopyTaggingServiceImpl());
+    }
+
+    @Test
+    void findsBlueprintWhileTextIsInherited() {
+        assertEquals(BLUEPRINT, service.getBlueprintPath(context.pageManager().getPage(INHERITING)));
+        assertNull(service.getBlueprintPath(context.pageManager().getPage(CANCELLED)));
+        assertNull(service.getBlueprintPath(context.pageManager().getPage(BLUEPRINT)));
+    }
+
+    @Test
+    void cachesInheritanceUntilLiveCopyIsModified() throws PersistenceException {
+        Calendar lastModified = Calendar.getInstance();
+        lastModified.add(Calendar.HOUR, -1);
+        liveCopyContent().adaptTo(ModifiableValueMap.class).put(NameConstants.PN_PAGE_LAST_MOD, lastModified);
+        context.resourceResolver().commit();
+        assertTrue(service.inheritsText(liveCopyContent()));
+
+        // Changes below the page content do not count until the page is modified
+        context.resourceResolver().getResource(INHERITING + "/jcr:content/root/text")
+                .adaptTo(ModifiableValueMap.class).put("jcr:mixinTypes", new String[] {
+                        LiveCopyTaggingServiceImpl.MIX_LIVE_RELATIONSHIP,
+                        LiveCopyTaggingServiceImpl.MIX_LIVE_SYNC_CANCELLED});
+        context.resourceResolver().commit();
+        assertTrue(service.inheritsText(liveCopyContent()));
+
+        liveCopyContent().adaptTo(ModifiableValueMap.class).put(NameConstants.PN_PAGE_LAST_MOD,
+                Calendar.getInstance());
+        context.resourceResolver().commit();
+        assertFalse(service.inheritsText(liveCopyContent()));
+    }
+
+    @Test
+    void propagatesToInheritingLiveCopiesOnce() throws PersistenceException {
+        Page blueprint = context.pageManager().getPage(BLUEPRINT);
+        Page inheriting = context.pageManager().getPage(INHERITING);
+
+        assertEquals(1, service.propagateTags(blueprint));
+        verify(aiTaggingService).applyTagsToPage(argThat(page -> INHERITING.equals(page.getPath())), eq(TAGS),
+                eq(false));
+        assertEquals(TAGS, TaggingState.read(inheriting.getContentResource()).getTagIds());
+        assertNull(TaggingState.read(context.pageManager().getPage(CANCELLED).getContentResource()));
+
+        assertEquals(0, service.propagateTags(blueprint));
+    }
+
+    private Resource liveCopyContent() {
+        return context.resourceResolver().getResource(INHERITING + "/jcr:content");
+    }
+
+    private static LiveRelationship relationship(String target) {
+        LiveRelationship relationship = mock(LiveRelationship.class);
+        when(relationship.getSourcePath()).thenReturn(BLUEPRINT + "/jcr:content");
+        when(relationship.getTargetPath()).thenReturn(target);
+        return relationship;
+    }
+}
@@ -0,0 +1,129 @@
+package com.mycompany.core.services.impl;
+
+import com.mycompany.core.testcontext.AppAemContext;
+import io.wcm.testing.mock.aem.junit5.AemContext;
+import io.wcm.testing.mock.aem.junit5.AemContextExtension;
+import org.apache.sling.api.resource.ModifiableValueMap;
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.observation.ResourceChange;
+import org.apache.sling.api.resource.observation.ResourceChange.ChangeType;
+import org.apache.sling.commons.metrics.MetricsService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import java.util.Calendar;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@ExtendWith(AemContextExtension.class)
+class ModelStateCacheImplTest {
+
+    private static final String PAGE = "/content/myaemproject/us/en";
+    private static final String TEASER = PAGE + "/jcr:content/root/teaser";
+
+    private final AemContext context = AppAemContext.newAemContext();
+
+    private final AtomicInteger loads = new AtomicInteger();
+    private final Function<Resource, String> loader = resource -> resource.getPath() + "#" + loads.incrementAndGet();
+
+    private ModelStateCacheImpl cache;
+    private Resource teaser;
+
+    @BeforeEach
+    void setup() {
+        context.create().page(PAGE);
+        teaser = context.create().resource(TEASER, "jcr:title", "Electric SUVs");
+        context.create().resource(PAGE + "/jcr:content/root/text");
+        context.registerService(MetricsService.class, MetricsService.NOOP);
+        cache = context.registerInjectActivateService(new ModelStateCacheImpl(),
+                "max.entries", 2,
+                "resource.paths", new String[] {"/content/myaemproject"});
+    }
+
+    @Test
+    void computesStateOncePerModel() {
+        assertEquals(TEASER + "#1", cache.get(teaser, String.class, loader));
+        assertEquals(TEASER + "#1", cache.get(teaser, String.class, loader));
+        assertEquals(TEASER + "#2", cache.get(teaser, Integer.class, loader));
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void recomputesStateOfModifiedResource() throws Exception {
+        cache.get(teaser, String.class, loader);
+
+        Calendar lastModified = Calendar.getInstance();
+        teaser.adaptTo(ModifiableValueMap.class).put("jcr:lastModified", lastModified);
+        context.resourceResolver().commit();
+
+        assertEquals(TEASER + "#2", cache.get(context.resourceResolver().getResource(TEASER), String.class, loader));
+    }
+
+    @Test
+    void dropsStateOfChangedResourcesAndTheirDescendants() {
+        Resource text = context.resourceResolver().getResource(PAGE + "/jcr:content/root/text");
+        cache.get(teaser, String.class, loader);
+        cache.get(text, String.class, loader);
+
+        cache.onChange(List.of(new ResourceChange(ChangeType.CHANGED, TEASER, false, null, null, null)));
+        assertEquals(1, cache.size());
+
+        cache.onChange(List.of(new ResourceChange(ChangeType.CHANGED, PAGE + "/jcr:content", false, null, null, null)));
+        assertEquals(0, cache.size());
+
+        assertEquals(TEASER + "#3", cache.get(teaser, String.class, loader));
+    }
+
+    @Test
+    void discardsStateLoadedWhileResourceChanged() {
+        Function<Resource, String> changingLoader = resource -> {
+            cache.onChange(List.of(new ResourceChange(ChangeType.CHANGED, PAGE, false, null, null, null)));
+            return loader.apply(resource);
+        };
+
+        assertEquals(TEASER + "#1", cache.get(teaser, String.class, changingLoader));
+        assertEquals(TEASER + "#2", cache.get(teaser, String.class, loader));
+    }
+
+    @Test
+    void keepsStateLoadedWhileOtherResourceChanged() {
+        Function<Resource, String> changingLoader = resource -> {
+            cache.onChange(List.of(new ResourceChange(ChangeType.CHANGED, PAGE + "/jcr:content/root/text", false,
+                    null, null, null)));
+            return loader.apply(resource);
+        };
+
+        assertEquals(TEASER + "#1", cache.get(teaser, String.class, changingLoader));
+        assertEquals(TEASER + "#1", cache.get(teaser, String.class, loader));
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    void evictsLeastRecentlyUsedResources() {
+        Resource text = context.resourceResolver().getResource(PAGE + "/jcr:content/root/text");
+        Resource root = context.resourceResolver().getResource(PAGE + "/jcr:content/root");
+        cache.get(teaser, String.class, loader);
+        cache.get(text, String.class, loader);
+        cache.get(teaser, String.class, loader);
+        cache.get(root, String.class, loader);
+
+        assertEquals(2, cache.size());
+        assertEquals(TEASER + "#1", cache.get(teaser, String.class, loader));
+        assertEquals(PAGE + "/jcr:content/root/text#4", cache.get(text, String.class, loader));
+    }
+
+    @Test
+    void computesStateOutsideConfiguredPaths() {
+        Resource other = context.create().resource("/content/other/teaser");
+
+        cache.get(other, String.class, loader);
+        cache.get(other, String.class, loader);
+
+        assertEquals(2, loads.get());
+        assertEquals(0, cache.size());
+    }
+}
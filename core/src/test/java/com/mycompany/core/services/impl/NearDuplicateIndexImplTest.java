@@ -0,0 +1,57 @@
+package com.mycompany.core.services.impl;
+
+import com.mycompany.core.testcontext.AppAemContext;
+import com.mycompany.core.utils.MinHash;
+import io.wcm.testing.mock.aem.junit5.AemContext;
+import io.wcm.testing.mock.aem.junit5.AemContextExtension;
+import org.apache.sling.commons.metrics.MetricsService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+@ExtendWith(AemContextExtension.class)
+class NearDuplicateIndexImplTest {
+
+    private static final String TEXT = "Our new electric SUV seats seven and charges to eighty percent in thirty "
+            + "minutes. Families get a quiet cabin, a large trunk and driver assistance on every trim. Book a test "
+            + "drive at your nearest dealer and ask about leasing offers for the spring season.";
+
+    private final AemContext context = AppAemContext.newAemContext();
+
+    private NearDuplicateIndexImpl index;
+
+    @BeforeEach
+    void setup() {
+        context.registerService(MetricsService.class, MetricsService.NOOP);
+        index = context.registerInjectActivateService(new NearDuplicateIndexImpl(),
+                "similarity.threshold", 0.8,
+                "max.entries", 2);
+    }
+
+    @Test
+    void findsNearDuplicates() {
+        index.put("/content/myaemproject/en/suv", MinHash.of(TEXT));
+        index.put("/content/myaemproject/en/cake", MinHash.of("Recipe for a lemon cake with a sugar glaze."));
+
+        assertEquals("/content/myaemproject/en/suv",
+                index.findSimilar("/content/myaemproject/de/suv", MinHash.of(TEXT.replace("spring", "summer"))));
+        assertNull(index.findSimilar("/content/myaemproject/en/suv", MinHash.of(TEXT)));
+        assertNull(index.findSimilar("/content/myaemproject/en/bike", MinHash.of("Folding bikes for commuters.")));
+    }
+
+    @Test
+    void evictsLeastRecentlyUsed() {
+        index.put("/content/myaemproject/a", MinHash.of(TEXT));
+        index.put("/content/myaemproject/b", MinHash.of("Recipe for a lemon cake with a sugar glaze."));
+        index.findSimilar("/content/myaemproject/c", MinHash.of(TEXT));
+        index.put("/content/myaemproject/d", MinHash.of("Folding bikes for commuters."));
+
+        assertEquals(2, index.size());
+        assertEquals("/content/myaemproject/a", index.findSimilar("/content/myaemproject/c", MinHash.of(TEXT)));
+        assertNull(index.findSimilar("/content/myaemproject/c",
+                MinHash.of("Recipe for a lemon cake with a sugar glaze.")));
+    }
+}
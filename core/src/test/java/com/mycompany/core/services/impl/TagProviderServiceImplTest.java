@@ -0,0 +1,38 @@
+package com.mycompany.core.services.impl;
+
+import com.mycompany.core.services.TagProviderService.Vocabulary;
+import com.mycompany.core.testcontext.AppAemContext;
+import io.wcm.testing.mock.aem.junit5.AemContext;
+import io.wcm.testing.mock.aem.junit5.AemContextExtension;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@ExtendWith(AemContextExtension.class)
+class TagProviderServiceImplTest {
+
+    private final AemContext context = AppAemContext.newAemContext();
+
+    @Test
+    void cachesVocabularyUntilTagsChange() {
+        context.create().tag("myaemproject:topic/ev");
+        TagProviderServiceImpl service = context.registerInjectActivateService(new TagProviderServiceImpl());
+
+        Vocabulary vocabulary = service.getVocabulary();
+        assertSame(vocabulary, service.getVocabulary());
+        assertFalse(vocabulary.getTags().containsKey("myaemproject:topic/suv"));
+
+        context.create().tag("myaemproject:topic/suv");
+        service.onChange(List.of());
+
+        Vocabulary changed = service.getVocabulary();
+        assertTrue(changed.getTags().containsKey("myaemproject:topic/suv"));
+        assertNotEquals(vocabulary.getVersion(), changed.getVersion());
+    }
+}
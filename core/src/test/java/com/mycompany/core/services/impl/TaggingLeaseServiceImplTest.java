@@ -0,0 +1,149 @@
+package com.mycompany.core.services.impl;
+
+import com.mycompany.core.services.TaggingLeaseService.Outcome;
+import com.mycompany.core.testcontext.AppAemContext;
+import io.wcm.testing.mock.aem.junit5.AemContext;
+import io.wcm.testing.mock.aem.junit5.AemContextExtension;
+import org.apache.sling.api.resource.LoginException;
+import org.apache.sling.api.resource.ModifiableValueMap;
+import org.apache.sling.api.resource.PersistenceException;
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.api.resource.ResourceResolverFactory;
+import org.apache.sling.commons.metrics.MetricsService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.osgi.framework.Constants;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.Mockito.doNothing;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(AemContextExtension.class)
+class TaggingLeaseServiceImplTest {
+
+    private static final String PAYLOAD = "/content/myaemproject/us/en/page";
+
+    private final AemContext context = AppAemContext.newAemContext();
+
+    @BeforeEach
+    void setup() throws PersistenceException {
+        context.create().resource(TaggingLeaseServiceImpl.LEASES_PATH);
+        context.resourceResolver().commit();
+        context.registerService(MetricsService.class, MetricsService.NOOP);
+    }
+
+    @Test
+    void mergesRunsWhileInFlight() {
+        TaggingLeaseServiceImpl service = context.registerInjectActivateService(new TaggingLeaseServiceImpl());
+
+        assertEquals(Outcome.ACQUIRED, service.acquire(PAYLOAD, "first"));
+        assertEquals(Outcome.IN_FLIGHT, service.acquire(PAYLOAD, "second"));
+
+        // The owner runs once more for the merged duplicate, then releases
+        assertTrue(service.release(PAYLOAD, "first"));
+        assertFalse(service.release(PAYLOAD, "first"));
+    }
+
+    @Test
+    void dropsRunsWithinQuietWindow() {
+        TaggingLeaseServiceImpl service = context.registerInjectActivateService(new TaggingLeaseServiceImpl());
+
+        service.acquire(PAYLOAD, "first");
+        service.release(PAYLOAD, "first");
+
+        assertEquals(Outcome.QUIET, service.acquire(PAYLOAD, "second"));
+    }
+
+    @Test
+    void acquiresWithinQuietWindowWhenPayloadWasModified() throws PersistenceException {
+        Calendar modified = Calendar.getInstance();
+        context.create().page(PAYLOAD, null, "cq:lastModified", modified);
+        context.resourceResolver().commit();
+        TaggingLeaseServiceImpl service = context.registerInjectActivateService(new TaggingLeaseServiceImpl());
+
+        service.acquire(PAYLOAD, "first");
+        service.release(PAYLOAD, "first");
+        assertEquals(Outcome.QUIET, service.acquire(PAYLOAD, "second"));
+
+        Calendar edited = (Calendar) modified.clone();
+        edited.add(Calendar.SECOND, 1);
+        context.resourceResolver().getResource(PAYLOAD + "/jcr:content").adaptTo(ModifiableValueMap.class)
+                .put("cq:lastModified", edited);
+        context.resourceResolver().commit();
+
+        assertEquals(Outcome.ACQUIRED, service.acquire(PAYLOAD, "third"));
+    }
+
+    @Test
+    void mergesIntoRunThatWonTheRace() throws LoginException {
+        TaggingLeaseServiceImpl service = context.registerInjectActivateService(new TaggingLeaseServiceImpl());
+        assertEquals(Outcome.ACQUIRED, service.acquire(PAYLOAD, "first"));
+
+        // The first commit of the second run conflicts with a concurrent change
+        ResourceResolver resolver = spy(context.resourceResolver());
+        doNothing().when(resolver).close();
+        doThrow(new PersistenceException("conflict")).doCallRealMethod().when(resolver).commit();
+        ResourceResolverFactory resolverFactory = mock(ResourceResolverFactory.class);
+        when(resolverFactory.getServiceResourceResolver(anyMap())).thenReturn(resolver);
+        context.registerService(ResourceResolverFactory.class, resolverFactory,
+                Constants.SERVICE_RANKING, Integer.MAX_VALUE);
+        service = context.registerInjectActivateService(new TaggingLeaseServiceImpl());
+
+        assertEquals(Outcome.IN_FLIGHT, service.acquire(PAYLOAD, "second"));
+        assertTrue(service.release(PAYLOAD, "first"));
+    }
+
+    @Test
+    void acquiresAgainAfterQuietWindow() {
+        TaggingLeaseServiceImpl service = context.registerInjectActivateService(new TaggingLeaseServiceImpl(),
+                "quiet.window.seconds", 0);
+
+        service.acquire(PAYLOAD, "first");
+        service.release(PAYLOAD, "first");
+
+        assertEquals(Outcome.ACQUIRED, service.acquire(PAYLOAD, "second"));
+        assertFalse(service.release(PAYLOAD, "first"));
+    }
+
+    @Test
+    void deletesReleasedLeasesAfterQuietWindow() {
+        TaggingLeaseServiceImpl service = context.registerInjectActivateService(new TaggingLeaseServiceImpl(),
+                "quiet.window.seconds", 0);
+
+        service.acquire(PAYLOAD, "first");
+        service.acquire(PAYLOAD + "/held", "second");
+        service.release(PAYLOAD, "first");
+        service.run();
+
+        context.resourceResolver().refresh();
+        Resource leases = context.resourceResolver().getResource(TaggingLeaseServiceImpl.LEASES_PATH);
+        List<String> payloads = new ArrayList<>();
+        leases.getChildren().forEach(lease ->
+                payloads.add(lease.getValueMap().get(TaggingLeaseServiceImpl.PN_PAYLOAD, String.class)));
+        assertEquals(List.of(PAYLOAD + "/held"), payloads);
+        assertEquals(Outcome.ACQUIRED, service.acquire(PAYLOAD, "third"));
+    }
+
+    @Test
+    void keepsReleasedLeasesWithinQuietWindow() {
+        TaggingLeaseServiceImpl service = context.registerInjectActivateService(new TaggingLeaseServiceImpl());
+
+        service.acquire(PAYLOAD, "first");
+        service.release(PAYLOAD, "first");
+        service.run();
+
+        assertEquals(Outcome.QUIET, service.acquire(PAYLOAD, "second"));
+    }
+}
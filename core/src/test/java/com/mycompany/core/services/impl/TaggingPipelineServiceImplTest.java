@@ -0,0 +1,282 @@
+package com.mycompany.core.services.impl;
+
+import com.day.cq.wcm.api.Page;
+import com.day.cq.workflow.collection.ResourceCollectionManager;
+import com.mycompany.core.services.AITaggingService;
+import com.mycompany.core.services.LiveCopyTaggingService;
+import com.mycompany.core.services.NearDuplicateIndex;
+import com.mycompany.core.services.OpenAIService;
+import com.mycompany.core.services.TagProviderService;
+import com.mycompany.core.services.TaggingScheduler;
+import com.mycompany.core.services.TextExtractionService;
+import com.mycompany.core.testcontext.AppAemContext;
+import com.mycompany.core.utils.StageTrace;
+import com.mycompany.core.utils.TaggingState;
+import io.wcm.testing.mock.aem.junit5.AemContext;
+import io.wcm.testing.mock.aem.junit5.AemContextExtension;
+import org.apache.sling.api.resource.PersistenceException;
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.commons.metrics.MetricsService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.invocation.InvocationOnMock;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(AemContextExtension.class)
+class TaggingPipelineServiceImplTest {
+
+    private static final String ROOT = "/content/myaemproject";
+    private static final List<String> TAG_IDS = List.of("myaemproject:topic/ev");
+
+    private final AemContext context = AppAemContext.newAemContext();
+
+    private final OpenAIService openAIService = mock(OpenAIService.class);
+    private final AITaggingService aiTaggingService = mock(AITaggingService.class);
+    private final TextExtractionService textExtractionService = mock(TextExtractionService.class);
+    private final TagProviderService tagProviderService = mock(TagProviderService.class);
+
+    // Extracted text by page path, pages without an entry have no text
+    private final Map<String, String> texts = new HashMap<>();
+    // AI requests and tag writes in the order they happened
+    private final List<String> events = Collections.synchronizedList(new ArrayList<>());
+
+    @BeforeEach
+    void setup() throws PersistenceException, InterruptedException {
+        context.create().page(ROOT);
+        context.resourceResolver().commit();
+
+        when(tagProviderService.getVocabulary()).thenReturn(
+                new TagProviderService.Vocabulary(Map.of("myaemproject:topic/ev", "EV")));
+        when(openAIService.getModel()).thenReturn("test-model");
+        when(openAIService.generateTagSuggestions(anyString(), anyMap())).thenAnswer(invocation -> {
+            events.add("ai");
+            return TAG_IDS;
+        });
+        when(aiTaggingService.applyTagsToPage(any(Page.class), anyList(), eq(false))).thenAnswer(invocation -> {
+            events.add("write");
+            return true;
+        });
+        when(textExtractionService.extractText(any(Resource.class))).thenAnswer(this::extractText);
+        when(textExtractionService.extractText(any(Resource.class), anyInt())).thenAnswer(this::extractText);
+        TaggingScheduler taggingScheduler = mock(TaggingScheduler.class);
+        when(taggingScheduler.getSite(any())).thenReturn("myaemproject");
+        when(taggingScheduler.acquire(any(), any())).thenReturn(mock(TaggingScheduler.Permit.class));
+
+        context.registerService(TagProviderService.class, tagProviderService);
+        context.registerService(OpenAIService.class, openAIService);
+        context.registerService(AITaggingService.class, aiTaggingService);
+        context.registerService(TextExtractionService.class, textExtractionService);
+        context.registerService(MetricsService.class, MetricsService.NOOP);
+        context.registerService(ResourceCollectionManager.class, mock(ResourceCollectionManager.class));
+        context.registerService(TaggingScheduler.class, taggingScheduler);
+        context.registerService(NearDuplicateIndex.class, mock(NearDuplicateIndex.class));
+        context.registerService(LiveCopyTaggingService.class, mock(LiveCopyTaggingService.class));
+    }
+
+    @Test
+    void tagsSinglePage() throws PersistenceException {
+        createPage(ROOT + "/en", "Electric cars and charging");
+        TaggingPipelineServiceImpl pipeline = context.registerInjectActivateService(new TaggingPipelineServiceImpl());
+
+        assertTrue(pipeline.process(resource(ROOT + "/en"), context.resourceResolver(),
+                TaggingScheduler.Priority.EDITOR, new StageTrace()));
+
+        verify(aiTaggingService).applyTagsToPage(any(Page.class), eq(TAG_IDS), eq(false));
+        TaggingState state = TaggingState.read(resource(ROOT + "/en/jcr:content"));
+        assertNotNull(state);
+        assertEquals(TAG_IDS, state.getTagIds());
+        assertEquals("test-model", state.getModel());
+    }
+
+    @Test
+    void skipsAIRequestForUnchangedPage() throws PersistenceException {
+        createPage(ROOT + "/en", "Electric cars and charging");
+        TaggingPipelineServiceImpl pipeline = context.registerInjectActivateService(new TaggingPipelineServiceImpl());
+
+        assertTrue(process(pipeline, ROOT + "/en"));
+        assertTrue(process(pipeline, ROOT + "/en"));
+
+        verify(openAIService, times(1)).generateTagSuggestions(anyString(), anyMap());
+        verify(aiTaggingService, times(1)).applyTagsToPage(any(Page.class), anyList(), eq(false));
+    }
+
+    @Test
+    void requestsTagsAgainWhenVocabularyChanges() throws PersistenceException {
+        createPage(ROOT + "/en", "Electric cars and charging");
+        TaggingPipelineServiceImpl pipeline = context.registerInjectActivateService(new TaggingPipelineServiceImpl());
+
+        assertTrue(process(pipeline, ROOT + "/en"));
+        when(tagProviderService.getVocabulary()).thenReturn(new TagProviderService.Vocabulary(
+                Map.of("myaemproject:topic/ev", "EV", "myaemproject:topic/suv", "SUV")));
+        assertTrue(process(pipeline, ROOT + "/en"));
+
+        verify(openAIService, times(2)).generateTagSuggestions(anyString(), anyMap());
+    }
+
+    @Test
+    void requestsTagsAgainWhenModelChanges() throws PersistenceException {
+        createPage(ROOT + "/en", "Electric cars and charging");
+        TaggingPipelineServiceImpl pipeline = context.registerInjectActivateService(new TaggingPipelineServiceImpl());
+
+        assertTrue(process(pipeline, ROOT + "/en"));
+        when(openAIService.getModel()).thenReturn("other-model");
+        assertTrue(process(pipeline, ROOT + "/en"));
+
+        verify(openAIService, times(2)).generateTagSuggestions(anyString(), anyMap());
+        assertEquals("other-model", TaggingState.read(resource(ROOT + "/en/jcr:content")).getModel());
+    }
+
+    @Test
+    void versionsPreviewWithoutExtractingText() throws PersistenceException {
+        context.create().page(ROOT + "/de", null, "cq:lastModified", Calendar.getInstance());
+        context.resourceResolver().commit();
+        texts.put(ROOT + "/de", "Elektroautos und Laden");
+        TaggingPipelineServiceImpl pipeline = context.registerInjectActivateService(new TaggingPipelineServiceImpl());
+
+        assertNull(pipeline.getPreviewVersion(resource(ROOT + "/de/jcr:content")));
+        String version = pipeline.getPreviewVersion(resource(ROOT + "/de"));
+        assertNotNull(version);
+
+        when(openAIService.getModel()).thenReturn("other-model");
+        assertNotEquals(version, pipeline.getPreviewVersion(resource(ROOT + "/de")));
+        verify(textExtractionService, never()).extractText(any(Resource.class));
+        verify(textExtractionService, never()).extractText(any(Resource.class), anyInt());
+    }
+
+    @Test
+    void boundsAIRequestsInFlight() throws PersistenceException {
+        for (int i = 0; i < 6; i++) {
+            createPage(ROOT + "/page-" + i, "Text of page " + i);
+        }
+        TaggingPipelineServiceImpl pipeline = context.registerInjectActivateService(new TaggingPipelineServiceImpl(),
+                "ai.parallelism", 1);
+
+        assertTrue(pipeline.processBulk(resource(ROOT), context.resourceResolver(), null,
+                TaggingScheduler.Priority.BACKFILL, new StageTrace()));
+
+        // One AI thread may have at most twice as many requests queued as written
+        int ahead = 0;
+        int maxAhead = 0;
+        for (String event : new ArrayList<>(events)) {
+            ahead += "ai".equals(event) ? 1 : -1;
+            maxAhead = Math.max(maxAhead, ahead);
+        }
+        assertEquals(12, events.size());
+        assertTrue(maxAhead <= 2, "AI requests ahead of writes: " + maxAhead);
+    }
+
+    @Test
+    void countsEmptySuggestionsAsFailed() throws PersistenceException {
+        createPage(ROOT + "/tagged", "Text with tags");
+        createPage(ROOT + "/untagged", "Text without tags");
+        when(openAIService.generateTagSuggestions(anyString(), anyMap())).thenAnswer(invocation ->
+                invocation.<String>getArgument(0).contains("untagged") ? List.of() : TAG_IDS);
+        TaggingPipelineServiceImpl pipeline = context.registerInjectActivateService(new TaggingPipelineServiceImpl());
+
+        assertFalse(pipeline.processBulk(resource(ROOT), context.resourceResolver(), null,
+                TaggingScheduler.Priority.BACKFILL, new StageTrace()));
+
+        verify(aiTaggingService, times(1)).applyTagsToPage(any(Page.class), anyList(), eq(false));
+        assertNotNull(TaggingState.read(resource(ROOT + "/tagged/jcr:content")));
+    }
+
+    @Test
+    void commitsInBatches() throws PersistenceException {
+        for (int i = 0; i < 5; i++) {
+            createPage(ROOT + "/page-" + i, "Text of page " + i);
+        }
+        TaggingPipelineServiceImpl pipeline = context.registerInjectActivateService(new TaggingPipelineServiceImpl(),
+                "ai.parallelism", 1,
+                "batch.size", 2);
+        ResourceResolver resolver = spy(context.resourceResolver());
+
+        assertTrue(pipeline.processBulk(resolver.getResource(ROOT), resolver, null,
+                TaggingScheduler.Priority.BACKFILL, new StageTrace()));
+
+        // Two full batches and the rest
+        verify(resolver, times(3)).commit();
+    }
+
+    @Test
+    void reportsProgressPerWindow() throws PersistenceException {
+        texts.put(ROOT, "Text of the site root");
+        for (int i = 0; i < 4; i++) {
+            createPage(ROOT + "/page-" + i, "Text of page " + i);
+        }
+        TaggingPipelineServiceImpl pipeline = context.registerInjectActivateService(new TaggingPipelineServiceImpl(),
+                "bulk.window.size", 2);
+        List<Integer> progress = new ArrayList<>();
+
+        assertTrue(pipeline.processBulk(resource(ROOT), context.resourceResolver(),
+                (processed, total, elapsedMillis) -> {
+                    assertEquals(5, total);
+                    progress.add(processed);
+                }, TaggingScheduler.Priority.BACKFILL, new StageTrace()));
+
+        assertEquals(List.of(2, 4, 5), progress);
+        verify(aiTaggingService, times(5)).applyTagsToPage(any(Page.class), anyList(), eq(false));
+    }
+
+    @Test
+    void requestsTagsOnceForDuplicateContent() throws PersistenceException {
+        context.create().page(ROOT + "/us");
+        context.create().page(ROOT + "/ca");
+        createPage(ROOT + "/us/en", "The same text in two countries");
+        createPage(ROOT + "/ca/en", "The same text in two countries");
+        TaggingPipelineServiceImpl pipeline = context.registerInjectActivateService(new TaggingPipelineServiceImpl(),
+                "ai.parallelism", 2);
+
+        assertTrue(pipeline.processBulk(resource(ROOT), context.resourceResolver(), null,
+                TaggingScheduler.Priority.BACKFILL, new StageTrace()));
+
+        verify(openAIService, times(1)).generateTagSuggestions(anyString(), anyMap());
+        verify(aiTaggingService, times(2)).applyTagsToPage(any(Page.class), eq(TAG_IDS), eq(false));
+    }
+
+    private void createPage(String path, String text) throws PersistenceException {
+        context.create().page(path);
+        context.resourceResolver().commit();
+        texts.put(path, text);
+    }
+
+    private boolean process(TaggingPipelineServiceImpl pipeline, String path) {
+        return pipeline.process(resource(path), context.resourceResolver(), TaggingScheduler.Priority.EDITOR,
+                new StageTrace());
+    }
+
+    private Resource resource(String path) {
+        return context.resourceResolver().getResource(path);
+    }
+
+    private String extractText(InvocationOnMock invocation) {
+        Resource contentResource = invocation.getArgument(0);
+        return texts.getOrDefault(contentResource.getParent().getPath(), "");
+    }
+}
@@ -0,0 +1,99 @@
+package com.mycompany.core.services.impl;
+
+import com.mycompany.core.services.TaggingScheduler.Permit;
+import com.mycompany.core.services.TaggingScheduler.Priority;
+import com.mycompany.core.testcontext.AppAemContext;
+import io.wcm.testing.mock.aem.junit5.AemContext;
+import io.wcm.testing.mock.aem.junit5.AemContextExtension;
+import org.apache.sling.commons.metrics.MetricsService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@ExtendWith(AemContextExtension.class)
+class TaggingSchedulerImplTest {
+
+    private final AemContext context = AppAemContext.newAemContext();
+
+    private final List<String> granted = Collections.synchronizedList(new ArrayList<>());
+
+    private TaggingSchedulerImpl scheduler;
+
+    @BeforeEach
+    void setup() {
+        context.registerService(MetricsService.class, MetricsService.NOOP);
+        scheduler = context.registerInjectActivateService(new TaggingSchedulerImpl(),
+                "max.concurrent.requests", 1,
+                "site.weights", new String[] {"a=2"});
+    }
+
+    @Test
+    void grantsEditorsBeforeBackfill() throws InterruptedException {
+        Permit running = scheduler.acquire(Priority.BACKFILL, "a");
+        List<Thread> waiters = List.of(
+                waitFor(Priority.BACKFILL, "a", "backfill"),
+                waitFor(Priority.RECENTLY_MODIFIED, "b", "modified"),
+                waitFor(Priority.EDITOR, "c", "editor"));
+
+        running.close();
+        for (Thread waiter : waiters) {
+            waiter.join(5000);
+        }
+
+        assertEquals(List.of("editor", "modified", "backfill"), granted);
+    }
+
+    @Test
+    void sharesByWeightWithinClass() throws InterruptedException {
+        Permit running = scheduler.acquire(Priority.BACKFILL, "a");
+        List<Thread> waiters = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            waiters.add(waitFor(Priority.BACKFILL, "a", "a"));
+        }
+        for (int i = 0; i < 2; i++) {
+            waiters.add(waitFor(Priority.BACKFILL, "b", "b"));
+        }
+
+        running.close();
+        for (Thread waiter : waiters) {
+            waiter.join(5000);
+        }
+
+        // The running request was charged to site a
+        assertEquals(List.of("b", "a", "a", "b", "a", "a"), granted);
+    }
+
+    @Test
+    void derivesSiteFromConfOrContentRoot() {
+        context.create().page("/content/brand", null, "cq:conf", "/conf/brand-site");
+        context.create().page("/content/brand/en");
+
+        assertEquals("brand-site", scheduler.getSite(context.resourceResolver().getResource("/content/brand/en")));
+        assertEquals("other", scheduler.getSite(context.create().resource("/content/dam/other/image.jpg")));
+    }
+
+    /**
+     * Start a thread waiting for a permit, returning once it is queued
+     */
+    private Thread waitFor(Priority priority, String site, String label) throws InterruptedException {
+        int waiting = scheduler.getWaiting();
+        Thread thread = new Thread(() -> {
+            try (Permit permit = scheduler.acquire(priority, site)) {
+                granted.add(label);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        thread.start();
+        while (scheduler.getWaiting() == waiting) {
+            Thread.sleep(1);
+        }
+        return thread;
+    }
+}
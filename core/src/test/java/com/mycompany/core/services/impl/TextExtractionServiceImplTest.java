@@ -0,0 +1,178 @@
+package com.mycompany.core.services.impl;
+
+import com.day.cq.wcm.api.Page;
+import com.mycompany.core.services.TextExtractor;
+import com.mycompany.core.testcontext.AppAemContext;
+import io.wcm.testing.mock.aem.junit5.AemContext;
+import io.wcm.testing.mock.aem.junit5.AemContextExtension;
+import org.apache.sling.testing.mock.osgi.MockOsgi;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@ExtendWith(AemContextExtension.class)
+class TextExtractionServiceImplTest {
+
+    private final AemContext context = AppAemContext.newAemContext();
+
+    private Page page;
+
+    @BeforeEach
+    void setup() {
+        page = context.create().page("/content/mypage", null, "jcr:title", "My Page");
+        context.create().resource(page, "root/title",
+                "sling:resourceType", "myaemproject/components/title",
+                "jcr:title", "Electric SUVs");
+        context.create().resource(page, "root/image",
+                "sling:resourceType", "myaemproject/components/image",
+                "alt", "Charging station");
+        context.create().resource(page, "root/image/file",
+                "jcr:primaryType", "nt:file",
+                "title", "binary holder");
+    }
+
+    @Test
+    void extractsTextPropertiesInDocumentOrder() {
+        TextExtractionServiceImpl service = context.registerInjectActivateService(new TextExtractionServiceImpl());
+
+        String text = service.extractText(page.getContentResource());
+
+        assertEquals("My Page Electric SUVs Charging station", text);
+    }
+
+    @Test
+    void skipsFileNodes() {
+        TextExtractionServiceImpl service = context.registerInjectActivateService(new TextExtractionServiceImpl());
+
+        assertFalse(service.extractText(page.getContentResource()).contains("binary holder"));
+    }
+
+    @Test
+    void stopsAtCharacterBudget() {
+        TextExtractionServiceImpl service = context.registerInjectActivateService(new TextExtractionServiceImpl(),
+                "max.characters", 12);
+
+        String text = service.extractText(page.getContentResource());
+
+        assertEquals("My Page Elec", text);
+        assertTrue(text.length() <= 12);
+    }
+
+    @Test
+    void extractsWithBudgetOfItsOwn() {
+        TextExtractionServiceImpl service = context.registerInjectActivateService(new TextExtractionServiceImpl(),
+                "max.characters", 12);
+
+        assertEquals("My Page Electric SUVs Charging station",
+                service.extractText(page.getContentResource(), 1000));
+        assertEquals("My Page Elec", service.extractText(page.getContentResource()));
+    }
+
+    @Test
+    void keepsBufferOfLargerBudgets() {
+        TextExtractionServiceImpl service = context.registerInjectActivateService(new TextExtractionServiceImpl(),
+                "max.characters", 12);
+
+        String text = service.extractText(page.getContentResource(), 1000);
+
+        // Grown past twice max.characters, but within the budget it was grown for
+        assertTrue(TextExtractionServiceImpl.bufferCapacity() >= text.length());
+    }
+
+    @Test
+    void stripsRichText() {
+        context.create().resource(page, "root/text",
+                "sling:resourceType", "myaemproject/components/text",
+                "text", "<h3>Range</h3>\n<p>Over 500&nbsp;km &amp; <b>fast</b> charging</p>");
+        TextExtractionServiceImpl service = context.registerInjectActivateService(new TextExtractionServiceImpl());
+
+        assertEquals("My Page Electric SUVs Charging station. Range. Over 500 km & fast charging",
+                service.extractText(page.getContentResource()));
+    }
+
+    @Test
+    void skipsComponentsWithoutContent() {
+        context.create().resource(page, "root/form",
+                "sling:resourceType", "myaemproject/components/form/container");
+        context.create().resource(page, "root/form/email",
+                "sling:resourceType", "myaemproject/components/form/text",
+                "name", "email", "jcr:title", "Your email");
+        context.registerInjectActivateService(new PropertyTextExtractor(),
+                TextExtractor.RESOURCE_TYPES, new String[] {"myaemproject/components/form/container"},
+                "include.children", false);
+        TextExtractionServiceImpl service = context.registerInjectActivateService(new TextExtractionServiceImpl());
+
+        assertEquals("My Page Electric SUVs Charging station", service.extractText(page.getContentResource()));
+    }
+
+    @Test
+    void followsChangedExtractorConfiguration() {
+        context.create().resource(page, "root/form",
+                "sling:resourceType", "myaemproject/components/form/container");
+        context.create().resource(page, "root/form/email",
+                "sling:resourceType", "myaemproject/components/form/text",
+                "name", "email", "jcr:title", "Your email");
+        TextExtractionServiceImpl service = context.registerInjectActivateService(new TextExtractionServiceImpl());
+        PropertyTextExtractor extractor = new PropertyTextExtractor();
+        MockOsgi.activate(extractor, context.bundleContext(), "include.children", false);
+
+        service.bindTextExtractor(extractor,
+                Map.of(TextExtractor.RESOURCE_TYPES, new String[] {"myaemproject/components/form/container"}));
+        assertEquals("My Page Electric SUVs Charging station", service.extractText(page.getContentResource()));
+
+        service.updatedTextExtractor(extractor,
+                Map.of(TextExtractor.RESOURCE_TYPES, new String[] {"myaemproject/components/form/options"}));
+        assertEquals("My Page Electric SUVs Charging station Your email",
+                service.extractText(page.getContentResource()));
+    }
+
+    @Test
+    void matchesProxyComponentsThroughTheirSuperType() {
+        context.create().resource("/apps/myaemproject/components/accordion",
+                "sling:resourceSuperType", "core/wcm/components/accordion/v1/accordion");
+        context.create().resource(page, "root/accordion",
+                "sling:resourceType", "myaemproject/components/accordion",
+                "jcr:title", "Not extracted");
+        context.create().resource(page, "root/accordion/item_1",
+                "sling:resourceType", "myaemproject/components/container",
+                "cq:panelTitle", "Range");
+        context.registerInjectActivateService(new PropertyTextExtractor(),
+                TextExtractor.RESOURCE_TYPES, new String[] {"core/wcm/components/accordion"},
+                "item.text.properties", new String[] {"cq:panelTitle"});
+        TextExtractionServiceImpl service = context.registerInjectActivateService(new TextExtractionServiceImpl());
+
+        assertEquals("My Page Electric SUVs Charging station Range", service.extractText(page.getContentResource()));
+    }
+
+    @Test
+    void extractsReferencedFragmentsExceptExcludedOnes() {
+        Page promo = context.create().page("/content/experience-fragments/myaemproject/us/en/promo/master", null,
+                "jcr:title", "Spring offer");
+        context.create().resource(promo, "root/text", "text", "Test drive today");
+        Page header = context.create().page("/content/experience-fragments/myaemproject/us/en/site/header/master", null,
+                "jcr:title", "Header");
+        context.create().resource(header, "root/text", "text", "Home Models Dealers");
+
+        context.create().resource(page, "root/promo",
+                "sling:resourceType", "myaemproject/components/experiencefragment",
+                "fragmentVariationPath", promo.getPath());
+        context.create().resource(page, "root/header",
+                "sling:resourceType", "myaemproject/components/experiencefragment",
+                "fragmentVariationPath", header.getPath());
+        context.registerInjectActivateService(new PropertyTextExtractor(),
+                TextExtractor.RESOURCE_TYPES, new String[] {"myaemproject/components/experiencefragment"},
+                "reference.properties", new String[] {"fragmentVariationPath"},
+                "include.children", false);
+        TextExtractionServiceImpl service = context.registerInjectActivateService(new TextExtractionServiceImpl(),
+                "excluded.references", new String[] {"/content/experience-fragments/myaemproject/us/en/site"});
+
+        assertEquals("My Page Electric SUVs Charging station Spring offer Test drive today",
+                service.extractText(page.getContentResource()));
+    }
+}
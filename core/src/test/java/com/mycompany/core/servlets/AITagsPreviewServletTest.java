@@ -0,0 +1,113 @@
+package com.mycompany.core.servlets;
+
+import com.mycompany.core.services.TaggingPipelineService;
+import com.mycompany.core.testcontext.AppAemContext;
+import io.wcm.testing.mock.aem.junit5.AemContext;
+import io.wcm.testing.mock.aem.junit5.AemContextExtension;
+import org.apache.sling.testing.mock.sling.servlet.MockSlingHttpServletResponse;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import javax.servlet.http.HttpServletResponse;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(AemContextExtension.class)
+class AITagsPreviewServletTest {
+
+    private static final String PAGE = "/content/myaemproject/us/en/cars";
+    private static final String VERSION = "1760000000000-4567ef89-gpt-4o-mini";
+    private static final String ETAG = "\"" + VERSION + "\"";
+
+    private final AemContext context = AppAemContext.newAemContext();
+
+    private final TaggingPipelineService taggingPipelineService = mock(TaggingPipelineService.class);
+    private final TaggingPipelineService.Preview preview = mock(TaggingPipelineService.Preview.class);
+
+    private AITagsPreviewServlet servlet;
+
+    @BeforeEach
+    void setup() throws Exception {
+        context.create().page(PAGE);
+        context.create().tag("myaemproject:topic/ev");
+        context.currentResource(PAGE);
+
+        when(preview.getTagIds()).thenReturn(List.of("myaemproject:topic/ev"));
+        when(taggingPipelineService.preview(any(), any(), any())).thenReturn(preview);
+        when(taggingPipelineService.getPreviewVersion(any())).thenReturn(VERSION);
+
+        context.registerService(TaggingPipelineService.class, taggingPipelineService);
+        servlet = context.registerInjectActivateService(new AITagsPreviewServlet());
+    }
+
+    @Test
+    void returnsSuggestedTagsWithETag() throws Exception {
+        MockSlingHttpServletResponse response = context.response();
+
+        servlet.doGet(context.request(), response);
+
+        assertEquals(HttpServletResponse.SC_OK, response.getStatus());
+        assertEquals(ETAG, response.getHeader("ETag"));
+        assertEquals("private, no-cache", response.getHeader("Cache-Control"));
+        assertTrue(response.getOutputAsString().contains("\"id\":\"myaemproject:topic/ev\""));
+    }
+
+    @Test
+    void answersMatchingETagWithoutSuggesting() throws Exception {
+        context.request().setHeader("If-None-Match", "\"other\", " + ETAG);
+        MockSlingHttpServletResponse response = context.response();
+
+        servlet.doGet(context.request(), response);
+
+        assertEquals(HttpServletResponse.SC_NOT_MODIFIED, response.getStatus());
+        assertEquals("", response.getOutputAsString());
+        verify(taggingPipelineService, never()).preview(any(), any(), any());
+    }
+
+    @Test
+    void leavesUnversionedPagesWithoutETag() throws Exception {
+        when(taggingPipelineService.getPreviewVersion(any())).thenReturn(null);
+        context.request().setHeader("If-None-Match", "*");
+        MockSlingHttpServletResponse response = context.response();
+
+        servlet.doGet(context.request(), response);
+
+        assertEquals(HttpServletResponse.SC_OK, response.getStatus());
+        assertNull(response.getHeader("ETag"));
+    }
+
+    @Test
+    void leavesFailedSuggestionsWithoutETag() throws Exception {
+        when(preview.getTagIds()).thenReturn(List.of());
+        MockSlingHttpServletResponse response = context.response();
+
+        servlet.doGet(context.request(), response);
+
+        assertNull(response.getHeader("ETag"));
+    }
+
+    @Test
+    void rejectsPagesWithoutText() throws Exception {
+        when(taggingPipelineService.preview(any(), any(), any())).thenReturn(null);
+        MockSlingHttpServletResponse response = context.response();
+
+        servlet.doGet(context.request(), response);
+
+        assertEquals(HttpServletResponse.SC_NOT_FOUND, response.getStatus());
+    }
+
+    @Test
+    void comparesETagsWeakly() {
+        assertTrue(AITagsPreviewServlet.matches("W/" + ETAG, ETAG));
+        assertTrue(AITagsPreviewServlet.matches("*", ETAG));
+    }
+}
@@ -0,0 +1,126 @@
+package com.mycompany.core.servlets;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import com.mycompany.core.services.TextExtractionService;
+import com.mycompany.core.testcontext.AppAemContext;
+import io.wcm.testing.mock.aem.junit5.AemContext;
+import io.wcm.testing.mock.aem.junit5.AemContextExtension;
+import org.apache.sling.testing.mock.sling.servlet.MockSlingHttpServletResponse;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import javax.servlet.http.HttpServletResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(AemContextExtension.class)
+class AITextExportServletTest {
+
+    private static final String ROOT = "/content/myaemproject/us/en";
+
+    private final AemContext context = AppAemContext.newAemContext();
+
+    private AITextExportServlet servlet;
+
+    @BeforeEach
+    void setup() {
+        context.create().page(ROOT);
+        context.create().page(ROOT + "/cars", null, Map.of("cq:tags", new String[] {"myaemproject:topic/ev"}));
+        context.create().page(ROOT + "/cars/suv");
+        context.create().page(ROOT + "/cars/van");
+        context.create().page(ROOT + "/about");
+        context.currentResource(ROOT);
+
+        TextExtractionService textExtractionService = mock(TextExtractionService.class);
+        when(textExtractionService.extractText(any())).thenReturn("Electric SUVs");
+        context.registerService(TextExtractionService.class, textExtractionService);
+        servlet = context.registerInjectActivateService(new AITextExportServlet(),
+                "default.limit", 2,
+                "max.limit", 3);
+    }
+
+    @Test
+    void exportsOneLinePerPageInDocumentOrder() throws Exception {
+        // Pages of two lines, each continuing after the last line of the one before
+        List<JsonObject> lines = new ArrayList<>();
+        List<JsonObject> page = export(Map.of());
+        while (!page.isEmpty()) {
+            lines.addAll(page);
+            String cursor = page.get(page.size() - 1).get("path").getAsString();
+            page = export(Map.of(AITextExportServlet.PARAM_CURSOR, cursor));
+        }
+
+        assertEquals(List.of(ROOT, ROOT + "/cars", ROOT + "/cars/suv", ROOT + "/cars/van", ROOT + "/about"),
+                paths(lines));
+        assertEquals("myaemproject:topic/ev", lines.get(1).getAsJsonArray("tags").get(0).getAsString());
+        assertEquals("Electric SUVs", lines.get(1).get("text").getAsString());
+    }
+
+    @Test
+    void resumesAfterCursor() throws Exception {
+        assertEquals(List.of(ROOT + "/cars/van", ROOT + "/about"),
+                paths(export(Map.of(AITextExportServlet.PARAM_CURSOR, ROOT + "/cars/suv"))));
+        assertEquals(List.of(ROOT + "/cars/suv", ROOT + "/cars/van", ROOT + "/about"),
+                paths(export(Map.of(AITextExportServlet.PARAM_CURSOR, ROOT + "/cars",
+                        AITextExportServlet.PARAM_LIMIT, "3"))));
+        assertEquals(List.of(ROOT + "/about"),
+                paths(export(Map.of(AITextExportServlet.PARAM_CURSOR, ROOT + "/cars/van"))));
+    }
+
+    @Test
+    void stopsAtLimit() throws Exception {
+        assertEquals(List.of(ROOT), paths(export(Map.of(AITextExportServlet.PARAM_LIMIT, "1"))));
+        assertEquals(List.of(ROOT, ROOT + "/cars"), paths(export(Map.of())));
+        // Larger limits are lowered to the maximum
+        assertEquals(List.of(ROOT, ROOT + "/cars", ROOT + "/cars/suv"),
+                paths(export(Map.of(AITextExportServlet.PARAM_LIMIT, "100"))));
+    }
+
+    @Test
+    void rejectsInvalidLimit() throws Exception {
+        context.request().setParameterMap(Map.of(AITextExportServlet.PARAM_LIMIT, "0"));
+        MockSlingHttpServletResponse response = context.response();
+
+        servlet.doGet(context.request(), response);
+
+        assertEquals(HttpServletResponse.SC_BAD_REQUEST, response.getStatus());
+    }
+
+    @Test
+    void rejectsCursorOutsideRoot() throws Exception {
+        context.request().setParameterMap(Map.of(AITextExportServlet.PARAM_CURSOR, "/content/other"));
+        MockSlingHttpServletResponse response = context.response();
+
+        servlet.doGet(context.request(), response);
+
+        assertEquals(HttpServletResponse.SC_BAD_REQUEST, response.getStatus());
+    }
+
+    private List<JsonObject> export(Map<String, Object> parameters) throws Exception {
+        context.request().setParameterMap(parameters);
+        MockSlingHttpServletResponse response = new MockSlingHttpServletResponse();
+        servlet.doGet(context.request(), response);
+
+        List<JsonObject> lines = new ArrayList<>();
+        for (String line : response.getOutputAsString().split("\n")) {
+            if (!line.isEmpty()) {
+                lines.add(new Gson().fromJson(line, JsonObject.class));
+            }
+        }
+        return lines;
+    }
+
+    private static List<String> paths(List<JsonObject> lines) {
+        List<String> paths = new ArrayList<>();
+        lines.forEach(line -> paths.add(line.get("path").getAsString()));
+        return paths;
+    }
+}
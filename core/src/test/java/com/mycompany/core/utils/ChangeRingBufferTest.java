@@ -0,0 +1,61 @@
+package com.mycompany.core.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ChangeRingBufferTest {
+
+    @Test
+    void drainsInBatchesOldestFirst() {
+        ChangeRingBuffer<String> buffer = new ChangeRingBuffer<>(4, ChangeRingBuffer.OverflowPolicy.DROP_OLDEST);
+        for (String change : List.of("a", "b", "c")) {
+            assertTrue(buffer.offer(change));
+        }
+
+        List<String> batch = new ArrayList<>();
+        assertEquals(2, buffer.drainTo(batch, 2));
+        assertEquals(List.of("a", "b"), batch);
+
+        // Wraps around the end of the slots
+        buffer.offer("d");
+        buffer.offer("e");
+        batch.clear();
+        assertEquals(3, buffer.drainTo(batch, 10));
+        assertEquals(List.of("c", "d", "e"), batch);
+        assertEquals(0, buffer.size());
+    }
+
+    @Test
+    void dropsOldestWhenFull() {
+        ChangeRingBuffer<String> buffer = new ChangeRingBuffer<>(2, ChangeRingBuffer.OverflowPolicy.DROP_OLDEST);
+        buffer.offer("a");
+        buffer.offer("b");
+
+        assertFalse(buffer.offer("c"));
+
+        List<String> batch = new ArrayList<>();
+        buffer.drainTo(batch, 10);
+        assertEquals(List.of("b", "c"), batch);
+        assertEquals(1, buffer.getDropped());
+    }
+
+    @Test
+    void dropsNewestWhenFull() {
+        ChangeRingBuffer<String> buffer = new ChangeRingBuffer<>(2, ChangeRingBuffer.OverflowPolicy.DROP_NEWEST);
+        buffer.offer("a");
+        buffer.offer("b");
+
+        assertFalse(buffer.offer("c"));
+
+        List<String> batch = new ArrayList<>();
+        buffer.drainTo(batch, 10);
+        assertEquals(List.of("a", "b"), batch);
+        assertEquals(1, buffer.getDropped());
+    }
+}
@@ -0,0 +1,43 @@
+package com.mycompany.core.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+class ContentFingerprintTest {
+
+    @Test
+    void ignoresWhitespaceAndCase() {
+        assertEquals(ContentFingerprint.of("Electric  SUVs\n for families ", "v1"),
+                ContentFingerprint.of("electric suvs for Families", "v1"));
+    }
+
+    @Test
+    void changesWithContentOrVocabulary() {
+        String fingerprint = ContentFingerprint.of("Electric SUVs", "v1");
+
+        assertNotEquals(fingerprint, ContentFingerprint.of("Electric sedans", "v1"));
+        assertNotEquals(fingerprint, ContentFingerprint.of("Electric SUVs", "v2"));
+        assertEquals(32, fingerprint.length());
+    }
+
+    @Test
+    void vocabularyVersionIgnoresOrder() {
+        Map<String, String> tags = new LinkedHashMap<>();
+        tags.put("myaemproject:topic/automotive", "Automotive");
+        tags.put("myaemproject:audience/families", "Families");
+
+        Map<String, String> reordered = new LinkedHashMap<>();
+        reordered.put("myaemproject:audience/families", "Families");
+        reordered.put("myaemproject:topic/automotive", "Automotive");
+
+        assertEquals(ContentFingerprint.ofVocabulary(tags), ContentFingerprint.ofVocabulary(reordered));
+
+        reordered.put("myaemproject:audience/families", "Family");
+        assertNotEquals(ContentFingerprint.ofVocabulary(tags), ContentFingerprint.ofVocabulary(reordered));
+    }
+}
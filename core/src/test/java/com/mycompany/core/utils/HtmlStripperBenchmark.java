@@ -0,0 +1,49 @@
+package com.mycompany.core.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+
+/**
+ * Throughput of stripping a page of rich text. Not a unit test: runs with
+ * {@code mvn test -Pbenchmark} and writes its result to target/benchmarks/HtmlStripper.txt.
+ */
+class HtmlStripperBenchmark {
+
+    private static final int WARM_UP_ROUNDS = 20;
+    private static final int ROUNDS = 50;
+
+    @Test
+    void stripsPageOfRichText() throws IOException {
+        StringBuilder page = new StringBuilder();
+        while (page.length() < 1 << 20) {
+            page.append("<h2>Electric SUVs</h2><p>The <b>new</b> model seats seven&nbsp;people and charges ")
+                    .append("from 10&ndash;80&#37; in <a href=\"/charging\">under 30 minutes</a>.</p>")
+                    .append("<ul><li>Range &gt; 500 km</li><li>Heat pump &amp; towbar</li></ul>\n");
+        }
+        String html = page.toString();
+        StringBuilder text = new StringBuilder(html.length());
+
+        for (int round = 0; round < WARM_UP_ROUNDS; round++) {
+            text.setLength(0);
+            HtmlStripper.append(html, text, Integer.MAX_VALUE);
+        }
+        long start = System.nanoTime();
+        for (int round = 0; round < ROUNDS; round++) {
+            text.setLength(0);
+            HtmlStripper.append(html, text, Integer.MAX_VALUE);
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        Path dir = Paths.get(System.getProperty("benchmark.dir", "target/benchmarks"));
+        Files.createDirectories(dir);
+        Files.write(dir.resolve("HtmlStripper.txt"), List.of(
+                "charsIn=" + html.length(),
+                "charsOut=" + text.length(),
+                "megabytesPerSecond=" + ROUNDS * html.length() / seconds / (1 << 20)));
+    }
+}
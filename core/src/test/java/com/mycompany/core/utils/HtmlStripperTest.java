@@ -0,0 +1,86 @@
+package com.mycompany.core.utils;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HtmlStripperTest {
+
+    @Test
+    void detectsMarkup() {
+        assertTrue(HtmlStripper.isMarkup("<p>Electric SUVs</p>"));
+        assertTrue(HtmlStripper.isMarkup("Charging &amp; range"));
+        assertFalse(HtmlStripper.isMarkup("Electric SUVs"));
+    }
+
+    @Test
+    void dropsInlineTagsAndCollapsesWhitespace() {
+        assertEquals("Electric SUVs with a long range",
+                strip("  <b>Electric</b>  SUVs\n\twith a <a href=\"/range\">long</a> range "));
+        assertEquals("Electric", strip("Elec<span>tric</span>"));
+    }
+
+    @Test
+    void endsSentencesAtBlockBoundaries() {
+        assertEquals("Electric SUVs. Seven seats. Fast charging!",
+                strip("<h2>Electric SUVs</h2><ul><li>Seven seats</li><li>Fast charging!</li></ul>"));
+        assertEquals("Range. 500 km", strip("Range<br/>500 km"));
+    }
+
+    @Test
+    void decodesEntities() {
+        assertEquals("Charging & range < 500 km \u2013 \u00A92026 \u20AC",
+                strip("Charging &amp; range &lt; 500&nbsp;km &ndash; &copy;2026 &#x20AC;"));
+        assertEquals("Charging", strip("Char&shy;ging"));
+        assertEquals("R&D &unknown; &#;", strip("R&D &unknown; &#;"));
+    }
+
+    @Test
+    void skipsScriptsStylesAndComments() {
+        assertEquals("Electric SUVs",
+                strip("<style>p { color: red; }</style><p>Electric<!-- teaser --> SUVs</p>"
+                        + "<SCRIPT>var a = '<p>x</p>';</SCRIPT>"));
+    }
+
+    @Test
+    void continuesAfterExistingText() {
+        StringBuilder text = new StringBuilder("My Page ");
+
+        assertTrue(HtmlStripper.append("<p>Electric SUVs</p>", text, 100));
+
+        assertEquals("My Page. Electric SUVs", text.toString());
+    }
+
+    @Test
+    void stopsAtLimit() {
+        StringBuilder text = new StringBuilder();
+
+        assertFalse(HtmlStripper.append("<p>Electric <b>SUVs</b></p>", text, 12));
+
+        assertEquals("Electric SUV", text.toString());
+    }
+
+    @Test
+    void keepsLessThanSignsThatStartNoTag() {
+        assertEquals("Range < 500 km and > 300 km", strip("Range < 500 km and > 300 km"));
+        assertEquals("Charging in <30 minutes", strip("<p>Charging in <30 minutes</p>"));
+        assertEquals("Seats. 5 <b", strip("<p>Seats</p>5 <b"));
+    }
+
+    @Test
+    void writesNoSeparatorsPastLimit() {
+        StringBuilder text = new StringBuilder("Electric");
+
+        assertFalse(HtmlStripper.append("<p>SUVs</p>", text, 9));
+
+        assertEquals("Electric", text.toString());
+    }
+
+    private static String strip(String html) {
+        StringBuilder text = new StringBuilder();
+        HtmlStripper.append(html, text, Integer.MAX_VALUE);
+        return text.toString();
+    }
+}
@@ -0,0 +1,45 @@
+package com.mycompany.core.utils;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LatencyHistogramTest {
+
+    @Test
+    void bucketsCoverEveryValue() {
+        for (long micros = 0; micros < 100_000; micros++) {
+            int bucket = LatencyHistogram.bucketOf(micros);
+            assertTrue(micros <= LatencyHistogram.upperBoundOf(bucket));
+            assertTrue(bucket == 0 || micros > LatencyHistogram.upperBoundOf(bucket - 1));
+        }
+        assertEquals(LatencyHistogram.BUCKETS - 1, LatencyHistogram.bucketOf(Long.MAX_VALUE));
+    }
+
+    @Test
+    void estimatesPercentilesWithinBucketPrecision() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int millis = 1; millis <= 100; millis++) {
+            histogram.record(millis * 1_000_000L);
+        }
+
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+
+        assertEquals(100, snapshot.getCount());
+        assertEquals(50.5, snapshot.getMean(), 0.001);
+        assertEquals(100, snapshot.getMax(), 0.001);
+        assertEquals(50, snapshot.getPercentile(0.5), 50 * 0.25);
+        assertEquals(99, snapshot.getPercentile(0.99), 99 * 0.25);
+        assertEquals(100, snapshot.getPercentile(1), 0.001);
+    }
+
+    @Test
+    void reportsZeroWhenEmpty() {
+        LatencyHistogram.Snapshot snapshot = new LatencyHistogram().snapshot();
+
+        assertEquals(0, snapshot.getCount());
+        assertEquals(0, snapshot.getMean());
+        assertEquals(0, snapshot.getPercentile(0.99));
+    }
+}
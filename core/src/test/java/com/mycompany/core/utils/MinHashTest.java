@@ -0,0 +1,34 @@
+package com.mycompany.core.utils;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MinHashTest {
+
+    private static final String TEXT = "Our new electric SUV seats seven and charges to eighty percent in thirty "
+            + "minutes. Families get a quiet cabin, a large trunk and driver assistance on every trim. Book a test "
+            + "drive at your nearest dealer and ask about leasing offers for the spring season.";
+
+    @Test
+    void estimatesSimilarity() {
+        int[] signature = MinHash.of(TEXT);
+
+        assertEquals(1d, MinHash.similarity(signature, MinHash.of(TEXT.toUpperCase())));
+        assertTrue(MinHash.similarity(signature, MinHash.of(TEXT.replace("spring", "summer"))) > 0.8);
+        assertTrue(MinHash.similarity(signature,
+                MinHash.of("Recipe for a lemon cake with a crunchy sugar glaze and fresh berries.")) < 0.1);
+    }
+
+    @Test
+    void roundTripsEncoding() {
+        int[] signature = MinHash.of(TEXT);
+
+        assertArrayEquals(signature, MinHash.decode(MinHash.encode(signature)));
+        assertNull(MinHash.decode("not a signature"));
+        assertNull(MinHash.decode(null));
+    }
+}
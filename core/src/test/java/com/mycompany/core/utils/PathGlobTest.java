@@ -0,0 +1,21 @@
+package com.mycompany.core.utils;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PathGlobTest {
+
+    @Test
+    void matchesSegmentsAndSubtrees() {
+        PathGlob site = PathGlob.compile("/content/myaemproject/**");
+        PathGlob archives = PathGlob.compile("/content/*/archive/**");
+
+        assertTrue(site.matches("/content/myaemproject/en/jcr:content"));
+        assertFalse(site.matches("/content/other/en"));
+        assertTrue(archives.matches("/content/myaemproject/archive/2019/jcr:content/root"));
+        assertFalse(archives.matches("/content/myaemproject/en/archive/2019"));
+        assertFalse(PathGlob.compile("/content/a.b/*").matches("/content/aXb/c"));
+    }
+}
@@ -0,0 +1,40 @@
+package com.mycompany.core.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StageTraceTest {
+
+    @Test
+    void sumsSpansPerStageInStartOrder() throws InterruptedException {
+        StageTrace trace = new StageTrace();
+
+        try (StageTrace.Span span = trace.start(StageTrace.EXTRACTION)) {
+            Thread.sleep(5);
+        }
+        try (StageTrace.Span span = trace.start(StageTrace.AI)) {
+            Thread.sleep(5);
+        }
+        try (StageTrace.Span span = trace.start(StageTrace.EXTRACTION)) {
+            Thread.sleep(5);
+        }
+
+        Map<String, Long> millis = trace.getMillis();
+        assertEquals(List.of(StageTrace.EXTRACTION, StageTrace.AI), List.copyOf(millis.keySet()));
+        assertTrue(millis.get(StageTrace.EXTRACTION) >= 10);
+        assertTrue(trace.getElapsedMillis() >= 15);
+    }
+
+    @Test
+    void formatsStagesForLogging() {
+        StageTrace trace = new StageTrace();
+        trace.start(StageTrace.WRITE).close();
+
+        assertTrue(trace.toString().matches("write=\\d+ms/-?\\d+B"));
+    }
+}
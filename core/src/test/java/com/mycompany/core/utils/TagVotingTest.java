@@ -0,0 +1,36 @@
+package com.mycompany.core.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class TagVotingTest {
+
+    @Test
+    void prefersTagsSuggestedForSeveralChunks() {
+        List<String> merged = TagVoting.merge(List.of(
+                List.of("ev", "suv", "family", "leasing"),
+                List.of("suv", "ev", "charging"),
+                List.of("charging", "ev", "warranty")), 3, 8);
+
+        assertEquals(List.of("ev", "suv", "charging"), merged);
+    }
+
+    @Test
+    void fillsUpToMinimumByScore() {
+        List<String> merged = TagVoting.merge(List.of(
+                List.of("ev", "suv"),
+                List.of("ev", "charging")), 3, 8);
+
+        assertEquals(List.of("ev", "suv", "charging"), merged);
+    }
+
+    @Test
+    void capsAtMaximum() {
+        List<String> merged = TagVoting.merge(List.of(List.of("a", "b", "c", "d", "e")), 1, 3);
+
+        assertEquals(List.of("a", "b", "c"), merged);
+    }
+}
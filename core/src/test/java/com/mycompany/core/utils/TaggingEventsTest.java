@@ -0,0 +1,46 @@
+package com.mycompany.core.utils;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class TaggingEventsTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void recordsEnabledEventsOnly() throws Exception {
+        Path file = directory.resolve("tagging.jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable("com.mycompany.aitagging.AIRequest");
+            recording.start();
+
+            Object request = TaggingEvents.beginAIRequest();
+            TaggingEvents.commitAIRequest(request, "gpt-4o-mini", 1200, 80, 200);
+            Object write = TaggingEvents.beginTagWrite();
+            TaggingEvents.commitTagWrite(write, "/content/page", 3, true);
+
+            recording.stop();
+            recording.dump(file);
+        }
+
+        List<RecordedEvent> events = RecordingFile.readAllEvents(file).stream()
+                .filter(event -> event.getEventType().getName().startsWith("com.mycompany.aitagging."))
+                .collect(Collectors.toList());
+        assertEquals(1, events.size());
+        RecordedEvent event = events.get(0);
+        assertEquals("com.mycompany.aitagging.AIRequest", event.getEventType().getName());
+        assertEquals("gpt-4o-mini", event.getString("model"));
+        assertEquals(1200, event.getLong("requestBytes"));
+        assertEquals(200, event.getInt("status"));
+    }
+}
@@ -0,0 +1,39 @@
+package com.mycompany.core.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TextChunkerTest {
+
+    @Test
+    void keepsShortTextInOneChunk() {
+        assertEquals(List.of("Electric SUVs. Charging at home."),
+                TextChunker.split("Electric SUVs. Charging at home.", 100));
+    }
+
+    @Test
+    void splitsAtSentencesAndBlocks() {
+        String text = "<p>Electric SUVs seat seven.</p><p>They charge fast.</p> Home charging is cheap. "
+                + "Public chargers are everywhere.";
+
+        List<String> chunks = TextChunker.split(text, 60);
+
+        assertEquals(List.of("<p>Electric SUVs seat seven.</p><p>They charge fast.</p>",
+                "Home charging is cheap. Public chargers are everywhere."), chunks);
+    }
+
+    @Test
+    void splitsLongSentencesAtWhitespace() {
+        String text = "one two three four five six seven eight nine ten";
+
+        List<String> chunks = TextChunker.split(text, 15);
+
+        assertEquals("one two three", chunks.get(0));
+        assertEquals(text, String.join(" ", chunks));
+        chunks.forEach(chunk -> assertTrue(chunk.length() <= 15));
+    }
+}
@@ -0,0 +1,259 @@
+package com.mycompany.it.tests;
+
+import com.adobe.cq.testing.client.CQClient;
+import com.adobe.cq.testing.junit.rules.CQAuthorClassRule;
+import com.adobe.cq.testing.junit.rules.CQRule;
+import com.adobe.cq.testing.junit.rules.Page;
+import org.apache.sling.testing.clients.ClientException;
+import org.apache.sling.testing.clients.osgi.OsgiConsoleClient;
+import org.apache.sling.testing.clients.util.FormEntityBuilder;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.ClassRule;
+import org.junit.Rule;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.util.concurrent.TimeUnit.MINUTES;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Load test of the AI tagging path on the author service: points the OpenAI service at a
+ * local {@link OpenAIStub}, creates pages, starts the TAG_AI_WF workflow for all of them
+ * concurrently and waits until each page is tagged. Throughput, latency percentiles and
+ * error counts are logged. Only runs when a number of pages is given, and needs an author
+ * whose OSGi console is writable and which can reach this machine, e.g. a local SDK:
+ * <pre>
+ * mvn verify -Plocal -Dit.test=AITaggingLoadIT -Dit.load.pages=200 -Dit.load.concurrency=16 \
+ *     -Dit.load.stub.latency=800 -Dit.load.stub.errorRate=0.02 -Dit.load.stub.requestsPerSecond=20
+ * </pre>
+ */
+public class AITaggingLoadIT {
+
+    private static final Logger LOG = LoggerFactory.getLogger(AITaggingLoadIT.class);
+
+    private static final String OPENAI_PID = "com.mycompany.core.services.impl.OpenAIServiceImpl";
+    private static final String WORKFLOW_MODEL = "/var/workflow/models/TAG_AI_WF";
+    private static final String TAG_NAMESPACE = "/content/cq:tags/aitaggingload";
+    private static final String STATE_NODE = "/jcr:content/aiTagging";
+
+    private static final long TAGGING_TIMEOUT = MINUTES.toMillis(5);
+    private static final long POLL_INTERVAL = 250;
+
+    private static final String[] WORDS = {
+            "electric", "suv", "charging", "range", "battery", "family", "dealer", "lease", "warranty",
+            "towbar", "heat", "pump", "cabin", "seats", "trunk", "safety", "assistance", "motorway",
+            "city", "winter", "price", "offer", "test", "drive", "navigation", "software", "update",
+            "wallbox", "solar", "tariff", "service", "interval", "tyres", "brakes", "recycling", "cells"
+    };
+
+    @ClassRule
+    public static final CQAuthorClassRule cqBaseClassRule = new CQAuthorClassRule();
+
+    @Rule
+    public CQRule cqBaseRule = new CQRule(cqBaseClassRule.authorRule);
+
+    @Rule
+    public Page root = new Page(cqBaseClassRule.authorRule);
+
+    private final int pages = Integer.getInteger("it.load.pages", 0);
+    private final int concurrency = Integer.getInteger("it.load.concurrency", 8);
+
+    private CQClient adminAuthor;
+    private OsgiConsoleClient osgiConsole;
+    private OpenAIStub stub;
+    private Map<String, Object> originalConfiguration;
+
+    @Before
+    public void setUp() throws Exception {
+        assumeTrue("Set it.load.pages to run the AI tagging load test", pages > 0);
+
+        adminAuthor = cqBaseClassRule.authorRule.getAdminClient(CQClient.class);
+        osgiConsole = adminAuthor.adaptTo(OsgiConsoleClient.class);
+
+        stub = new OpenAIStub(Integer.getInteger("it.load.stub.port", 0),
+                Long.getLong("it.load.stub.latency", 500L),
+                Double.parseDouble(System.getProperty("it.load.stub.errorRate", "0")),
+                Integer.getInteger("it.load.stub.requestsPerSecond", 0));
+
+        originalConfiguration = osgiConsole.getConfiguration(OPENAI_PID);
+        Map<String, Object> configuration = new HashMap<>(originalConfiguration);
+        configuration.put("openai.api.url", "http://" + System.getProperty("it.load.stub.host", "localhost")
+                + ":" + stub.getPort() + OpenAIStub.PATH);
+        configuration.put("openai.api.key", "load-test");
+        osgiConsole.editConfigurationWithWait(10, OPENAI_PID, null, configuration);
+
+        createTags();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        if (stub == null) {
+            return;
+        }
+        try {
+            osgiConsole.editConfigurationWithWait(10, OPENAI_PID, null, originalConfiguration);
+            adminAuthor.deletePath(TAG_NAMESPACE);
+        } finally {
+            stub.close();
+        }
+    }
+
+    @Test
+    public void tagsPagesUnderLoad() throws Exception {
+        List<String> paths = new ArrayList<>();
+        Random random = new Random();
+        for (int i = 0; i < pages; i++) {
+            paths.add(createPage("load-" + i, randomText(random)));
+        }
+
+        List<Long> startMillis = Collections.synchronizedList(new ArrayList<>());
+        List<Long> taggedMillis = Collections.synchronizedList(new ArrayList<>());
+        AtomicInteger startErrors = new AtomicInteger();
+        AtomicInteger timeouts = new AtomicInteger();
+
+        ExecutorService executor = Executors.newFixedThreadPool(concurrency);
+        long start = System.nanoTime();
+        try {
+            List<Future<?>> runs = new ArrayList<>();
+            for (String path : paths) {
+                runs.add(executor.submit(() -> {
+                    long begin = System.nanoTime();
+                    try {
+                        startWorkflow(path);
+                    } catch (ClientException e) {
+                        LOG.warn("Could not start workflow for {}: {}", path, e.getMessage());
+                        startErrors.incrementAndGet();
+                        return null;
+                    }
+                    startMillis.add(millisSince(begin));
+
+                    if (awaitTagged(path)) {
+                        taggedMillis.add(millisSince(begin));
+                    } else {
+                        timeouts.incrementAndGet();
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> run : runs) {
+                run.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        double seconds = millisSince(start) / 1000.0;
+
+        LOG.info("AI tagging load: {} pages, concurrency {}, {} tagged in {} s ({} pages/s)",
+                pages, concurrency, taggedMillis.size(), String.format("%.1f", seconds),
+                String.format("%.2f", taggedMillis.size() / seconds));
+        LOG.info("Workflow start ms: {}", percentiles(startMillis));
+        LOG.info("Tagged after ms: {}", percentiles(taggedMillis));
+        LOG.info("Errors: {} workflow starts failed, {} pages not tagged within {} s", startErrors.get(),
+                timeouts.get(), TAGGING_TIMEOUT / 1000);
+        LOG.info("Stub: {} requests, {} completions, {} errors (500), {} rate limited (429)", stub.getRequests(),
+                stub.getCompletions(), stub.getErrors(), stub.getRateLimited());
+
+        assertEquals("Workflow starts failed", 0, startErrors.get());
+    }
+
+    private void createTags() throws ClientException {
+        adminAuthor.doPost(TAG_NAMESPACE, FormEntityBuilder.create()
+                .addParameter("jcr:primaryType", "cq:Tag")
+                .addParameter("jcr:title", "AI Tagging Load Test")
+                .addParameter("sling:resourceType", "cq/tagging/components/tag")
+                .build(), 200, 201);
+        for (String topic : new String[] {"ev", "charging", "family", "offers", "service"}) {
+            adminAuthor.doPost(TAG_NAMESPACE + "/" + topic, FormEntityBuilder.create()
+                    .addParameter("jcr:primaryType", "cq:Tag")
+                    .addParameter("jcr:title", topic)
+                    .addParameter("sling:resourceType", "cq/tagging/components/tag")
+                    .build(), 200, 201);
+        }
+    }
+
+    private String createPage(String name, String text) throws ClientException {
+        String path = root.getPath() + "/" + name;
+        adminAuthor.doPost(path, FormEntityBuilder.create()
+                .addParameter("jcr:primaryType", "cq:Page")
+                .addParameter("jcr:content/jcr:primaryType", "cq:PageContent")
+                .addParameter("jcr:content/jcr:title", name)
+                .addParameter("jcr:content/sling:resourceType", "myaemproject/components/page")
+                .addParameter("jcr:content/root/jcr:primaryType", "nt:unstructured")
+                .addParameter("jcr:content/root/sling:resourceType", "myaemproject/components/container")
+                .addParameter("jcr:content/root/text/jcr:primaryType", "nt:unstructured")
+                .addParameter("jcr:content/root/text/sling:resourceType", "myaemproject/components/text")
+                .addParameter("jcr:content/root/text/text", "<p>" + text + "</p>")
+                .addParameter("jcr:content/root/text/textIsRich", "true")
+                .build(), 200, 201);
+        return path;
+    }
+
+    private void startWorkflow(String path) throws ClientException {
+        adminAuthor.doPost("/etc/workflow/instances", FormEntityBuilder.create()
+                .addParameter("model", WORKFLOW_MODEL)
+                .addParameter("payloadType", "JCR_PATH")
+                .addParameter("payload", path)
+                .build(), 201);
+    }
+
+    private boolean awaitTagged(String path) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TAGGING_TIMEOUT;
+        while (System.currentTimeMillis() < deadline) {
+            try {
+                if (adminAuthor.doGet(path + STATE_NODE + ".json").getStatusLine().getStatusCode() == 200) {
+                    return true;
+                }
+            } catch (ClientException e) {
+                // Not tagged yet
+            }
+            Thread.sleep(POLL_INTERVAL);
+        }
+        return false;
+    }
+
+    /**
+     * @return Text of unrelated random words, so pages neither share the result cache nor
+     *         inherit tags from near-duplicates
+     */
+    private static String randomText(Random random) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 120; i++) {
+            text.append(i > 0 ? " " : "").append(WORDS[random.nextInt(WORDS.length)]);
+        }
+        return text.toString();
+    }
+
+    private static String percentiles(List<Long> millis) {
+        if (millis.isEmpty()) {
+            return "none";
+        }
+        List<Long> sorted = new ArrayList<>(millis);
+        Collections.sort(sorted);
+        return String.format("p50=%d p90=%d p95=%d p99=%d max=%d", percentile(sorted, 0.5),
+                percentile(sorted, 0.9), percentile(sorted, 0.95), percentile(sorted, 0.99),
+                sorted.get(sorted.size() - 1));
+    }
+
+    private static long percentile(List<Long> sorted, double quantile) {
+        int rank = (int) Math.ceil(quantile * sorted.size());
+        return sorted.get(Math.max(0, rank - 1));
+    }
+
+    private static long millisSince(long startNanos) {
+        return (System.nanoTime() - startNanos) / 1_000_000;
+    }
+}
@@ -0,0 +1,167 @@
+package com.mycompany.it.tests;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Local stand-in for the OpenAI chat completions endpoint, for load tests that must not
+ * call (or pay for) the real API. Every completion answers with the first tags listed in
+ * the prompt, after a configurable latency. A configurable share of requests fails with
+ * status 500, and requests beyond a per-second limit are answered with status 429.
+ */
+public class OpenAIStub implements AutoCloseable {
+
+    static final String PATH = "/v1/chat/completions";
+
+    // Tag list lines of the prompt as they appear in the JSON request, e.g. \n  - ns:topic/ev (EV)
+    private static final Pattern TAG_LINE = Pattern.compile("\\\\n  - ([^\\s(\\\\]+) \\(");
+
+    private static final int TAGS_PER_ANSWER = 3;
+
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final long latencyMillis;
+    private final double errorRate;
+    private final int requestsPerSecond;
+
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong completions = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+    private final AtomicLong rateLimited = new AtomicLong();
+
+    // Requests admitted in the current second
+    private final AtomicLong windowStart = new AtomicLong();
+    private final AtomicLong windowCount = new AtomicLong();
+
+    /**
+     * @param port Port to listen on, or 0 for any free port
+     * @param latencyMillis Time taken by every completion
+     * @param errorRate Share of requests answered with status 500, between 0 and 1
+     * @param requestsPerSecond Requests admitted per second before status 429, or 0 for no limit
+     */
+    public OpenAIStub(int port, long latencyMillis, double errorRate, int requestsPerSecond) throws IOException {
+        this.latencyMillis = latencyMillis;
+        this.errorRate = errorRate;
+        this.requestsPerSecond = requestsPerSecond;
+        this.server = HttpServer.create(new InetSocketAddress(port), 0);
+        server.createContext("/", this::handle);
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    public long getRequests() {
+        return requests.get();
+    }
+
+    public long getCompletions() {
+        return completions.get();
+    }
+
+    public long getErrors() {
+        return errors.get();
+    }
+
+    public long getRateLimited() {
+        return rateLimited.get();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            String body = read(exchange.getRequestBody());
+            if (!"POST".equals(exchange.getRequestMethod())) {
+                // Connection warm-up requests
+                respond(exchange, 405, "{}");
+                return;
+            }
+            requests.incrementAndGet();
+
+            if (!admit()) {
+                rateLimited.incrementAndGet();
+                exchange.getResponseHeaders().set("Retry-After", "1");
+                respond(exchange, 429, "{\"error\":{\"type\":\"rate_limit_exceeded\"}}");
+                return;
+            }
+
+            Thread.sleep(latencyMillis);
+
+            if (ThreadLocalRandom.current().nextDouble() < errorRate) {
+                errors.incrementAndGet();
+                respond(exchange, 500, "{\"error\":{\"type\":\"server_error\"}}");
+                return;
+            }
+
+            completions.incrementAndGet();
+            respond(exchange, 200, completion(String.join(",", promptTags(body))));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            respond(exchange, 503, "{}");
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private boolean admit() {
+        if (requestsPerSecond <= 0) {
+            return true;
+        }
+        long second = System.currentTimeMillis() / 1000;
+        long start = windowStart.get();
+        if (start != second && windowStart.compareAndSet(start, second)) {
+            windowCount.set(0);
+        }
+        return windowCount.incrementAndGet() <= requestsPerSecond;
+    }
+
+    static List<String> promptTags(String requestBody) {
+        List<String> tags = new ArrayList<>();
+        Matcher matcher = TAG_LINE.matcher(requestBody);
+        while (tags.size() < TAGS_PER_ANSWER && matcher.find()) {
+            tags.add(matcher.group(1));
+        }
+        return tags;
+    }
+
+    private static String completion(String content) {
+        return "{\"id\":\"chatcmpl-stub\",\"object\":\"chat.completion\",\"model\":\"stub\","
+                + "\"choices\":[{\"index\":0,\"message\":{\"role\":\"assistant\",\"content\":\""
+                + content.replace("\\", "\\\\").replace("\"", "\\\"")
+                + "\"},\"finish_reason\":\"stop\"}]}";
+    }
+
+    private static String read(InputStream in) throws IOException {
+        return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}